@@ -0,0 +1,81 @@
+package de.geolykt.starloader.gslstarplane;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import de.geolykt.starplane.Autodeobf;
+
+/**
+ * Transforms the galimulator jar and strips the shaded dependencies from it. Decompilation is left to the
+ * {@link GslGenSourcesTask} so that compilation does not need to wait on it.
+ *
+ * <p>The dependencies that are stripped are derived from the galimulator jar itself and thus are not declared as
+ * a separate input.
+ *
+ * <p>The transformation is performed by the {@link GslObfuscationService#getObfuscationHandler() obfuscation handler}
+ * shared with the other tasks, which writes the transformation stages and the mappings these tasks rely on
+ * into the cache directory. Restoring the outputs from the build cache would leave these files behind.
+ */
+@DisableCachingByDefault(because = "The mappings used by other tasks are stored next to the outputs and cannot be restored from the build cache")
+public abstract class GslDeobfGalimulatorTask extends ConventionTask {
+
+    @OutputFile
+    public abstract RegularFileProperty getCompileJar();
+
+    @Input
+    public String getDeobfuscatorVersion() {
+        return Autodeobf.getVersion();
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getGalimulatorJar();
+
+    /**
+     * Obtains the libraries of galimulator, whose classes are stripped from the galimulator jar.
+     *
+     * @return The galimulator libraries
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getLibraries();
+
+    /**
+     * Obtains the reversible access setter, softmap and supplementary mapping files that are applied
+     * on the galimulator jar.
+     *
+     * @return The mapping files
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract ConfigurableFileCollection getMappingFiles();
+
+    @Internal
+    public abstract Property<GslObfuscationService> getObfuscationService();
+
+    @OutputFile
+    public abstract RegularFileProperty getRuntimeJar();
+
+    @OutputFile
+    public abstract RegularFileProperty getStrippedJar();
+
+    @Input
+    public boolean isUsingOldNames() {
+        return Boolean.getBoolean("de.geolykt.starplane.oldnames");
+    }
+
+    @TaskAction
+    public void transform() {
+        GslStarplanePlugin.resolve(super.getLogger(), this.getStrippedJar().get().getAsFile().toPath(), this.getLibraries().getFiles(), this.getObfuscationService().get().getObfuscationHandler());
+    }
+}
@@ -184,7 +184,7 @@ public abstract class GslDeployModsTask extends ConventionTask {
     private void transform(@NotNull Path source, @NotNull Path target) {
         try {
             if (this.getRemapMods().get()) {
-                this.getProject().getExtensions().getByType(GslExtension.class).obfuscationHandler.deobfuscateJar(source, target);
+                GslStarplanePlugin.getObfuscationHandler(this.getProject()).deobfuscateJar(source, target);
             } else {
                 Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
             }
@@ -25,7 +25,6 @@ import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.mappingio.format.MappingFormat;
 
-import de.geolykt.starplane.ObfuscationHandler;
 import de.geolykt.starplane.remapping.MIOContainerFormat;
 import de.geolykt.starplane.remapping.MIOContainerFormat.MappingContainer;
 
@@ -46,7 +45,6 @@ public class GslExtension {
     public List<Object> internalMods;
     @NotNull
     public final List<Map.Entry<@NotNull MIOContainerFormat, @NotNull Object>> mappings = new ArrayList<>();
-    ObfuscationHandler obfuscationHandler;
     @Nullable
     public Path modDirectory;
     @Nullable
@@ -0,0 +1,91 @@
+package de.geolykt.starloader.gslstarplane;
+
+import java.util.Map;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import de.geolykt.starplane.Autodeobf;
+
+/**
+ * Decompiles the stripped galimulator jar produced by the {@link GslDeobfGalimulatorTask} and writes a copy
+ * of the runtime jar whose line numbers match the decompiled sources.
+ *
+ * <p>As the decompiled sources are only consumed by IDEs, compilation does not depend on this task.
+ * The stripped and runtime jars are left untouched so that the task can run independently of compilation.
+ *
+ * <p>The decompilation cache used to skip unchanged classes is stored next to the outputs, but is not needed
+ * to produce them. Outputs restored from the build cache merely cause all classes to be decompiled once the inputs change.
+ */
+@CacheableTask
+public abstract class GslGenSourcesTask extends ConventionTask {
+
+    @TaskAction
+    public void generate() {
+        GslStarplanePlugin.generateSources(super.getLogger(), this.getStrippedJar().get().getAsFile().toPath(), this.getRuntimeJar().get().getAsFile().toPath(),
+                this.getSourcesJar().get().getAsFile().toPath(), this.getLineMappedRuntimeJar().get().getAsFile().toPath(),
+                this.getLibraries().getFiles(), this.getObfuscationService().get().getObfuscationHandler());
+    }
+
+    /**
+     * Obtains the options passed to the decompiler that influence the decompiled sources.
+     *
+     * @return The decompiler options
+     */
+    @Input
+    public Map<String, String> getDecompilerOptions() {
+        return GslStarplanePlugin.getDecompilerOptions();
+    }
+
+    @Input
+    public String getDeobfuscatorVersion() {
+        return Autodeobf.getVersion();
+    }
+
+    /**
+     * Obtains the libraries of galimulator, which are supplied to the decompiler.
+     *
+     * @return The galimulator libraries
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getLibraries();
+
+    @OutputFile
+    public abstract RegularFileProperty getLineMappedRuntimeJar();
+
+    /**
+     * Obtains the mapping files that are applied on the galimulator jar. Supplementary mappings
+     * may carry the javadocs that are inserted into the decompiled sources.
+     *
+     * @return The mapping files
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract ConfigurableFileCollection getMappingFiles();
+
+    @Internal
+    public abstract Property<GslObfuscationService> getObfuscationService();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getRuntimeJar();
+
+    @OutputFile
+    public abstract RegularFileProperty getSourcesJar();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getStrippedJar();
+}
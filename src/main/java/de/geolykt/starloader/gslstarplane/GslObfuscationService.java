@@ -0,0 +1,114 @@
+package de.geolykt.starloader.gslstarplane;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import de.geolykt.starplane.ObfuscationHandler;
+import de.geolykt.starplane.SharedCache;
+import de.geolykt.starplane.remapping.MIOContainerFormat;
+import de.geolykt.starplane.remapping.MIOMappingTreeProvider;
+
+/**
+ * Holds the {@link ObfuscationHandler} of a project, so that tasks can obtain it without accessing the project
+ * while they are executed. The handler is created on first use from the parameters of the service, which are
+ * derived from the {@link GslExtension} of the project.
+ */
+public abstract class GslObfuscationService implements BuildService<GslObfuscationService.Parameters> {
+
+    /**
+     * A supplementary mappings file along with the format it is stored in.
+     */
+    public static final class MappingsFile {
+        @NotNull
+        private final File file;
+        @NotNull
+        private final MIOContainerFormat format;
+
+        public MappingsFile(@NotNull MIOContainerFormat format, @NotNull File file) {
+            this.format = format;
+            this.file = file;
+        }
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        /**
+         * Obtains the project-local directory in which the transformed jars and intermediary files are stored.
+         *
+         * @return The cache directory
+         */
+        DirectoryProperty getCacheDirectory();
+
+        ListProperty<MappingsFile> getMappingsFiles();
+
+        DirectoryProperty getProjectDirectory();
+
+        /**
+         * Obtains the contents of the reversible access setter to apply. Left unset if no reversible access setter is applied.
+         *
+         * @return The contents of the reversible access setter
+         */
+        Property<String> getReversibleAccessSetter();
+
+        /**
+         * Obtains the directory of the cache shared with other projects. Left unset if no cache is shared.
+         *
+         * @return The directory of the shared cache
+         */
+        DirectoryProperty getSharedCacheDirectory();
+
+        ListProperty<File> getSoftmapFiles();
+    }
+
+    @Nullable
+    private ObfuscationHandler obfuscationHandler;
+
+    /**
+     * Obtains the {@link ObfuscationHandler} of the project, creating it on first use. This resolves the configurations
+     * holding softmap and supplementary mapping files, and thus should only be done once the handler is actually needed.
+     *
+     * @return The obfuscation handler of the project
+     */
+    @NotNull
+    public synchronized ObfuscationHandler getObfuscationHandler() {
+        ObfuscationHandler oHandler = this.obfuscationHandler;
+        if (oHandler != null) {
+            return oHandler;
+        }
+
+        Parameters parameters = this.getParameters();
+        Set<@NotNull Path> softmapFiles = new HashSet<>();
+        for (File f : parameters.getSoftmapFiles().get()) {
+            softmapFiles.add(f.toPath());
+        }
+
+        List<@NotNull MIOMappingTreeProvider> supplementaryMappings = new ArrayList<>();
+        for (MappingsFile mappingsFile : parameters.getMappingsFiles().get()) {
+            supplementaryMappings.add(new MIOMappingTreeProvider(mappingsFile.format, mappingsFile.file.toPath()));
+        }
+
+        SharedCache sharedCache = null;
+        if (parameters.getSharedCacheDirectory().isPresent()) {
+            sharedCache = new SharedCache(parameters.getSharedCacheDirectory().get().getAsFile().toPath());
+        }
+
+        Path cacheDir = parameters.getCacheDirectory().get().getAsFile().toPath();
+        Path projectDir = parameters.getProjectDirectory().get().getAsFile().toPath();
+        oHandler = new ObfuscationHandler(cacheDir, projectDir, parameters.getReversibleAccessSetter().getOrNull(),
+                Collections.unmodifiableSet(softmapFiles), Collections.unmodifiableList(supplementaryMappings), sharedCache);
+        this.obfuscationHandler = oHandler;
+        return oHandler;
+    }
+}
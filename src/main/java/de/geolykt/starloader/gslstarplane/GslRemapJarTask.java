@@ -47,11 +47,7 @@ public abstract class GslRemapJarTask extends Jar {
                 }
             }
 
-            ObfuscationHandler oHandler = super.getProject().getExtensions().getByType(GslExtension.class).obfuscationHandler;
-
-            if (oHandler == null) {
-                throw new IllegalStateException("Obfuscation handler not set for this project: " + super.getProject().getName());
-            }
+            ObfuscationHandler oHandler = GslStarplanePlugin.getObfuscationHandler(super.getProject());
 
             Set<@NotNull Path> includes = new HashSet<>();
             for (Object fromJar : this.fromJars) {
@@ -9,17 +9,22 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.WeakHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -27,10 +32,15 @@ import java.util.zip.ZipOutputStream;
 import org.gradle.api.NamedDomainObjectProvider;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.api.UnknownDomainObjectException;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.JavaExec;
 import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.plugins.ide.eclipse.model.Classpath;
 import org.gradle.plugins.ide.eclipse.model.ClasspathEntry;
 import org.gradle.plugins.ide.eclipse.model.Container;
@@ -40,39 +50,89 @@ import org.jetbrains.java.decompiler.main.Fernflower;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger.Severity;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
 import org.json.JSONArray;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.Label;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.InnerClassNode;
 import org.slf4j.LoggerFactory;
 
 import de.geolykt.starplane.Autodeobf;
 import de.geolykt.starplane.JarStripper;
 import de.geolykt.starplane.JarStripper.MavenId;
 import de.geolykt.starplane.ObfuscationHandler;
+import de.geolykt.starplane.ParallelJarReader;
+import de.geolykt.starplane.ResidentCache;
+import de.geolykt.starplane.SharedCache;
+import de.geolykt.starplane.Utils;
 import de.geolykt.starplane.remapping.CommentLookup;
 import de.geolykt.starplane.remapping.MIOContainerFormat;
-import de.geolykt.starplane.remapping.MIOMappingTreeProvider;
+import de.geolykt.starplane.sourcegen.DecompilationCache;
 import de.geolykt.starplane.sourcegen.EnhancedJarSaver;
 import de.geolykt.starplane.sourcegen.FernflowerLoggerAdapter;
 import de.geolykt.starplane.sourcegen.JavadocSource;
+import de.geolykt.starplane.sourcegen.LibraryPruner;
+import de.geolykt.starplane.sourcegen.LineMappingTable;
+import de.geolykt.starplane.sourcegen.LineNumberRewriter;
 import net.fabricmc.fernflower.api.IFabricJavadocProvider;
 
 public class GslStarplanePlugin implements Plugin<Project> {
 
     public static final String TASK_GROUP = "GslStarplane";
+    @NotNull
+    private static final String COMPILE_JAR_FILE_NAME = "galimulator-remapped.jar";
+    @NotNull
+    private static final String DECOMPILATION_CACHE_FILE_NAME = "decompilation-cache.bin";
+    public static final String DEOBF_TASK_NAME = "deobfGalimulator";
+    @NotNull
+    private static final String RUNTIME_JAR_FILE_NAME = "galimulator-remapped-rt.jar";
+    @NotNull
+    private static final String RUNTIME_LINE_MAPPED_JAR_FILE_NAME = "galimulator-remapped-rt-linemapped.jar";
+    public static final String SOURCES_TASK_NAME = "genGalimulatorSources";
+    @NotNull
+    private static final String SHARED_LINE_MAPPINGS_FILE_NAME = "line-mappings.bin";
+    @NotNull
+    private static final String SHARED_SOURCES_FILE_NAME = "sources.jar";
     public static final String GALIM_DEPS_CONFIGURATION_NAME = "galimulatorDependencies";
     public static final String DEV_RUNTIME_CONFIGURATION_NAME = "devRuntime";
     static final WeakHashMap<Project, JavaExec> RUN_TASKS = new WeakHashMap<>();
 
     public void apply(Project project) {
         project.getExtensions().create(GslExtension.class, "starplane", GslExtension.class);
-        project.afterEvaluate(GslStarplanePlugin::runDeobf);
+        project.afterEvaluate(GslStarplanePlugin::setupDependencies);
+        project.afterEvaluate(GslStarplanePlugin::setupRunTask);
         project.afterEvaluate(GslStarplanePlugin::setupEEA);
+        GslStarplanePlugin.registerGalimulatorDependencies(project);
+        Provider<GslObfuscationService> obfuscationService = GslStarplanePlugin.getObfuscationService(project);
+        TaskProvider<GslDeobfGalimulatorTask> deobfTask = project.getTasks().register(GslStarplanePlugin.DEOBF_TASK_NAME, GslDeobfGalimulatorTask.class, (task) -> {
+            task.setDescription("Transform and strip the galimulator jar.");
+            task.setGroup(GslStarplanePlugin.TASK_GROUP);
+            task.getObfuscationService().set(obfuscationService);
+            task.usesService(obfuscationService);
+            task.getLibraries().from(project.getConfigurations().named(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME));
+            task.getGalimulatorJar().fileProvider(project.provider(() -> GslStarplanePlugin.getObfuscationHandler(project).getOriginalGalimulatorJar().toFile()));
+            task.getMappingFiles().from((Callable<List<Object>>) () -> GslStarplanePlugin.getMappingNotations(project));
+            task.getCompileJar().fileProvider(project.provider(() -> GslStarplanePlugin.getCacheDirectory(project).resolve(GslStarplanePlugin.COMPILE_JAR_FILE_NAME).toFile()));
+            task.getRuntimeJar().fileProvider(project.provider(() -> GslStarplanePlugin.getCacheDirectory(project).resolve(GslStarplanePlugin.RUNTIME_JAR_FILE_NAME).toFile()));
+            task.getStrippedJar().fileProvider(project.provider(() -> GslStarplanePlugin.getCacheDirectory(project).resolve("galimulator-remapped-stripped-" + Autodeobf.getVersion() + ".jar").toFile()));
+        });
+        TaskProvider<GslGenSourcesTask> sourcesTask = project.getTasks().register(GslStarplanePlugin.SOURCES_TASK_NAME, GslGenSourcesTask.class, (task) -> {
+            task.setDescription("Decompile the stripped galimulator jar and match the line numbers of the runtime jar to the decompiled sources.");
+            task.setGroup(GslStarplanePlugin.TASK_GROUP);
+            task.getObfuscationService().set(obfuscationService);
+            task.usesService(obfuscationService);
+            task.getStrippedJar().set(deobfTask.flatMap(GslDeobfGalimulatorTask::getStrippedJar));
+            task.getRuntimeJar().set(deobfTask.flatMap(GslDeobfGalimulatorTask::getRuntimeJar));
+            task.getLibraries().from(project.getConfigurations().named(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME));
+            task.getMappingFiles().from((Callable<List<Object>>) () -> GslStarplanePlugin.getMappingNotations(project));
+            task.getSourcesJar().fileProvider(project.provider(() -> GslStarplanePlugin.getCacheDirectory(project).resolve("galimulator-remapped-stripped-" + Autodeobf.getVersion() + "-sources.jar").toFile()));
+            task.getLineMappedRuntimeJar().fileProvider(project.provider(() -> GslStarplanePlugin.getCacheDirectory(project).resolve(GslStarplanePlugin.RUNTIME_LINE_MAPPED_JAR_FILE_NAME).toFile()));
+        });
+        project.getPlugins().withType(JavaPlugin.class, (plugin) -> {
+            project.getTasks().named(JavaPlugin.COMPILE_JAVA_TASK_NAME).configure((task) -> task.dependsOn(deobfTask));
+        });
+        // The IDEs are the only consumers of the sources jar, so only their tasks need to wait on the decompiler
+        project.getPlugins().withId("eclipse", (plugin) -> {
+            project.getTasks().named("eclipse").configure((task) -> task.dependsOn(sourcesTask));
+        });
+        project.getPlugins().withId("idea", (plugin) -> {
+            project.getTasks().named("idea").configure((task) -> task.dependsOn(sourcesTask));
+        });
         project.getTasks().register("remapJar", GslRemapJarTask.class, (task) -> {
             task.setDescription("Remap deobfuscated jars to use obfuscated mappings.");
             task.setGroup(GslStarplanePlugin.TASK_GROUP);
@@ -92,9 +152,264 @@ public class GslStarplanePlugin implements Plugin<Project> {
         project.getTasks().register("genEclipseRuns", GslGenEclipseRunsTask.class, (task) -> {
             task.setDescription("Generate eclipse *.launch files");
             task.setGroup(GslStarplanePlugin.TASK_GROUP);
+            task.dependsOn(deobfTask);
+        });
+    }
+
+    /**
+     * Ensures that the transformed galimulator jars exist and are up to date should they be needed
+     * before the {@link #DEOBF_TASK_NAME deobfGalimulator} task ran, for example when the compile classpath
+     * is resolved by an IDE.
+     *
+     * <p>If no tasks were requested, as is the case when an IDE imports the project, the sources jar
+     * is generated as well should it be missing or outdated. Otherwise source generation is left to the
+     * {@link #SOURCES_TASK_NAME genGalimulatorSources} task so that it does not delay compilation.
+     */
+    private static void ensureGalimulatorJars(@NotNull Project project) {
+        Path cacheDir = GslStarplanePlugin.getCacheDirectory(project);
+        Path compileStripped = cacheDir.resolve("galimulator-remapped-stripped-" + Autodeobf.getVersion() + ".jar");
+        Set<File> transitiveDeps = project.getConfigurations().getByName(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME).resolve();
+        Task deobfTask = project.getTasks().findByName(GslStarplanePlugin.DEOBF_TASK_NAME);
+        if (deobfTask == null || !deobfTask.getState().getExecuted()) {
+            GslStarplanePlugin.resolve(project.getLogger(), compileStripped, transitiveDeps, GslStarplanePlugin.getObfuscationHandler(project));
+        }
+
+        if (Boolean.getBoolean("org.stianloader.starplane.skipDecompile")
+                || !project.getGradle().getStartParameter().getTaskNames().isEmpty()) {
+            return;
+        }
+
+        Task sourcesTask = project.getTasks().findByName(GslStarplanePlugin.SOURCES_TASK_NAME);
+        if (sourcesTask != null && sourcesTask.getState().getExecuted()) {
+            return;
+        }
+
+        Path compileStrippedSource = cacheDir.resolve("galimulator-remapped-stripped-" + Autodeobf.getVersion() + "-sources.jar");
+        Path runtimeLarge = cacheDir.resolve(GslStarplanePlugin.RUNTIME_JAR_FILE_NAME);
+        Path runtimeLineMapped = cacheDir.resolve(GslStarplanePlugin.RUNTIME_LINE_MAPPED_JAR_FILE_NAME);
+        if (GslStarplanePlugin.isOutdated(compileStrippedSource, compileStripped) || GslStarplanePlugin.isOutdated(runtimeLineMapped, runtimeLarge)) {
+            GslStarplanePlugin.generateSources(project.getLogger(), compileStripped, runtimeLarge, compileStrippedSource, runtimeLineMapped, transitiveDeps, GslStarplanePlugin.getObfuscationHandler(project));
+        }
+    }
+
+    @NotNull
+    static Path getCacheDirectory(@NotNull Project project) {
+        return project.getLayout().getBuildDirectory().getAsFile().get().toPath().resolve("gsl-starplane");
+    }
+
+    /**
+     * Obtains a fingerprint of everything aside from the galimulator classes themselves that influences the decompiled sources.
+     * Libraries are identified through their contents, as the decompiler uses them to resolve the classes referenced by galimulator.
+     */
+    @NotNull
+    private static String getDecompilationFingerprint(Set<File> transitiveDeps, @NotNull ObfuscationHandler obfHandler) throws IOException {
+        List<String> libraries = new ArrayList<>();
+        for (File transitiveDep : transitiveDeps) {
+            Path library = transitiveDep.toPath();
+            String checksum = "missing";
+            if (Files.isRegularFile(library)) {
+                // Library jars seldom change, so their checksums are kept in memory for as long as their size and modification time stay the same
+                checksum = ResidentCache.get("checksum", library, ResidentCache.getFileFingerprint(library), () -> Utils.getChecksum(transitiveDep));
+            }
+            libraries.add(transitiveDep.getName() + ' ' + checksum);
+        }
+        Collections.sort(libraries);
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(GslStarplanePlugin.getDecompilerVersion()).append('\n');
+        fingerprint.append(ObfuscationHandler.getStarplaneChecksum()).append('\n');
+        fingerprint.append(obfHandler.getJavadocLookupFingerprint()).append('\n');
+        for (Map.Entry<String, String> option : GslStarplanePlugin.getDecompilerOptions().entrySet()) {
+            fingerprint.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+        }
+        return fingerprint.append(String.join("\n", libraries)).toString();
+    }
+
+    /**
+     * Obtains the version of the decompiler, as declared by the manifest of its jar. Should the manifest not be available,
+     * the decompiler is identified through a hash of its main class instead.
+     */
+    @NotNull
+    private static String getDecompilerVersion() throws IOException {
+        String version = Fernflower.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try (InputStream in = Fernflower.class.getResourceAsStream("Fernflower.class")) {
+            if (in == null) {
+                throw new IOException("Unable to locate the class file of the decompiler");
+            }
+            return "unknown-" + Integer.toHexString(Arrays.hashCode(Utils.readAllBytes(in)));
+        }
+    }
+
+    /**
+     * Obtains the options passed to the decompiler that influence the decompiled sources, sorted by their name.
+     * Options that only influence how the decompiler runs, such as the amount of threads, are not included.
+     */
+    @NotNull
+    static Map<String, String> getDecompilerOptions() {
+        Map<String, String> options = new TreeMap<>();
+        options.put(IFernflowerPreferences.INDENT_STRING, "    "); // Default is 3 Spaces, which is nonsense
+        options.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1"); // Default is false, which is nonsense
+        options.put(IFernflowerPreferences.VERIFY_ANONYMOUS_CLASSES, "1");
+        options.put(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING, "1");
+        options.put(IFernflowerPreferences.DUMP_CODE_LINES, "1");
+        options.put(IFernflowerPreferences.DUMP_ORIGINAL_LINES, "1");
+        options.put(IFernflowerPreferences.REMOVE_SYNTHETIC, "0"); // While it is a nice tool to see how good our deobfuscator is, sometimes it isn't that good
+        int methodTimeout = Integer.getInteger("de.geolykt.starplane.decompileMethodTimeout", 0);
+        if (methodTimeout > 0) {
+            // Methods that take longer are emitted with a stub body, so that a single method cannot stall the entire decompilation
+            options.put(IFernflowerPreferences.MAX_PROCESSING_METHOD, Integer.toString(methodTimeout));
+        }
+        return options;
+    }
+
+    @NotNull
+    private static Path getLineMappingTableFile(@NotNull Path compileStrippedSource) {
+        return compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".lines");
+    }
+
+    @NotNull
+    private static List<Object> getMappingNotations(@NotNull Project project) {
+        GslExtension extension = project.getExtensions().getByType(GslExtension.class);
+        List<Object> notations = new ArrayList<>(extension.softmapMappings);
+        for (Map.Entry<@NotNull MIOContainerFormat, @NotNull Object> e : extension.mappings) {
+            notations.add(e.getValue());
+        }
+        if (extension.reversibleAccessSetter != null) {
+            notations.add(extension.reversibleAccessSetter);
+        }
+        return notations;
+    }
+
+    /**
+     * Obtains the {@link ObfuscationHandler} of a project, creating it on first use.
+     *
+     * @param project The project
+     * @return The obfuscation handler of the project
+     */
+    @NotNull
+    static ObfuscationHandler getObfuscationHandler(@NotNull Project project) {
+        return GslStarplanePlugin.getObfuscationService(project).get().getObfuscationHandler();
+    }
+
+    /**
+     * Obtains the {@link GslObfuscationService} holding the {@link ObfuscationHandler} of a project, registering it on first use.
+     * The parameters of the service are only derived from the {@link GslExtension} once the service is first used.
+     *
+     * @param project The project
+     * @return The obfuscation service of the project
+     */
+    @NotNull
+    static Provider<GslObfuscationService> getObfuscationService(@NotNull Project project) {
+        GslExtension extension = project.getExtensions().getByType(GslExtension.class);
+        return project.getGradle().getSharedServices().registerIfAbsent("gslStarplaneObfuscation" + project.getPath(), GslObfuscationService.class, (spec) -> {
+            GslObfuscationService.Parameters parameters = spec.getParameters();
+            parameters.getCacheDirectory().set(project.getLayout().getBuildDirectory().dir("gsl-starplane"));
+            parameters.getProjectDirectory().set(project.getLayout().getProjectDirectory());
+            parameters.getReversibleAccessSetter().set(project.provider(() -> extension.getRASContents(project)));
+            parameters.getSoftmapFiles().set(project.provider(() -> GslStarplanePlugin.getSoftmapFiles(project, extension)));
+            parameters.getMappingsFiles().set(project.provider(() -> GslStarplanePlugin.getSupplementaryMappingsFiles(project, extension)));
+            if (Boolean.getBoolean("de.geolykt.starplane.sharedCache")) {
+                parameters.getSharedCacheDirectory().set(project.getGradle().getGradleUserHomeDir().toPath().resolve("caches").resolve("gsl-starplane").toFile());
+            }
         });
     }
 
+    @NotNull
+    private static List<File> getSoftmapFiles(@NotNull Project project, @NotNull GslExtension extension) {
+        List<File> softmapFiles = new ArrayList<>();
+        for (Object notation : extension.softmapMappings) {
+            if (notation instanceof Configuration) {
+                softmapFiles.addAll(((Configuration) notation).resolve());
+            } else if (notation instanceof Path) {
+                softmapFiles.add(((Path) notation).toFile());
+            } else {
+                softmapFiles.add(project.file(notation));
+            }
+        }
+        return softmapFiles;
+    }
+
+    @NotNull
+    private static List<GslObfuscationService.MappingsFile> getSupplementaryMappingsFiles(@NotNull Project project, @NotNull GslExtension extension) {
+        List<GslObfuscationService.MappingsFile> supplementaryMappings = new ArrayList<>();
+        for (Map.Entry<@NotNull MIOContainerFormat, @NotNull Object> e : extension.mappings) {
+            Object notation = e.getValue();
+            if (notation instanceof Configuration) {
+                for (File f : ((Configuration) notation).resolve()) {
+                    supplementaryMappings.add(new GslObfuscationService.MappingsFile(e.getKey(), f));
+                }
+            } else if (notation instanceof Path) {
+                supplementaryMappings.add(new GslObfuscationService.MappingsFile(e.getKey(), ((Path) notation).toFile()));
+            } else {
+                supplementaryMappings.add(new GslObfuscationService.MappingsFile(e.getKey(), project.file(notation)));
+            }
+        }
+        return supplementaryMappings;
+    }
+
+    /**
+     * Obtains the transformed galimulator jar with compile-time access without checking whether it is up to date
+     * if the {@link #DEOBF_TASK_NAME deobfGalimulator} task already ran.
+     */
+    @NotNull
+    private static Path getTransformedGalimulatorJar(@NotNull Project project) {
+        Task deobfTask = project.getTasks().findByName(GslStarplanePlugin.DEOBF_TASK_NAME);
+        if (deobfTask != null && deobfTask.getState().getExecuted()) {
+            return GslStarplanePlugin.getCacheDirectory(project).resolve(GslStarplanePlugin.COMPILE_JAR_FILE_NAME);
+        }
+        return GslStarplanePlugin.getObfuscationHandler(project).getTransformedGalimulatorJar();
+    }
+
+    /**
+     * Checks whether a derived file is missing or was last modified before the file it is derived from.
+     */
+    private static boolean isOutdated(@NotNull Path derived, @NotNull Path source) {
+        try {
+            return Files.notExists(derived) || Files.getLastModifiedTime(derived).compareTo(Files.getLastModifiedTime(source)) < 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void registerGalimulatorDependencies(@NotNull Project project) {
+        NamedDomainObjectProvider<Configuration> galimDepsConfig = null;
+        try {
+            galimDepsConfig = project.getConfigurations().named(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME);
+        } catch (UnknownDomainObjectException e) {
+            galimDepsConfig = project.getConfigurations().register(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME);
+        }
+
+        // The dependencies are only known once the galimulator jar was transformed, so they are added once the configuration is resolved
+        galimDepsConfig.configure((configuration) -> {
+            configuration.withDependencies((dependencies) -> {
+                Set<MavenId> deps;
+                // We could probably make that step quicker (through caching) but whatever - this works (TM)
+                try (InputStream is = Files.newInputStream(GslStarplanePlugin.getTransformedGalimulatorJar(project))) {
+                    deps = new JarStripper().getShadedDependencies(is);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                for (MavenId dep : deps) {
+                    dependencies.add(project.getDependencies().create(dep.toGAVNotation()));
+                }
+            });
+        });
+    }
+
+    private static void setupDependencies(Project project) {
+        Path cacheDir = GslStarplanePlugin.getCacheDirectory(project);
+        project.getRepositories().flatDir((repo) -> {
+            repo.dir(cacheDir);
+            repo.setName("generated-galimulator-remapped");
+            LoggerFactory.getLogger(GslExtension.class).info("GslStarplane repository path set to {}", repo.getDirs());
+        });
+
+        project.getDependencies().add("compileOnly", ":galimulator-remapped-stripped:" + Autodeobf.getVersion());
+        project.getConfigurations().getByName("compileOnly").withDependencies((dependencies) -> GslStarplanePlugin.ensureGalimulatorJars(project));
+    }
+
     private static void setupEEA(Project project) {
         GslExtension extension = project.getExtensions().getByType(GslExtension.class);
         if (extension.eclipseEEA == null) {
@@ -126,47 +441,8 @@ public class GslStarplanePlugin implements Plugin<Project> {
         });
     }
 
-    private static void runDeobf(Project project) {
+    private static void setupRunTask(Project project) {
         GslExtension extension = project.getExtensions().getByType(GslExtension.class);
-        if (extension.obfuscationHandler != null) {
-            return;
-        }
-
-        Path altCache = project.getLayout().getBuildDirectory().getAsFile().get().toPath().resolve("gsl-starplane");
-
-        Set<@NotNull Path> softmapFiles = new HashSet<>();
-        for (Object notation : extension.softmapMappings) {
-            if (notation instanceof Configuration) {
-                for (File f : ((Configuration) notation).resolve()) {
-                    softmapFiles.add(f.toPath());
-                }
-            } else if (notation instanceof Path) {
-                softmapFiles.add((Path) notation);
-            } else {
-                softmapFiles.add(project.file(notation).toPath());
-            }
-        }
-
-        List<@NotNull MIOMappingTreeProvider> supplementaryMappings = new ArrayList<>();
-        for (Map.Entry<@NotNull MIOContainerFormat, @NotNull Object> e : extension.mappings) {
-            Object notation = e.getValue();
-            if (notation instanceof Configuration) {
-                for (File f : ((Configuration) notation).resolve()) {
-                    supplementaryMappings.add(new MIOMappingTreeProvider(e.getKey(), f.toPath()));
-                }
-            } else if (notation instanceof Path) {
-                supplementaryMappings.add(new MIOMappingTreeProvider(e.getKey(), (Path) notation));
-            } else {
-                supplementaryMappings.add(new MIOMappingTreeProvider(e.getKey(), project.file(notation).toPath()));
-            }
-        }
-
-        softmapFiles = Collections.unmodifiableSet(softmapFiles);
-        supplementaryMappings = Collections.unmodifiableList(supplementaryMappings);
-
-        ObfuscationHandler oHandler = new ObfuscationHandler(altCache, project.getProjectDir().toPath(), extension.getRASContents(project), softmapFiles, supplementaryMappings);
-        extension.obfuscationHandler = oHandler;
-        resolve(project, oHandler);
         JavaExec runTask = GslStarplanePlugin.RUN_TASKS.get(project);
 
         if (runTask != null) {
@@ -179,10 +455,49 @@ public class GslStarplanePlugin implements Plugin<Project> {
         }
     }
 
+    /**
+     * Decompiles the stripped galimulator jar and writes a copy of the runtime jar whose line numbers match
+     * the decompiled sources. The galimulator jar needs to be {@link #resolve(Logger, Path, Set, ObfuscationHandler) transformed} beforehand.
+     *
+     * @param logger The logger to report the progress to
+     * @param compileStripped The stripped galimulator jar with compile-time access
+     * @param runtimeLarge The complete galimulator jar with runtime access
+     * @param compileStrippedSource The jar to write the decompiled sources of the stripped galimulator jar to
+     * @param runtimeLineMapped The jar to write the runtime jar with line numbers matching the decompiled sources to
+     * @param transitiveDeps The libraries of galimulator
+     * @param obfHandler The obfuscation handler of the project
+     */
+    public static void generateSources(@NotNull Logger logger, @NotNull Path compileStripped, @NotNull Path runtimeLarge, @NotNull Path compileStrippedSource,
+            @NotNull Path runtimeLineMapped, Set<File> transitiveDeps, @NotNull ObfuscationHandler obfHandler) {
+        try {
+            Map<String, int[]> lineMappings;
+            SharedCache sharedCache = obfHandler.getSharedCache();
+            if (sharedCache == null) {
+                lineMappings = GslStarplanePlugin.decompileSources(logger, compileStripped, compileStrippedSource, transitiveDeps, obfHandler);
+            } else {
+                lineMappings = GslStarplanePlugin.decompileShared(logger, sharedCache, compileStripped, compileStrippedSource, transitiveDeps, obfHandler);
+            }
+
+            logger.info("Replacing line mappings");
+            LineNumberRewriter.rewrite(runtimeLarge, runtimeLineMapped, lineMappings);
+            logger.info("Line mappings replaced");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        logger.info("GslStarplane generated sources at {} ({})", compileStrippedSource, compileStrippedSource.toAbsolutePath());
+    }
+
     static String getBootPath(Project p) {
         JSONArray bootPath = new JSONArray();
         try {
-            bootPath.put(p.getExtensions().getByType(GslExtension.class).obfuscationHandler.getTransformedGalimulatorJar().toAbsolutePath().resolveSibling("galimulator-remapped-rt.jar").toUri().toURL().toExternalForm());
+            Path runtimeJar = GslStarplanePlugin.getCacheDirectory(p).resolve(GslStarplanePlugin.RUNTIME_JAR_FILE_NAME);
+            Path runtimeLineMapped = runtimeJar.resolveSibling(GslStarplanePlugin.RUNTIME_LINE_MAPPED_JAR_FILE_NAME);
+            // Prefer the jar whose line numbers match the decompiled sources, unless it was generated from an older runtime jar
+            if (!GslStarplanePlugin.isOutdated(runtimeLineMapped, runtimeJar)) {
+                runtimeJar = runtimeLineMapped;
+            }
+            bootPath.put(runtimeJar.toAbsolutePath().toUri().toURL().toExternalForm());
             for (File f : p.getConfigurations().getByName(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME).resolve()) {
                 bootPath.put(f.toURI().toURL().toExternalForm());
             }
@@ -192,36 +507,19 @@ public class GslStarplanePlugin implements Plugin<Project> {
         return "-Dde.geolykt.starloader.launcher.IDELauncher.bootURLs=" +  bootPath.toString();
     }
 
-    public static void resolve(Project project, ObfuscationHandler obfHandler) {
+    /**
+     * Transforms the galimulator jar should it be missing or outdated, and strips the shaded dependencies from it.
+     *
+     * @param logger The logger to report the progress to
+     * @param compileStripped The jar to write the stripped galimulator jar with compile-time access to
+     * @param transitiveDeps The libraries of galimulator, whose classes are stripped from the galimulator jar
+     * @param obfHandler The obfuscation handler of the project
+     */
+    public static void resolve(@NotNull Logger logger, @NotNull Path compileStripped, Set<File> transitiveDeps, @NotNull ObfuscationHandler obfHandler) {
         // compileLarge = complete galimulator jar with compile access (intermediary product)
-        // compileStripped = stripped galimulator jar with compile access
-        // compileStrippedSource = decompiled stripped galimulator jar with compile-time accesss
-        // runtimeLarge = complete galimulator jar with runtime access
         Path compileLarge = obfHandler.getTransformedGalimulatorJar();
-        Path compileStripped = compileLarge.resolveSibling("galimulator-remapped-stripped-" + Autodeobf.getVersion() + ".jar");
-        Path compileStrippedSource = compileLarge.resolveSibling("galimulator-remapped-stripped-" + Autodeobf.getVersion() + "-sources.jar");
-        Path runtimeLarge = compileLarge.resolveSibling("galimulator-remapped-rt.jar");
 
         JarStripper stripper = new JarStripper();
-        NamedDomainObjectProvider<Configuration> galimDepsConfig = null;
-        try {
-            galimDepsConfig = project.getConfigurations().named(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME);
-        } catch (UnknownDomainObjectException e) {
-            galimDepsConfig = project.getConfigurations().register(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME);
-        }
-
-        Set<MavenId> deps;
-        // We could probably make that step quicker (through caching) but whatever - this works (TM)
-        try (InputStream is = Files.newInputStream(compileLarge)) {
-            deps = stripper.getShadedDependencies(is);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-        for (MavenId dep : deps) {
-            project.getDependencies().add(GslStarplanePlugin.GALIM_DEPS_CONFIGURATION_NAME, dep.toGAVNotation());
-        }
-
-        Set<File> transitiveDeps = galimDepsConfig.get().resolve();
 
         if (obfHandler.didRefresh || Files.notExists(compileStripped)) {
             try {
@@ -244,163 +542,246 @@ public class GslStarplanePlugin implements Plugin<Project> {
             }
         }
 
-        if (obfHandler.didRefresh || Files.notExists(compileStrippedSource) && !Boolean.getBoolean("org.stianloader.starplane.skipDecompile")) {
-            try {
-                GslStarplanePlugin.decompile(project, runtimeLarge, compileStripped, compileStrippedSource, transitiveDeps, obfHandler.getJavadocLookup());
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        }
+        logger.info("GslStarplane refresh sucess with remapped artifact at {} ({})", compileStripped, compileStripped.toAbsolutePath());
 
-        project.getRepositories().flatDir((repo) -> {
-            repo.dir(compileLarge.getParent());
-            repo.setName("generated-galimulator-remapped");
-            LoggerFactory.getLogger(GslExtension.class).info("GslStarplane repository path set to {}", repo.getDirs());
-        });
+        obfHandler.didRefresh = false; // Everything else was reset so we can dare to reset that flag should this method be called multiple times
+    }
 
-        project.getDependencies().add("compileOnly", ":galimulator-remapped-stripped:" + Autodeobf.getVersion());
+    /**
+     * Decompiles the stripped jar, reusing the sources and line mappings of the shared cache if another project
+     * already decompiled the same jar. Otherwise the decompiled sources are published to the shared cache.
+     */
+    @NotNull
+    private static Map<String, int[]> decompileShared(@NotNull Logger logger, @NotNull SharedCache sharedCache, @NotNull Path compileStripped,
+            @NotNull Path compileStrippedSource, Set<File> transitiveDeps, @NotNull ObfuscationHandler obfHandler) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String fingerprint = GslStarplanePlugin.getDecompilationFingerprint(transitiveDeps, obfHandler);
+        digest.update(Files.readAllBytes(compileStripped));
+        digest.update((Autodeobf.getVersion() + '\n' + fingerprint).getBytes(StandardCharsets.UTF_8));
+        // Entries of the "sources-" prefix store the line mappings in the format preceding LineMappingTable
+        StringBuilder key = new StringBuilder("sources-v2-");
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
 
-        LoggerFactory.getLogger(GslExtension.class).info("GslStarplane refresh sucess with remapped artifact at {} ({}) & source at {} ({})", compileStripped, compileStripped.toAbsolutePath(), compileStrippedSource, compileStrippedSource.toAbsolutePath());
+        Path lineTableFile = GslStarplanePlugin.getLineMappingTableFile(compileStrippedSource);
+        try (SharedCache.Lock lock = sharedCache.lock(key.toString())) {
+            Path entry = sharedCache.getEntry(key.toString());
+            if (entry != null && sharedCache.restore(entry, GslStarplanePlugin.SHARED_SOURCES_FILE_NAME, compileStrippedSource)
+                    && sharedCache.restore(entry, GslStarplanePlugin.SHARED_LINE_MAPPINGS_FILE_NAME, lineTableFile)) {
+                LineMappingTable lineTable = LineMappingTable.read(lineTableFile, fingerprint);
+                if (lineTable != null) {
+                    logger.info("Restored the decompiled galimulator sources from the shared cache");
+                    return lineTable.getLineMappings();
+                }
+            }
 
-        obfHandler.didRefresh = false; // Everything else was reset so we can dare to reset that flag should this method be called multiple times
+            Map<String, int[]> lineMappings = GslStarplanePlugin.decompileSources(logger, compileStripped, compileStrippedSource, transitiveDeps, obfHandler);
+            try {
+                Map<@NotNull String, @NotNull Path> files = new HashMap<>();
+                files.put(GslStarplanePlugin.SHARED_SOURCES_FILE_NAME, compileStrippedSource);
+                files.put(GslStarplanePlugin.SHARED_LINE_MAPPINGS_FILE_NAME, lineTableFile);
+                sharedCache.publish(key.toString(), files);
+            } catch (IOException e) {
+                logger.warn("Unable to publish the decompiled galimulator sources to the shared cache", e);
+            }
+            return lineMappings;
+        }
     }
 
-    private static void decompile(Project project, @NotNull Path runtimeLarge, @NotNull Path compileStripped, @NotNull Path compileStrippedSource, Set<File> transitiveDeps, @NotNull CommentLookup javadocLookup) throws IOException {
-        project.getLogger().info("Decompiling galimulator");
+    /**
+     * Decompiles the classes of the given jar that changed since the last decompilation, restoring all other classes
+     * from the {@link DecompilationCache}, and writes the sources of all classes to a jar.
+     */
+    @NotNull
+    private static Map<String, int[]> decompileSources(@NotNull Logger logger, @NotNull Path compileStripped, @NotNull Path compileStrippedSource, Set<File> transitiveDeps, @NotNull ObfuscationHandler obfHandler) throws IOException {
+        Map<@NotNull String, byte @NotNull[]> classes = new HashMap<>();
+        try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(compileStripped), StandardCharsets.UTF_8)) {
+            for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                String name = entry.getName();
+                if (name.endsWith(".class")) {
+                    classes.put(name.substring(0, name.length() - 6), Utils.readAllBytes(zipIn));
+                }
+            }
+        }
+
+        Map<@NotNull String, @NotNull String> outermostClasses = DecompilationCache.getOutermostClasses(classes);
+        Map<@NotNull String, @NotNull String> keys = DecompilationCache.computeKeys(classes, outermostClasses);
 
-        // Time to decompile that stripped jar
-        Map<String, Object> args = new HashMap<>();
-        args.put(IFernflowerPreferences.INDENT_STRING, "    "); // Default is 3 Spaces, which is nonsense
-        args.put(IFernflowerPreferences.DECOMPILE_GENERIC_SIGNATURES, "1"); // Default is false, which is nonsense
-        args.put(IFernflowerPreferences.INCLUDE_ENTIRE_CLASSPATH, "1");
-        args.put(IFernflowerPreferences.LOG_LEVEL, "WARN");
-        args.put(IFernflowerPreferences.VERIFY_ANONYMOUS_CLASSES, "1");
-        args.put(IFernflowerPreferences.BYTECODE_SOURCE_MAPPING, "1");
-        args.put(IFernflowerPreferences.DUMP_CODE_LINES, "1");
-        args.put(IFernflowerPreferences.DUMP_ORIGINAL_LINES, "1");
-        args.put(IFernflowerPreferences.REMOVE_SYNTHETIC, "0"); // While it is a nice tool to see how good our deobfuscator is, sometimes it isn't that good
-        args.put(IFabricJavadocProvider.PROPERTY_NAME, new JavadocSource(javadocLookup));
+        String cacheFingerprint = GslStarplanePlugin.getDecompilationFingerprint(transitiveDeps, obfHandler);
+        Path lineTableFile = GslStarplanePlugin.getLineMappingTableFile(compileStrippedSource);
+        boolean useCache = !Boolean.getBoolean("de.geolykt.starplane.nocache");
 
-        Map<String, int[]> lineMappings = new HashMap<>();
-        try (EnhancedJarSaver jarSaver = new EnhancedJarSaver(compileStrippedSource.toFile(), lineMappings)) {
-            Fernflower qf = new Fernflower(jarSaver, args, new FernflowerLoggerAdapter(Severity.WARN));
-            qf.addSource(compileStripped.toFile());
-            for (File transitiveDep : transitiveDeps) {
-                qf.addLibrary(transitiveDep);
+        // The table is written after the sources, so a table that is older than the sources was not produced alongside them
+        if (useCache && !GslStarplanePlugin.isOutdated(lineTableFile, compileStrippedSource)) {
+            LineMappingTable lineTable = LineMappingTable.read(lineTableFile, cacheFingerprint);
+            if (lineTable != null && lineTable.isCurrent(keys)) {
+                logger.info("The decompiled galimulator sources are up to date, reusing their line mapping table");
+                return lineTable.getLineMappings();
             }
-            qf.decompileContext();
         }
 
-        project.getLogger().info("Galimulator decompiled");
-        project.getLogger().info("Replacing line mappings");
-
-        replaceLineNumbers(compileStripped, lineMappings);
-        replaceLineNumbers(runtimeLarge, lineMappings);
+        Path cacheFile = compileStrippedSource.resolveSibling(GslStarplanePlugin.DECOMPILATION_CACHE_FILE_NAME);
+        DecompilationCache cache;
+        if (useCache) {
+            cache = DecompilationCache.read(cacheFile, cacheFingerprint);
+        } else {
+            cache = new DecompilationCache();
+        }
 
-        project.getLogger().info("Line mappings replaced");
-    }
+        Set<String> staleClasses = new HashSet<>();
+        for (Map.Entry<@NotNull String, @NotNull String> e : keys.entrySet()) {
+            if (cache.get(e.getKey(), e.getValue()) == null) {
+                staleClasses.add(e.getKey());
+            }
+        }
 
-    private static void replaceLineNumbers(@NotNull Path lineReplaceTarget, Map<String, int[]> lineMappings) throws IOException {
-        Map<String, ClassNode> nameToNode = new LinkedHashMap<>();
+        if (staleClasses.isEmpty()) {
+            logger.info("Restored all {} galimulator classes from the decompilation cache", keys.size());
+        } else {
+            GslStarplanePlugin.decompileClasses(logger, compileStrippedSource, classes, outermostClasses, keys, staleClasses, transitiveDeps, obfHandler.getJavadocLookup(), cache);
+        }
 
-        try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(lineReplaceTarget), StandardCharsets.UTF_8)) {
+        // Write into a temporary file first so that an interrupted build does not leave incomplete sources behind
+        Path tempSource = compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".tmp");
+        Map<String, int[]> lineMappings = new HashMap<>();
+        Set<@NotNull String> writtenClasses = new HashSet<>();
+        try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(compileStripped), StandardCharsets.UTF_8);
+                ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(tempSource), StandardCharsets.UTF_8)) {
+            // Resources are copied over as-is, like the decompiler would do
             for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
                 if (entry.getName().endsWith(".class")) {
-                    ClassNode node = new ClassNode();
-                    ClassReader reader = new ClassReader(zipIn);
-                    reader.accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-                    nameToNode.put(node.name, node);
+                    continue;
                 }
+                zipOut.putNextEntry(new ZipEntry(entry.getName()));
+                zipOut.write(Utils.readAllBytes(zipIn));
             }
-        }
 
-        Path intermediary = Files.createTempFile("gslstarplane-linereplace-" + ThreadLocalRandom.current().nextInt(), ".jar");
-        try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(lineReplaceTarget), StandardCharsets.UTF_8);
-                ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(intermediary), StandardCharsets.UTF_8)) {
-            for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
-                zipOutputStream.putNextEntry(new ZipEntry(entry.getName()));
-                if (!entry.getName().endsWith(".class")) {
-                    byte[] buffer = new byte[4096];
-                    for (int read = zipIn.read(buffer); read != -1; read = zipIn.read(buffer)) {
-                        zipOutputStream.write(buffer, 0, read);
-                    }
+            for (String name : cache.getClassNames()) {
+                String key = keys.get(outermostClasses.getOrDefault(name, name));
+                DecompilationCache.Entry entry = key == null ? null : cache.get(name, key);
+                if (entry == null) {
                     continue;
                 }
-                ClassReader reader = new ClassReader(zipIn);
-
-                ClassNode node = nameToNode.get(reader.getClassName());
-                ClassNode outermostClassnode = node;
-                outermostNodeFinderLoop:
-                while (true) {
-                    if (outermostClassnode.outerClass != null) {
-                        outermostClassnode = nameToNode.get(outermostClassnode.outerClass);
-                        continue;
-                    }
-                    for (InnerClassNode icn : outermostClassnode.innerClasses) {
-                        if (icn.name.equals(outermostClassnode.name) && icn.outerName != null) {
-                            outermostClassnode = nameToNode.get(icn.outerName);
-                            continue outermostNodeFinderLoop;
-                        }
-                    }
-                    break;
+                zipOut.putNextEntry(new ZipEntry(name + ".java"));
+                zipOut.write(entry.getSource());
+                int[] lineMapping = entry.getLineMapping();
+                if (lineMapping != null) {
+                    lineMappings.put(name, lineMapping);
                 }
+                writtenClasses.add(name);
+            }
+        }
+        Files.move(tempSource, compileStrippedSource, StandardCopyOption.REPLACE_EXISTING);
 
-                if (node.sourceFile == null || node.sourceFile.equals("SourceFile")) {
-                    int startName = outermostClassnode.name.lastIndexOf('/') + 1;
-                    int innerSeperator = outermostClassnode.name.indexOf('$');
-                    String baseName;
-                    if (innerSeperator == -1) {
-                        baseName = outermostClassnode.name.substring(startName);
+        cache.retain(writtenClasses);
+        try {
+            cache.write(cacheFile, cacheFingerprint);
+        } catch (IOException e) {
+            logger.warn("Unable to write the decompilation cache", e);
+        }
+
+        new LineMappingTable(keys, lineMappings).write(lineTableFile, cacheFingerprint);
+
+        return lineMappings;
+    }
+
+    /**
+     * Decompiles the given top-level classes (along with their inner classes) and stores the decompiled sources in the cache.
+     * All other classes are passed to the decompiler as a library so that it still has the full context of the stale classes.
+     */
+    private static void decompileClasses(@NotNull Logger logger, @NotNull Path compileStrippedSource, @NotNull Map<@NotNull String, byte @NotNull[]> classes,
+            @NotNull Map<@NotNull String, @NotNull String> outermostClasses, @NotNull Map<@NotNull String, @NotNull String> keys,
+            @NotNull Set<String> staleClasses, Set<File> transitiveDeps, @NotNull CommentLookup javadocLookup, @NotNull DecompilationCache cache) throws IOException {
+        int threads = Math.max(1, Integer.getInteger("de.geolykt.starplane.decompileThreads", ParallelJarReader.getThreadCount()));
+        logger.info("Decompiling {} of {} galimulator classes using {} thread(s)", staleClasses.size(), keys.size(), threads);
+
+        // Time to decompile that stripped jar
+        Map<String, Object> args = new HashMap<>(GslStarplanePlugin.getDecompilerOptions());
+        args.put(IFernflowerPreferences.LOG_LEVEL, "WARN");
+        args.put(IFernflowerPreferences.THREADS, Integer.toString(threads));
+        args.put(IFabricJavadocProvider.PROPERTY_NAME, new JavadocSource(javadocLookup));
+
+        Path staleJar = compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".stale");
+        Path contextJar = compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".context");
+        Path decompiledJar = compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".decompiled");
+        Path librariesJar = compileStrippedSource.resolveSibling(compileStrippedSource.getFileName() + ".libraries");
+        try {
+            // Only supply the library (and JDK) classes galimulator actually references, instead of entire jars or the classpath of the daemon
+            List<@NotNull Path> libraries = new ArrayList<>();
+            for (File transitiveDep : transitiveDeps) {
+                libraries.add(transitiveDep.toPath());
+            }
+            int libraryClasses = LibraryPruner.prune(classes, libraries, librariesJar);
+            logger.info("Supplying {} referenced library classes to the decompiler", libraryClasses);
+
+            boolean hasContext = false;
+            try (ZipOutputStream staleOut = new ZipOutputStream(Files.newOutputStream(staleJar), StandardCharsets.UTF_8);
+                    ZipOutputStream contextOut = new ZipOutputStream(Files.newOutputStream(contextJar), StandardCharsets.UTF_8)) {
+                staleOut.setLevel(Deflater.NO_COMPRESSION);
+                contextOut.setLevel(Deflater.NO_COMPRESSION);
+                for (Map.Entry<@NotNull String, byte @NotNull[]> e : classes.entrySet()) {
+                    ZipOutputStream out = contextOut;
+                    if (staleClasses.contains(outermostClasses.get(e.getKey()))) {
+                        out = staleOut;
                     } else {
-                        baseName = outermostClassnode.name.substring(startName, innerSeperator);
+                        hasContext = true;
                     }
-                    node.sourceFile = baseName + ".java";
+                    out.putNextEntry(new ZipEntry(e.getKey() + ".class"));
+                    out.write(e.getValue());
                 }
+            }
 
-                // mapping[i * 2] -> original line number; mapping[i * 2 + 1] -> new line number
-                int[] mapping = lineMappings.get(outermostClassnode.name);
-                Map<Integer, Integer> lineNumberConversion;
-
-                if (mapping == null) {
-                    lineNumberConversion = null;
-                } else {
-                    lineNumberConversion = new HashMap<>();
-                    for (int i = 0; i < mapping.length;) {
-                        lineNumberConversion.put(mapping[i++], mapping[i++]);
-                    }
+            Map<String, int[]> lineMappings = new ConcurrentHashMap<>();
+            int totalClasses = staleClasses.size();
+            FernflowerLoggerAdapter decompilerLogger = new FernflowerLoggerAdapter(Severity.WARN, (className, processedClasses) -> {
+                // Only log every tenth of the classes, as the listener is called for every single class
+                if (processedClasses * 10L / totalClasses != (processedClasses - 1) * 10L / totalClasses) {
+                    logger.info("Decompiled {}/{} galimulator classes", processedClasses, totalClasses);
+                }
+            });
+            try (EnhancedJarSaver jarSaver = new EnhancedJarSaver(decompiledJar.toFile(), lineMappings)) {
+                Fernflower qf = new Fernflower(jarSaver, args, decompilerLogger);
+                qf.addSource(staleJar.toFile());
+                if (hasContext) {
+                    qf.addLibrary(contextJar.toFile());
                 }
+                qf.addLibrary(librariesJar.toFile());
+                qf.decompileContext();
+            }
 
-                ClassWriter writer = new ClassWriter(reader, 0);
-                reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
-                    @Override
-                    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
-                            String[] exceptions) {
-                        return new MethodVisitor(this.api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
-                            @Override
-                            public void visitLineNumber(int line, Label start) {
-                                if (lineNumberConversion == null) {
-                                    super.visitLineNumber(line, start);
-                                } else {
-                                    Integer newLineNumber = lineNumberConversion.get(line);
-                                    if (newLineNumber == null) {
-                                        super.visitLineNumber(line, start);
-                                    } else {
-                                        super.visitLineNumber(newLineNumber.intValue(), start);
-                                    }
-                                }
-                            }
-                        };
-                    }
+            int reportedClasses = Integer.getInteger("de.geolykt.starplane.decompileReportClasses", 10);
+            for (Map.Entry<@NotNull String, Long> slowClass : decompilerLogger.getSlowestClasses(reportedClasses)) {
+                logger.info("Decompiling {} took {} ms", slowClass.getKey(), slowClass.getValue() / 1_000_000L);
+            }
 
-                    @Override
-                    public void visitSource(String source, String debug) {
-                        super.visitSource(node.sourceFile, debug);
+            try (ZipInputStream zipIn = new ZipInputStream(Files.newInputStream(decompiledJar), StandardCharsets.UTF_8)) {
+                for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                    String name = entry.getName();
+                    if (!name.endsWith(".java")) {
+                        continue;
+                    }
+                    name = name.substring(0, name.length() - 5);
+                    String key = keys.get(outermostClasses.getOrDefault(name, name));
+                    if (key == null) {
+                        logger.warn("Decompiled source {} does not belong to any known class", entry.getName());
+                        continue;
                     }
-                }, 0);
-                zipOutputStream.write(writer.toByteArray());
+                    cache.put(name, key, Utils.readAllBytes(zipIn), lineMappings.get(name));
+                }
             }
+        } finally {
+            Files.deleteIfExists(staleJar);
+            Files.deleteIfExists(contextJar);
+            Files.deleteIfExists(decompiledJar);
+            Files.deleteIfExists(librariesJar);
         }
-        Files.move(intermediary, lineReplaceTarget, StandardCopyOption.REPLACE_EXISTING);
-        nameToNode.clear();
+
+        logger.info("Galimulator decompiled");
     }
 }
@@ -3,6 +3,7 @@ package de.geolykt.starplane;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
@@ -12,6 +13,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -50,6 +54,62 @@ import de.geolykt.starloader.deobf.stack.source.FieldSource;
  */
 public class Autodeobf implements StarmappedNames {
 
+    @FunctionalInterface
+    private static interface MappingOperation {
+        void replay(Writer mappingsOut) throws IOException;
+    }
+
+    @FunctionalInterface
+    static interface Pass {
+        void run(Writer mappingsStream) throws IOException;
+    }
+
+    /**
+     * A writer which records everything that is written to it, as well as all remapping requests made by a pass,
+     * so that they can be replayed in a deterministic order when passes run concurrently.
+     */
+    private static final class RecordingWriter extends Writer {
+        @NotNull
+        private final List<MappingOperation> operations = new ArrayList<>();
+        @NotNull
+        private final StringBuilder pendingText = new StringBuilder();
+
+        @Override
+        public void close() {
+            // NOP
+        }
+
+        @Override
+        public void flush() {
+            // NOP
+        }
+
+        private void flushText() {
+            if (this.pendingText.length() != 0) {
+                String text = this.pendingText.toString();
+                this.pendingText.setLength(0);
+                this.operations.add((out) -> out.write(text));
+            }
+        }
+
+        private void record(@NotNull MappingOperation operation) {
+            this.flushText();
+            this.operations.add(operation);
+        }
+
+        private void replay(@NotNull Writer mappingsOut) throws IOException {
+            this.flushText();
+            for (MappingOperation operation : this.operations) {
+                operation.replay(mappingsOut);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            this.pendingText.append(cbuf, off, len);
+        }
+    }
+
     private static final String ACTOR_CLASS = "snoddasmannen/galimulator/actors/Actor";
     private static final String ACTOR_CREATOR_CLASS = "snoddasmannen/galimulator/actors/StateActorCreator";
     private static final String ALLIANCE_CLASS = "snoddasmannen/galimulator/Alliance";
@@ -87,6 +147,29 @@ public class Autodeobf implements StarmappedNames {
     private static final String MAPDATA_CLASS = "snoddasmannen/galimulator/MapData";
     private static final String MATH_UTILS_CLASS = "com/badlogic/gdx/math/MathUtils";
     private static final String NINEPATCH_CLASS = "com/badlogic/gdx/graphics/g2d/NinePatch";
+    /**
+     * The index of the pass that needs to be completed before the pass at the given index of {@link #PASS_NAMES} can run, or -1 if none.
+     * remapUIClasses uses the spaceLogicalTickMethodName and textInputDialogWidgetClass fields set by remapSpaceFields.
+     * All passes that alter nodes are chained: remapSpaceFields -> remapHotkeys -> remapUIClasses -> remapActorClasses
+     * -> remapNoiseGenerators -> remapStarMethods -> remapRendersystem
+     */
+    static final int @NotNull[] PASS_DEPENDENCIES = new int[] {-1, -1, 0, -1, 2, 4, -1, 5, -1, -1, 7, 10, -1};
+    @NotNull
+    private static final String @NotNull[] PASS_NAMES = new @NotNull String[] {
+            "remapSpaceFields",
+            "remapPlayerMethods",
+            "remapHotkeys",
+            "remapEmpireClass",
+            "remapUIClasses",
+            "remapActorClasses",
+            "remapMapModes",
+            "remapNoiseGenerators",
+            "remapGalaxyGeneration",
+            "remapEmploymentAgency",
+            "remapStarMethods",
+            "remapRendersystem",
+            "remapGenerators"
+    };
     private static final String PERSON_CLASS = BASE_PACKAGE + "Person";
     private static final String PLAYER_CLASS = "snoddasmannen/galimulator/Player";
     private static final String PROCEDURAL_STAR_GENERATOR_CLASS = BASE_PACKAGE + "ProceduralStarGenerator";
@@ -106,7 +189,7 @@ public class Autodeobf implements StarmappedNames {
     private static final String WIDGET_POSITIONING_CLASS = WIDGET_CLASS + "$WIDGET_POSITIONING";
     private static final String WORDLIST_CLASS = BASE_PACKAGE + "WordList";
 
-    private static final AbstractInsnNode[] BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS = new AbstractInsnNode[] {
+    private static final InstructionPattern BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS = InstructionPattern.compile(
             new FieldInsnNode(Opcodes.GETSTATIC, "com/badlogic/gdx/Gdx", "files", "Lcom/badlogic/gdx/Files;"),
             new VarInsnNode(Opcodes.ALOAD, 0),
             new FieldInsnNode(Opcodes.GETFIELD, BITMAP_STAR_GENERATOR_CLASS, "bitmapFile", "Ljava/lang/String;"),
@@ -115,16 +198,27 @@ public class Autodeobf implements StarmappedNames {
             new MethodInsnNode(Opcodes.INVOKEVIRTUAL, "java/io/File", "getAbsolutePath", "()Ljava/lang/String;"),
             new MethodInsnNode(Opcodes.INVOKESTATIC, "java/util/Collections", "singletonList", "(Ljava/lang/Object;)Ljava/util/List;"),
             new InsnNode(Opcodes.ARETURN)
-    };
+    );
 
+    @NotNull
+    private final BytecodeIndex bytecodeIndex;
+    /**
+     * The amount of mappings that were written to a mappings stream (as opposed to being recorded).
+     * Only ever accessed from the thread calling {@link #runAll(Writer)}.
+     */
+    private long emittedMappings;
     @NotNull
     private final Map<String, String> enumSettingsMemberNames = new HashMap<>();
     @NotNull
     private final Map<String, ClassNode> name2Node = new HashMap<>();
     private final List<ClassNode> nodes;
+    @Nullable
+    private PerformanceReport performanceReport;
     private final Remapper remapper;
     @NotNull
     private final Map<String, String> settingsTypeMemberNames = new HashMap<>();
+    @NotNull
+    private final TypeHierarchyIndex typeHierarchy;
 
     @Nullable
     private String textInputDialogWidgetClass = null;
@@ -137,6 +231,8 @@ public class Autodeobf implements StarmappedNames {
         for (ClassNode node : nodes) {
             name2Node.put(node.name, node);
         }
+        this.bytecodeIndex = new BytecodeIndex(nodes);
+        this.typeHierarchy = new TypeHierarchyIndex(nodes);
     }
 
     public static String getVersion() {
@@ -186,45 +282,7 @@ public class Autodeobf implements StarmappedNames {
     }
 
     public boolean contentsEqual(MethodNode method, AbstractInsnNode... instructions) {
-        AbstractInsnNode actualInsn = method.instructions.getFirst();
-        for (AbstractInsnNode expectedInstruction : instructions) {
-            if (expectedInstruction.getOpcode() == -1) {
-                continue;
-            }
-            while (actualInsn != null && actualInsn.getOpcode() == -1) {
-                actualInsn = actualInsn.getNext();
-            }
-            if (actualInsn == null) {
-                return false;
-            }
-            if (actualInsn.getOpcode() != expectedInstruction.getOpcode()) {
-                return false;
-            }
-
-            if (expectedInstruction instanceof MethodInsnNode) {
-                MethodInsnNode expected = (MethodInsnNode) expectedInstruction;
-                MethodInsnNode actual = (MethodInsnNode) actualInsn;
-                if (!expected.owner.equals(actual.owner) || !expected.desc.equals(actual.desc) || (!expected.name.equals("*") && !expected.name.equals(actual.name))) {
-                    return false;
-                }
-            } else if (expectedInstruction instanceof InsnNode) {
-                // Nothing to compare - opcode was the most important thing of the instruction
-            } else if (expectedInstruction instanceof FieldInsnNode) {
-                FieldInsnNode expected = (FieldInsnNode) expectedInstruction;
-                FieldInsnNode actual = (FieldInsnNode) actualInsn;
-                if (!expected.owner.equals(actual.owner) || !expected.desc.equals(actual.desc) || (!expected.name.equals("*") && !expected.name.equals(actual.name))) {
-                    return false;
-                }
-            } else if (expectedInstruction instanceof VarInsnNode) {
-                if (((VarInsnNode) expectedInstruction).var != ((VarInsnNode) actualInsn).var) {
-                    return false;
-                }
-            } else {
-                throw new AssertionError("Cannot compare instances of class " + expectedInstruction.getClass().getName());
-            }
-            actualInsn = actualInsn.getNext();
-        }
-        return true;
+        return InstructionPattern.compile(instructions).matches(method);
     }
 
     private AbstractInsnNode getNext(AbstractInsnNode insn) {
@@ -264,6 +322,26 @@ public class Autodeobf implements StarmappedNames {
         return (T) insn;
     }
 
+    @NotNull
+    private Pass @NotNull[] getPasses() {
+        // The order of the passes needs to match the order of PASS_NAMES
+        return new @NotNull Pass[] {
+                this::remapSpaceFields,
+                this::remapPlayerMethods,
+                this::remapHotkeys,
+                this::remapEmpireClass,
+                this::remapUIClasses,
+                this::remapActorClasses,
+                this::remapMapModes,
+                this::remapNoiseGenerators,
+                this::remapGalaxyGeneration,
+                this::remapEmploymentAgency,
+                this::remapStarMethods,
+                this::remapRendersystem,
+                this::remapGenerators
+        };
+    }
+
     @SuppressWarnings("all")
     private <T extends AbstractInsnNode> T getPreviousOrNull(@Nullable AbstractInsnNode insn, int matchOpcode) {
         if (insn == null) {
@@ -311,42 +389,15 @@ public class Autodeobf implements StarmappedNames {
     }
 
     private boolean isInstanceofClass(ClassNode node, String type) {
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(type)) {
-            return true;
-        }
-        return isInstanceofClass(name2Node.get(node.superName), type);
+        return this.typeHierarchy.isSubclass(node, type);
     }
 
     private boolean isInstanceofInterface(ClassNode node, String type) {
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(type)) {
-            return true;
-        }
-        for (String interfaceName : node.interfaces) {
-            if (isInstanceofClass(name2Node.get(interfaceName), type)) {
-                return true;
-            }
-        }
-        if (node.superName != null) {
-            return isInstanceofInterface(name2Node.get(node.superName), type);
-        }
-        return false;
+        return this.typeHierarchy.isSubtype(node, type);
     }
 
     private boolean isInstanceofWidget(ClassNode node) {
-        // Bit more performant than #isInstanceofClass, probably
-        if (node == null) {
-            return false;
-        }
-        if (node.name.equals(WIDGET_CLASS)) {
-            return true;
-        }
-        return isInstanceofWidget(name2Node.get(node.superName));
+        return this.typeHierarchy.isSubclass(node, WIDGET_CLASS);
     }
 
     private boolean isReturn(int opcode) {
@@ -591,21 +642,16 @@ public class Autodeobf implements StarmappedNames {
         String landmarkManagerClass = null;
         String regenerateLandmarksMethod = null;
 
-        nodeLoop:
-        for (ClassNode node : this.nodes) {
-            if (node.name.startsWith(GUIDES_PACKAGE)) {
-                for (MethodNode method : node.methods) {
-                    for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                        if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Picking landmarks")) {
-                            landmarkManagerClass = node.name;
-                            regenerateLandmarksMethod = method.name;
-                            if (!method.desc.equals("()V")) {
-                                throw new OutdatedDeobfuscatorException("Guides", LANDMARK_MANAGER_CLASS, "regenerateLandmarks", "Unexpected descriptor");
-                            }
-                            continue nodeLoop;
-                        }
-                    }
-                }
+        ClassNode lastLandmarkNode = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getLdcSites("Picking landmarks")) {
+            if (site.node == lastLandmarkNode || !site.node.name.startsWith(GUIDES_PACKAGE)) {
+                continue;
+            }
+            lastLandmarkNode = site.node;
+            landmarkManagerClass = site.node.name;
+            regenerateLandmarksMethod = site.method.name;
+            if (!site.method.desc.equals("()V")) {
+                throw new OutdatedDeobfuscatorException("Guides", LANDMARK_MANAGER_CLASS, "regenerateLandmarks", "Unexpected descriptor");
             }
         }
 
@@ -617,6 +663,11 @@ public class Autodeobf implements StarmappedNames {
     }
 
     private void remapClass(Writer mappingsOut, @NotNull String oldName, @NotNull String newName) throws IOException {
+        if (mappingsOut instanceof RecordingWriter) {
+            ((RecordingWriter) mappingsOut).record((out) -> this.remapClass(out, oldName, newName));
+            return;
+        }
+        this.emittedMappings++;
         remapper.remapClassName(oldName, newName);
         mappingsOut.write("CLASS ");
         mappingsOut.write(oldName);
@@ -843,10 +894,8 @@ public class Autodeobf implements StarmappedNames {
         }
         mappingsStream.write("# End dialog package relocation\n");
 
-        for (ClassNode node : nodes) {
-            if (isInstanceofClass(node, dialogButtonClass)) {
-                remapMethod(mappingsStream, node.name, dialogButtonOnTouchMethod, "onTouch", "()V");
-            }
+        for (ClassNode node : this.typeHierarchy.getSubclasses(dialogButtonClass)) {
+            remapMethod(mappingsStream, node.name, dialogButtonOnTouchMethod, "onTouch", "()V");
         }
     }
 
@@ -1216,63 +1265,63 @@ public class Autodeobf implements StarmappedNames {
 
         String mottoGeneratorClass = null;
 
-        nodeloop:
-        for (ClassNode node : nodes) {
-            for (MethodNode method : node.methods) {
-                for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                    if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("data/mottopreps.txt")) {
-                        if (mottoGeneratorClass != null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "*", "Collision");
-                        }
-                        mottoGeneratorClass = node.name;
-                        remapClass(mappingsStream, node.name, MOTTO_GENERATOR_CLASS);
-                        remapMethod(mappingsStream, node.name, method.name, "initialize", method.desc);
-                        FieldInsnNode finsn = getNext(insn, Opcodes.PUTSTATIC);
-                        if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "prepositions", "Unexpected owner or descriptor");
-                        }
-                        remapField(mappingsStream, node.name, finsn.name, "prepositions", "L" + WORDLIST_CLASS + ";");
-                        finsn = getNext(finsn, Opcodes.PUTSTATIC);
-                        if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected owner or descriptor");
-                        }
-                        remapField(mappingsStream, node.name, finsn.name, "nouns", "L" + WORDLIST_CLASS + ";");
-                        if (getNextOrNull(finsn, Opcodes.PUTSTATIC) != null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected trailing PUTSTATIC call");
-                        }
-                        MethodNode candidate = null;
-                        for (MethodNode method2 : node.methods) {
-                            if (method2.desc.equals("()Ljava/lang/String;")) {
-                                if (candidate != null) {
-                                    throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Collision");
-                                }
-                                candidate = method2;
-                            }
-                        }
-                        if (candidate == null) {
-                            throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Not found");
-                        }
-                        remapMethod(mappingsStream, node.name, candidate.name, "generateMotto", "()Ljava/lang/String;");
-                        insn = candidate.instructions.getFirst();
-                        MethodInsnNode minsn = getNext(insn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Z")) {
-                            throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "hasMotto", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "hasMotto", "()Z");
-                        minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "getMotto", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "getMotto", "()Ljava/lang/String;");
-                        minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
-                        if (!minsn.owner.equals(WORDLIST_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Empire", WORDLIST_CLASS, "getRandomWord", "Unexpected owner or descriptor");
-                        }
-                        remapMethod(mappingsStream, WORDLIST_CLASS, minsn.name, "getRandomWord", "()Ljava/lang/String;");
-                        continue nodeloop;
+        ClassNode lastMottoNode = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getLdcSites("data/mottopreps.txt")) {
+            if (site.node == lastMottoNode) {
+                continue;
+            }
+            lastMottoNode = site.node;
+            ClassNode node = site.node;
+            MethodNode method = site.method;
+            AbstractInsnNode insn = site.insn;
+            if (mottoGeneratorClass != null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "*", "Collision");
+            }
+            mottoGeneratorClass = node.name;
+            remapClass(mappingsStream, node.name, MOTTO_GENERATOR_CLASS);
+            remapMethod(mappingsStream, node.name, method.name, "initialize", method.desc);
+            FieldInsnNode finsn = getNext(insn, Opcodes.PUTSTATIC);
+            if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "prepositions", "Unexpected owner or descriptor");
+            }
+            remapField(mappingsStream, node.name, finsn.name, "prepositions", "L" + WORDLIST_CLASS + ";");
+            finsn = getNext(finsn, Opcodes.PUTSTATIC);
+            if (!finsn.owner.equals(node.name) || !finsn.desc.equals("L" + WORDLIST_CLASS + ";")) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected owner or descriptor");
+            }
+            remapField(mappingsStream, node.name, finsn.name, "nouns", "L" + WORDLIST_CLASS + ";");
+            if (getNextOrNull(finsn, Opcodes.PUTSTATIC) != null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "nouns", "Unexpected trailing PUTSTATIC call");
+            }
+            MethodNode candidate = null;
+            for (MethodNode method2 : node.methods) {
+                if (method2.desc.equals("()Ljava/lang/String;")) {
+                    if (candidate != null) {
+                        throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Collision");
                     }
+                    candidate = method2;
                 }
             }
+            if (candidate == null) {
+                throw new OutdatedDeobfuscatorException("Empire", MOTTO_GENERATOR_CLASS, "generateMotto", "Not found");
+            }
+            remapMethod(mappingsStream, node.name, candidate.name, "generateMotto", "()Ljava/lang/String;");
+            insn = candidate.instructions.getFirst();
+            MethodInsnNode minsn = getNext(insn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Z")) {
+                throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "hasMotto", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "hasMotto", "()Z");
+            minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(VANITY_HOLDER_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
+                throw new OutdatedDeobfuscatorException("Empire", VANITY_HOLDER_CLASS, "getMotto", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, VANITY_HOLDER_CLASS, minsn.name, "getMotto", "()Ljava/lang/String;");
+            minsn = getNext(minsn, Opcodes.INVOKEVIRTUAL);
+            if (!minsn.owner.equals(WORDLIST_CLASS) || !minsn.desc.equals("()Ljava/lang/String;")) {
+                throw new OutdatedDeobfuscatorException("Empire", WORDLIST_CLASS, "getRandomWord", "Unexpected owner or descriptor");
+            }
+            remapMethod(mappingsStream, WORDLIST_CLASS, minsn.name, "getRandomWord", "()Ljava/lang/String;");
         }
 
         if (mottoGeneratorClass == null) {
@@ -1512,6 +1561,11 @@ public class Autodeobf implements StarmappedNames {
     }
 
     private void remapField(Writer mappingsOut, String owner, String oldName, String newName, String desc) throws IOException {
+        if (mappingsOut instanceof RecordingWriter) {
+            ((RecordingWriter) mappingsOut).record((out) -> this.remapField(out, owner, oldName, newName, desc));
+            return;
+        }
+        this.emittedMappings++;
         remapper.remapField(owner, desc, oldName, newName);
         // Format: FIELD owner descriptor originalName newName
         mappingsOut.write("FIELD " + owner + " " + desc + " " + oldName + " " +  newName + "\n");
@@ -1649,7 +1703,7 @@ public class Autodeobf implements StarmappedNames {
                     }
                 }
             } else if (method.desc.equals("()Ljava/util/List;")) {
-                if (contentsEqual(method, BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS)) {
+                if (BITMAP_STAR_GENERATOR_GET_RESOURCES_LIST_METHOD_CONTENTS.matches(method)) {
                     if (getResourceListMethod != null) {
                         throw new OutdatedDeobfuscatorException("Generator", BITMAP_STAR_GENERATOR_CLASS, "getResources", "Collision");
                     }
@@ -1705,14 +1759,15 @@ public class Autodeobf implements StarmappedNames {
         }
 
         String getMaxXMethod = null;
+        InstructionPattern getMaxXPattern = InstructionPattern.compile(new VarInsnNode(Opcodes.ALOAD, 0),
+                new MethodInsnNode(Opcodes.INVOKEVIRTUAL, BITMAP_STAR_GENERATOR_CLASS, getMaxYMethod, "()F"),
+                new FieldInsnNode(Opcodes.GETSTATIC, SPACE_CLASS, "*", "F"),
+                new InsnNode(Opcodes.FMUL),
+                new InsnNode(Opcodes.FRETURN));
 
         for (MethodNode method : bitmapGenClass.methods) {
             if (method.desc.equals("()F")) {
-                if (contentsEqual(method, new VarInsnNode(Opcodes.ALOAD, 0),
-                        new MethodInsnNode(Opcodes.INVOKEVIRTUAL, BITMAP_STAR_GENERATOR_CLASS, getMaxYMethod, "()F"),
-                        new FieldInsnNode(Opcodes.GETSTATIC, SPACE_CLASS, "*", "F"),
-                        new InsnNode(Opcodes.FMUL),
-                        new InsnNode(Opcodes.FRETURN))) {
+                if (getMaxXPattern.matches(method)) {
                     if (getMaxXMethod != null) {
                         throw new OutdatedDeobfuscatorException("Generator", BITMAP_STAR_GENERATOR_CLASS, "getMaxX", "Collision");
                     }
@@ -1903,13 +1958,14 @@ public class Autodeobf implements StarmappedNames {
                         if (onLoadMethod != null) {
                             throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "onLoad", "Collision (1520)");
                         }
+                        InstructionPattern onLoadPattern = InstructionPattern.compile(new VarInsnNode(Opcodes.ALOAD, 0),
+                                new MethodInsnNode(Opcodes.INVOKEVIRTUAL, FRACTAL_STAR_GENERATOR_CLASS, method.name, "()V"),
+                                new InsnNode(Opcodes.RETURN));
                         for (MethodNode method2 : fractalStarGenerator.methods) {
                             if (!method2.desc.equals("()V")) {
                                 continue;
                             }
-                            if (contentsEqual(method2, new VarInsnNode(Opcodes.ALOAD, 0),
-                                    new MethodInsnNode(Opcodes.INVOKEVIRTUAL, FRACTAL_STAR_GENERATOR_CLASS, method.name, "()V"),
-                                    new InsnNode(Opcodes.RETURN))) {
+                            if (onLoadPattern.matches(method2)) {
                                 if (onLoadMethod != null) {
                                     throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "onLoad", "Collision (1530)");
                                 }
@@ -1983,20 +2039,18 @@ public class Autodeobf implements StarmappedNames {
             throw new OutdatedDeobfuscatorException("Generator", STAR_GENERATOR_INTERFACE, "hasMovingStars", "Not found");
         }
 
-        for (ClassNode node : nodes) {
-            if (isInstanceofInterface(node, starGeneratorClass)) {
-                remapMethod(mappingsStream, node.name, generateStarMethod, "generateStar", "()L" + STAR_CLASS + ";");
-                remapMethod(mappingsStream, node.name, getResourceListMethod, "getResources", "()Ljava/util/List;");
-                remapMethod(mappingsStream, node.name, getMaxXMethod, "getMaxX", "()F");
-                remapMethod(mappingsStream, node.name, getMaxYMethod, "getMaxY", "()F");
-                remapMethod(mappingsStream, node.name, prepareGeneratorMethod, "prepareGenerator", "()V");
-                remapMethod(mappingsStream, node.name, getEngravingTextMethod, "getEngravingText", "()Ljava/lang/String;");
-                remapMethod(mappingsStream, node.name, getSettingsDialogMethod, "getSettingsDialog", getSettingsDialogDesc);
-                remapMethod(mappingsStream, node.name, hasMovingStarsMethod, "hasMovingStars", "()Z");
-                remapMethod(mappingsStream, node.name, setupSettingsMethod, "setupSettings", "()V");
-                remapMethod(mappingsStream, node.name, onLoadMethod, "onLoad", "()V");
-                remapMethod(mappingsStream, node.name, getBackgroundTextureMethod, "getBackgroundTexture", "()Lcom/badlogic/gdx/graphics/Texture;");
-            }
+        for (ClassNode node : this.typeHierarchy.getSubtypes(starGeneratorClass)) {
+            remapMethod(mappingsStream, node.name, generateStarMethod, "generateStar", "()L" + STAR_CLASS + ";");
+            remapMethod(mappingsStream, node.name, getResourceListMethod, "getResources", "()Ljava/util/List;");
+            remapMethod(mappingsStream, node.name, getMaxXMethod, "getMaxX", "()F");
+            remapMethod(mappingsStream, node.name, getMaxYMethod, "getMaxY", "()F");
+            remapMethod(mappingsStream, node.name, prepareGeneratorMethod, "prepareGenerator", "()V");
+            remapMethod(mappingsStream, node.name, getEngravingTextMethod, "getEngravingText", "()Ljava/lang/String;");
+            remapMethod(mappingsStream, node.name, getSettingsDialogMethod, "getSettingsDialog", getSettingsDialogDesc);
+            remapMethod(mappingsStream, node.name, hasMovingStarsMethod, "hasMovingStars", "()Z");
+            remapMethod(mappingsStream, node.name, setupSettingsMethod, "setupSettings", "()V");
+            remapMethod(mappingsStream, node.name, onLoadMethod, "onLoad", "()V");
+            remapMethod(mappingsStream, node.name, getBackgroundTextureMethod, "getBackgroundTexture", "()Lcom/badlogic/gdx/graphics/Texture;");
         }
     }
 
@@ -2256,6 +2310,11 @@ public class Autodeobf implements StarmappedNames {
         if (desc == null) {
             throw new NullPointerException("desc is null");
         }
+        if (mappingsOut instanceof RecordingWriter) {
+            ((RecordingWriter) mappingsOut).record((out) -> this.remapMethod(out, owner, oldName, newName, desc));
+            return;
+        }
+        this.emittedMappings++;
         try {
             this.remapper.remapMethod(owner, desc, oldName, newName);
             // Format (for valid tiny files): METHOD owner desc srcName dstName
@@ -2637,55 +2696,47 @@ public class Autodeobf implements StarmappedNames {
         }
 
         ClassNode renderCacheCollectorClass = null;
-        for (ClassNode node : nodes) {
-            if (node.interfaces.size() != 1 || !node.interfaces.get(0).equals("java/lang/Runnable")) {
+        ClassNode lastRenderCacheCollectorCandidate = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getMethodSites(SPACE_CLASS, drawToCacheMethod, drawToCacheMethodDesc)) {
+            ClassNode node = site.node;
+            if (node == lastRenderCacheCollectorCandidate
+                    || site.insn.getOpcode() != Opcodes.INVOKESTATIC
+                    || node.interfaces.size() != 1
+                    || !node.interfaces.get(0).equals("java/lang/Runnable")
+                    || !site.method.name.equals("run")
+                    || !site.method.desc.equals("()V")) {
                 continue;
             }
-            methodLoop:
-            for (MethodNode method : node.methods) {
-                if (!method.name.equals("run") || !method.desc.equals("()V")) {
-                    continue;
-                }
-                for (AbstractInsnNode insn : method.instructions) {
-                    if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
-                        continue;
-                    }
-                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                    if (!methodInsn.owner.equals(SPACE_CLASS) || !methodInsn.name.equals(drawToCacheMethod) || !methodInsn.desc.equals(drawToCacheMethodDesc)) {
-                        continue;
-                    }
+            lastRenderCacheCollectorCandidate = node;
 
-                    remapClass(mappingsStream, node.name, RENDER_CACHE_COLLECTOR_CLASS);
+            remapClass(mappingsStream, node.name, RENDER_CACHE_COLLECTOR_CLASS);
 
-                    ClassNode galemulatorClass = null;
-                    for (ClassNode node2 : nodes) {
-                        if (node2.interfaces.size() != 1 || !node2.interfaces.get(0).equals("com/badlogic/gdx/ApplicationListener") || !node2.name.startsWith(BASE_PACKAGE)) {
-                            continue;
-                        }
-                        if (galemulatorClass != null) {
-                            throw new OutdatedDeobfuscatorException("RenderSystem", "Two galemulator classes found");
-                        }
-                        galemulatorClass = node2;
-                    }
+            ClassNode galemulatorClass = null;
+            for (ClassNode node2 : nodes) {
+                if (node2.interfaces.size() != 1 || !node2.interfaces.get(0).equals("com/badlogic/gdx/ApplicationListener") || !node2.name.startsWith(BASE_PACKAGE)) {
+                    continue;
+                }
+                if (galemulatorClass != null) {
+                    throw new OutdatedDeobfuscatorException("RenderSystem", "Two galemulator classes found");
+                }
+                galemulatorClass = node2;
+            }
 
-                    if (galemulatorClass == null) {
-                        throw new OutdatedDeobfuscatorException("RenderSystem", "No galemulator class found");
-                    }
+            if (galemulatorClass == null) {
+                throw new OutdatedDeobfuscatorException("RenderSystem", "No galemulator class found");
+            }
 
-                    node.outerClass = galemulatorClass.name;
-                    node.innerClasses.removeIf(icn -> icn.name.equals(node.name));
-                    galemulatorClass.innerClasses.removeIf(icn -> icn.name.equals(node.name));
-                    InnerClassNode icn = new InnerClassNode(node.name, galemulatorClass.name, "RenderCacheCollector", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
-                    node.innerClasses.add(icn);
-                    galemulatorClass.innerClasses.add(icn);
+            node.outerClass = galemulatorClass.name;
+            node.innerClasses.removeIf(icn -> icn.name.equals(node.name));
+            galemulatorClass.innerClasses.removeIf(icn -> icn.name.equals(node.name));
+            InnerClassNode icn = new InnerClassNode(node.name, galemulatorClass.name, "RenderCacheCollector", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+            node.innerClasses.add(icn);
+            galemulatorClass.innerClasses.add(icn);
 
-                    if (renderCacheCollectorClass != null) {
-                        throw new OutdatedDeobfuscatorException("RenderSystem", RENDER_CACHE_COLLECTOR_CLASS, "*", "Collision");
-                    }
-                    renderCacheCollectorClass = node;
-                    break methodLoop;
-                }
+            if (renderCacheCollectorClass != null) {
+                throw new OutdatedDeobfuscatorException("RenderSystem", RENDER_CACHE_COLLECTOR_CLASS, "*", "Collision");
             }
+            renderCacheCollectorClass = node;
         }
 
         if (renderCacheCollectorClass == null) {
@@ -3220,37 +3271,30 @@ public class Autodeobf implements StarmappedNames {
 
         boolean foundSaveStackdepth = false;
 
-        for (ClassNode node : nodes) {
-            if (node.interfaces.size() == 1 && node.interfaces.get(0).equals("java/lang/Runnable")) {
-                for (MethodNode method : node.methods) {
-                    if (method.name.equals("run") && method.desc.equals("()V")) {
-                        insn = method.instructions.getFirst();
-                        while (insn != null) {
-                            if (insn.getOpcode() == Opcodes.LDC && ((LdcInsnNode) insn).cst.equals("Restored from disk, stack depth was: ")) {
-                                break;
-                            }
-                            insn = insn.getNext();
-                        }
-                        if (insn == null) {
-                            break;
-                        }
-                        insn = insn.getNext().getNext();
-                        if (insn.getOpcode() != Opcodes.GETSTATIC) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong opcode");
-                        }
-                        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-                        if (!fieldInsn.owner.equals(SPACE_CLASS) || !fieldInsn.desc.equals("I")) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong owner class or descriptor");
-                        }
-                        remapField(mappingsStream, SPACE_CLASS, fieldInsn.name, "saveStackdepth", "I");
-                        if (foundSaveStackdepth) {
-                            throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Collision");
-                        }
-                        foundSaveStackdepth = true;
-                        break;
-                    }
-                }
+        ClassNode lastSaveStackdepthNode = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getLdcSites("Restored from disk, stack depth was: ")) {
+            ClassNode node = site.node;
+            if (node == lastSaveStackdepthNode
+                    || node.interfaces.size() != 1
+                    || !node.interfaces.get(0).equals("java/lang/Runnable")
+                    || !site.method.name.equals("run")
+                    || !site.method.desc.equals("()V")) {
+                continue;
+            }
+            lastSaveStackdepthNode = node;
+            insn = site.insn.getNext().getNext();
+            if (insn.getOpcode() != Opcodes.GETSTATIC) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong opcode");
             }
+            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+            if (!fieldInsn.owner.equals(SPACE_CLASS) || !fieldInsn.desc.equals("I")) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Follow-up instruction has wrong owner class or descriptor");
+            }
+            remapField(mappingsStream, SPACE_CLASS, fieldInsn.name, "saveStackdepth", "I");
+            if (foundSaveStackdepth) {
+                throw new OutdatedDeobfuscatorException("Space", SPACE_CLASS, "saveStackdepth", "Collision");
+            }
+            foundSaveStackdepth = true;
         }
 
         if (!foundSaveStackdepth) {
@@ -3266,125 +3310,114 @@ public class Autodeobf implements StarmappedNames {
         String getWarDisplayAgeMethod = null;
         String widgetGetInnerWidthMethod = null;
 
-        nodeLoop:
-        for (ClassNode node : nodes) {
-            if (!node.name.startsWith(UI_PACKAGE)) {
+        ClassNode lastWarListWidgetCandidate = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getFieldSites(SPACE_CLASS, warsField, "Ljava/util/Vector;")) {
+            ClassNode node = site.node;
+            MethodNode method = site.method;
+            if (node == lastWarListWidgetCandidate
+                    || site.insn.getOpcode() != Opcodes.GETSTATIC
+                    || !node.name.startsWith(UI_PACKAGE)
+                    || !method.desc.equals("()V")) {
                 continue;
             }
-            for (MethodNode method : node.methods) {
-                if (!method.desc.equals("()V")) {
+            lastWarListWidgetCandidate = node;
+            insn = site.insn;
+            FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+            if (warListWidgetNode != null) {
+                throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "*", "Collision");
+            }
+            warListWidgetNode = node;
+            warListWidgetPopulateMethod = method.name;
+            while ((insn = insn.getNext()) != null) {
+                if (insn.getOpcode() != Opcodes.NEW) {
                     continue;
                 }
-                for (insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                    if (insn.getOpcode() != Opcodes.GETSTATIC) {
-                        continue;
-                    }
-                    FieldInsnNode fieldInsn = (FieldInsnNode) insn;
-                    if (!fieldInsn.name.equals(warsField)
-                            || !fieldInsn.owner.equals(SPACE_CLASS)
-                            || !fieldInsn.desc.equals("Ljava/util/Vector;")) {
-                        continue;
-                    }
-                    if (warListWidgetNode != null) {
-                        throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "*", "Collision");
-                    }
-                    warListWidgetNode = node;
-                    warListWidgetPopulateMethod = method.name;
-                    while ((insn = insn.getNext()) != null) {
-                        if (insn.getOpcode() != Opcodes.NEW) {
-                            continue;
-                        }
-                        warListEntryClass = ((TypeInsnNode) insn).desc;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getWarName", "Invalid owner or descriptor");
-                        }
-                        getWarNameMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayScore", "Invalid owner or descriptor");
-                        }
-                        getWarDisplayScoreMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
-                    }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
-                            throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayAge", "Invalid owner or descriptor");
-                        }
-                        getWarDisplayAgeMethod = methodInsn.name;
-                        insn = insn.getNext();
-                        break;
+                warListEntryClass = ((TypeInsnNode) insn).desc;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getWarName", "Invalid owner or descriptor");
+                }
+                getWarNameMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayScore", "Invalid owner or descriptor");
+                }
+                getWarDisplayScoreMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || ((MethodInsnNode) insn).owner.equals("java/lang/StringBuilder")) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.owner.equals(WAR_CLASS) || !methodInsn.desc.equals("()Ljava/lang/String;")) {
+                    throw new OutdatedDeobfuscatorException("Space", WAR_CLASS, "getDisplayAge", "Invalid owner or descriptor");
+                }
+                getWarDisplayAgeMethod = methodInsn.name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
+                        || !((MethodInsnNode) insn).owner.equals(node.name)) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                if (!((MethodInsnNode) insn).desc.equals("()I")) {
+                    throw new OutdatedDeobfuscatorException("Space", WIDGET_CLASS, "getInnerWidth", "Invalid descriptor");
+                }
+                widgetGetInnerWidthMethod = ((MethodInsnNode) insn).name;
+                insn = insn.getNext();
+                break;
+            }
+            while (insn != null) {
+                if (insn.getOpcode() != Opcodes.NEW) {
+                    insn = insn.getNext();
+                    continue;
+                }
+                paginatedWidgetClass = ((TypeInsnNode) insn).desc;
+                break;
+            }
+            for (MethodNode method2 : node.methods) {
+                if (method2.name.equals("<init>") && method2.desc.equals("()V")) {
+                    insn = method2.instructions.getFirst();
+                    insn = getNext(insn, Opcodes.ICONST_0).getNext();
+                    if (insn.getOpcode() != Opcodes.PUTFIELD) {
+                        throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "__unused0", "Unexpected ocpode");
                     }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL
-                                || !((MethodInsnNode) insn).owner.equals(node.name)) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        if (!((MethodInsnNode) insn).desc.equals("()I")) {
-                            throw new OutdatedDeobfuscatorException("Space", WIDGET_CLASS, "getInnerWidth", "Invalid descriptor");
-                        }
-                        widgetGetInnerWidthMethod = ((MethodInsnNode) insn).name;
-                        insn = insn.getNext();
-                        break;
+                    fieldInsn = (FieldInsnNode) insn;
+                    remapField(mappingsStream, node.name, fieldInsn.name, "__unused0", "()I");
+                    insn = getNext(insn, Opcodes.ICONST_3).getNext();
+                    if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
+                        throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected ocpode");
                     }
-                    while (insn != null) {
-                        if (insn.getOpcode() != Opcodes.NEW) {
-                            insn = insn.getNext();
-                            continue;
-                        }
-                        paginatedWidgetClass = ((TypeInsnNode) insn).desc;
-                        break;
+                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    if (!methodInsn.desc.equals("(I)V")) {
+                        throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected descriptor");
                     }
-                    for (MethodNode method2 : node.methods) {
-                        if (method2.name.equals("<init>") && method2.desc.equals("()V")) {
-                            insn = method2.instructions.getFirst();
-                            insn = getNext(insn, Opcodes.ICONST_0).getNext();
-                            if (insn.getOpcode() != Opcodes.PUTFIELD) {
-                                throw new OutdatedDeobfuscatorException("Space", WAR_LIST_WIDGET_CLASS, "__unused0", "Unexpected ocpode");
-                            }
-                            fieldInsn = (FieldInsnNode) insn;
-                            remapField(mappingsStream, node.name, fieldInsn.name, "__unused0", "()I");
-                            insn = getNext(insn, Opcodes.ICONST_3).getNext();
-                            if (insn.getOpcode() != Opcodes.INVOKEVIRTUAL) {
-                                throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected ocpode");
-                            }
-                            MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                            if (!methodInsn.desc.equals("(I)V")) {
-                                throw new OutdatedDeobfuscatorException("Space", "WidgetLayout", "setHorizontalMargin", "Unexpected descriptor");
-                            }
-                            for (ClassNode node2 : nodes) {
-                                if (isInstanceofClass(node2, methodInsn.owner)) {
-                                    remapMethod(mappingsStream, node2.name, methodInsn.name, "setHorizontalMargin", "(I)V");
-                                }
-                            }
-                        }
+                    for (ClassNode node2 : this.typeHierarchy.getSubclasses(methodInsn.owner)) {
+                        remapMethod(mappingsStream, node2.name, methodInsn.name, "setHorizontalMargin", "(I)V");
                     }
-                    continue nodeLoop;
                 }
             }
         }
@@ -3797,10 +3830,8 @@ public class Autodeobf implements StarmappedNames {
             }
             String configurablePreferenceClass = enumSettingsNode.interfaces.get(0);
             remapClass(mappingsStream, configurablePreferenceClass, CONFIGURABLE_PREFERNCE_INTERFACE);
-            for (ClassNode node : nodes) {
-                if (isInstanceofInterface(node, configurablePreferenceClass)) {
-                    remapMethod(mappingsStream, node.name, getSettingValue.name, "getValue", "()Ljava/lang/Object;");
-                }
+            for (ClassNode node : this.typeHierarchy.getSubtypes(configurablePreferenceClass)) {
+                remapMethod(mappingsStream, node.name, getSettingValue.name, "getValue", "()Ljava/lang/Object;");
             }
 
             MethodInsnNode isCapital = getNext(checkcast.getNext(), Opcodes.INVOKEVIRTUAL);
@@ -4022,24 +4053,14 @@ public class Autodeobf implements StarmappedNames {
 
         ClassNode quadTreeClass = null;
 
-        classLoop:
-        for (ClassNode node : nodes) {
-            for (MethodNode method : node.methods) {
-                if (method.desc.equals("()Z")) {
-                    for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
-                        if (insn.getOpcode() == Opcodes.LDC) {
-                            LdcInsnNode ldcInsn = (LdcInsnNode) insn;
-                            if (ldcInsn.cst.equals("Unable to insert star into quad tree!")) {
-                                if (quadTreeClass != null) {
-                                    throw new OutdatedDeobfuscatorException("Star", QUAD_TREE_CLASS, "*", "Collision");
-                                }
-                                quadTreeClass = node;
-                                continue classLoop;
-                            }
-                        }
-                    }
-                }
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getLdcSites("Unable to insert star into quad tree!")) {
+            if (site.node == quadTreeClass || !site.method.desc.equals("()Z")) {
+                continue;
             }
+            if (quadTreeClass != null) {
+                throw new OutdatedDeobfuscatorException("Star", QUAD_TREE_CLASS, "*", "Collision");
+            }
+            quadTreeClass = site.node;
         }
 
         if (quadTreeClass == null) {
@@ -4439,35 +4460,29 @@ public class Autodeobf implements StarmappedNames {
         String setTimelapseModifierMethod = null;
         String galemulatorClass = null;
 
-        for (ClassNode node : nodes) {
-            if (!node.name.startsWith("com/example/Main$")) {
+        MethodNode lastTimelapseHotkeyMethod = null;
+        for (BytecodeIndex.Site site : this.bytecodeIndex.getLdcSites("New speed is: ")) {
+            if (site.method == lastTimelapseHotkeyMethod
+                    || !site.node.name.startsWith("com/example/Main$")
+                    || !site.method.name.equals("checkAndDoStuff")) {
                 continue;
             }
-            for (MethodNode method : node.methods) {
-                if (!method.name.equals("checkAndDoStuff")) {
+            lastTimelapseHotkeyMethod = site.method;
+            for (AbstractInsnNode insn = site.insn.getNext(); insn != null; insn = insn.getNext()) {
+                if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
                     continue;
                 }
-                boolean isTimelapseModifierHotkey = false;
-                for (AbstractInsnNode insn : method.instructions) {
-                    if (insn instanceof LdcInsnNode) {
-                        LdcInsnNode ldc = (LdcInsnNode) insn;
-                        if (ldc.cst.equals("New speed is: ")) {
-                            isTimelapseModifierHotkey = true;
-                        }
-                    } else if (isTimelapseModifierHotkey && insn.getOpcode() == Opcodes.INVOKESTATIC) {
-                        MethodInsnNode minsn = (MethodInsnNode) insn;
-                        if (!minsn.desc.equals("(I)V")) {
-                            continue;
-                        }
-                        if (setTimelapseModifierMethod != null) {
-                            throw new OutdatedDeobfuscatorException("UI", "Galemulator", "setTimelapseModifier", "Collision");
-                        }
-                        setTimelapseModifierMethod = minsn.name;
-                        galemulatorClass = minsn.owner;
-                        remapClass(mappingsStream, galemulatorClass, "snoddasmannen/galimulator/Galemulator");
-                        remapMethod(mappingsStream, galemulatorClass, setTimelapseModifierMethod, "setTimelapseModifier", "(I)V");
-                    }
+                MethodInsnNode minsn = (MethodInsnNode) insn;
+                if (!minsn.desc.equals("(I)V")) {
+                    continue;
                 }
+                if (setTimelapseModifierMethod != null) {
+                    throw new OutdatedDeobfuscatorException("UI", "Galemulator", "setTimelapseModifier", "Collision");
+                }
+                setTimelapseModifierMethod = minsn.name;
+                galemulatorClass = minsn.owner;
+                remapClass(mappingsStream, galemulatorClass, "snoddasmannen/galimulator/Galemulator");
+                remapMethod(mappingsStream, galemulatorClass, setTimelapseModifierMethod, "setTimelapseModifier", "(I)V");
             }
         }
 
@@ -6688,18 +6703,106 @@ public class Autodeobf implements StarmappedNames {
      * @param mappingsStream Suggested remapper mappings are written to the writer in the tiny v1 format. It appeands, so the header is not written
      */
     public void runAll(Writer mappingsStream) throws IOException {
-        remapSpaceFields(mappingsStream);
-        remapPlayerMethods(mappingsStream);
-        remapHotkeys(mappingsStream);
-        remapEmpireClass(mappingsStream);
-        remapUIClasses(mappingsStream);
-        remapActorClasses(mappingsStream);
-        remapMapModes(mappingsStream);
-        remapNoiseGenerators(mappingsStream);
-        remapGalaxyGeneration(mappingsStream);
-        remapEmploymentAgency(mappingsStream);
-        remapStarMethods(mappingsStream);
-        remapRendersystem(mappingsStream);
-        remapGenerators(mappingsStream);
+        if (Boolean.getBoolean("de.geolykt.starplane.parallelAutodeobf")) {
+            this.runConcurrently(this.getPasses(), Autodeobf.PASS_DEPENDENCIES, mappingsStream);
+            return;
+        }
+        Pass[] passes = this.getPasses();
+        PerformanceReport report = this.performanceReport;
+        for (int i = 0; i < passes.length; i++) {
+            if (report == null) {
+                passes[i].run(mappingsStream);
+                continue;
+            }
+            PerformanceReport.Measurement measurement = report.start("autodeobf", Autodeobf.PASS_NAMES[i]);
+            long mappingsBefore = this.emittedMappings;
+            try {
+                passes[i].run(mappingsStream);
+            } finally {
+                measurement.stop();
+                measurement.setMappings(this.emittedMappings - mappingsBefore);
+            }
+        }
+    }
+
+    /**
+     * Runs the given remapping tasks just like {@link #runAll(Writer)} runs all tasks, but runs independent tasks concurrently.
+     * The output of each task is recorded and replayed in the order of the array, so the contents of the mappings stream
+     * as well as the state of the remapper are the same as if the tasks were run one after another.
+     *
+     * <p>Tasks which alter class nodes (be it through inner class attributes, signatures, parameters or instructions)
+     * or which provide state to other tasks are run one after another in their usual order. The remaining
+     * tasks only read class nodes and run alongside them.
+     *
+     * @param passes The tasks to run. Should a performance report be set, the tasks must be the ones named by {@link #PASS_NAMES}.
+     * @param dependencies The index of the task that needs to be completed before the task at the given index can run, or -1 if none.
+     * Tasks may only depend on tasks that precede them.
+     * @param mappingsStream Suggested remapper mappings are written to the writer in the tiny v1 format. It appeands, so the header is not written
+     */
+    void runConcurrently(@NotNull Pass @NotNull[] passes, int @NotNull[] dependencies, @NotNull Writer mappingsStream) throws IOException {
+        RecordingWriter[] recorders = new RecordingWriter[passes.length];
+        PerformanceReport report = this.performanceReport;
+        PerformanceReport.Measurement[] measurements = new PerformanceReport.Measurement[passes.length];
+        List<CompletableFuture<Void>> futures = new ArrayList<>(passes.length);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(ParallelJarReader.getThreadCount(), passes.length)));
+        try {
+            for (int i = 0; i < passes.length; i++) {
+                Pass pass = passes[i];
+                RecordingWriter recorder = new RecordingWriter();
+                recorders[i] = recorder;
+                PerformanceReport.Measurement measurement = report == null ? null : report.create("autodeobf", Autodeobf.PASS_NAMES[i]);
+                measurements[i] = measurement;
+                Runnable task = () -> {
+                    if (measurement != null) {
+                        measurement.start();
+                    }
+                    try {
+                        pass.run(recorder);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        if (measurement != null) {
+                            measurement.stop();
+                        }
+                    }
+                };
+                futures.add(dependencies[i] == -1 ? CompletableFuture.runAsync(task, pool) : futures.get(dependencies[i]).thenRunAsync(task, pool));
+            }
+
+            for (int i = 0; i < passes.length; i++) {
+                Throwable failure = null;
+                try {
+                    futures.get(i).join();
+                } catch (CompletionException e) {
+                    failure = e.getCause();
+                }
+                long mappingsBefore = this.emittedMappings;
+                recorders[i].replay(mappingsStream);
+                if (measurements[i] != null) {
+                    measurements[i].setMappings(this.emittedMappings - mappingsBefore);
+                }
+                if (failure instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) failure).getCause();
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                } else if (failure != null) {
+                    throw new IllegalStateException(failure);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the report to which the wall time, allocations and emitted mappings of every pass run through
+     * {@link #runAll(Writer)} are recorded to.
+     *
+     * @param performanceReport The report to record to, or null to not record the passes
+     */
+    void setPerformanceReport(@Nullable PerformanceReport performanceReport) {
+        this.performanceReport = performanceReport;
     }
 }
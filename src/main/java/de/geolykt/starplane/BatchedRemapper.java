@@ -0,0 +1,246 @@
+package de.geolykt.starplane;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+
+import de.geolykt.starloader.deobf.remapper.Remapper;
+
+/**
+ * Collects the tiny v1 mappings generated by several softmap files and applies them through a single
+ * {@link Remapper#process()} pass, instead of rewriting all classes once per softmap file.
+ *
+ * <p>The mappings of each softmap file are expressed in the namespace produced by all softmap files before it.
+ * As the classes have not been rewritten since the last {@link #flush()}, the mappings are translated back into
+ * the namespace of the classes as they were at the time of the last flush before they are handed to the remapper.
+ * In case a mapping cannot be reliably translated (for example if it references a renamed member through a
+ * subclass of the owner), the pending mappings are flushed first so that correctness is retained.
+ */
+final class BatchedRemapper {
+
+    private static final class MemberRecord {
+        @NotNull
+        private final String desc;
+        @NotNull
+        private final String dstName;
+        private final boolean method;
+        @NotNull
+        private final String name;
+        @NotNull
+        private final String owner;
+
+        private MemberRecord(boolean method, @NotNull String owner, @NotNull String desc, @NotNull String name, @NotNull String dstName) {
+            this.method = method;
+            this.owner = owner;
+            this.desc = desc;
+            this.name = name;
+            this.dstName = dstName;
+        }
+    }
+
+    @NotNull
+    private static String getMemberKey(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return owner + ' ' + name + ' ' + desc;
+    }
+
+    /**
+     * Splits a tiny v1 line into its columns without going through regular expressions.
+     * Comments and blank lines yield an empty list.
+     */
+    @NotNull
+    private static List<@NotNull String> tokenize(@NotNull String line) {
+        List<@NotNull String> columns = new ArrayList<>(5);
+        int length = line.length();
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                length = i;
+                break;
+            }
+            if (Character.isWhitespace(c)) {
+                if (start != -1) {
+                    columns.add(line.substring(start, i));
+                    start = -1;
+                }
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+        if (start != -1) {
+            columns.add(line.substring(start, length));
+        }
+        return columns;
+    }
+
+    /**
+     * Pending class mappings, keyed by the name of the class at the time of the last flush.
+     */
+    @NotNull
+    private final Map<String, String> classes = new LinkedHashMap<>();
+
+    /**
+     * The inverse of {@link #classes}: the current name of a class to the name at the time of the last flush.
+     */
+    @NotNull
+    private final Map<String, String> currentClassNames = new HashMap<>();
+
+    /**
+     * The current name of renamed members to their name at the time of the last flush. The keys consist
+     * of the owner and descriptor at the time of the last flush and the current name of the member.
+     */
+    @NotNull
+    private final Map<String, String> currentMemberNames = new HashMap<>();
+
+    /**
+     * Pending member mappings, keyed by the owner, name and descriptor at the time of the last flush.
+     */
+    @NotNull
+    private final Map<String, MemberRecord> members = new LinkedHashMap<>();
+
+    @NotNull
+    private final Remapper remapper;
+
+    /**
+     * The current names of renamed members along with their descriptor at the time of the last flush.
+     */
+    @NotNull
+    private final Set<String> renamedMembers = new HashSet<>();
+
+    BatchedRemapper(@NotNull Remapper remapper) {
+        this.remapper = remapper;
+    }
+
+    /**
+     * Adds all mappings generated by a single softmap file. All mappings must be expressed in the namespace
+     * that results from applying all previously added mappings.
+     *
+     * @param tinyLines The generated tiny v1 lines
+     */
+    void add(@NotNull List<@NotNull String> tinyLines) {
+        List<@NotNull List<@NotNull String>> records = new ArrayList<>(tinyLines.size());
+        for (String line : tinyLines) {
+            List<@NotNull String> columns = BatchedRemapper.tokenize(line);
+            if (columns.size() == 3 && columns.get(0).equals("CLASS")) {
+                records.add(columns);
+            } else if (columns.size() == 5 && (columns.get(0).equals("METHOD") || columns.get(0).equals("FIELD"))) {
+                records.add(columns);
+            }
+        }
+
+        if (!this.isTranslatable(records)) {
+            this.flush();
+        }
+
+        // Translate all records before updating the state, as all records of a file share the same namespace
+        List<@NotNull String[]> classRecords = new ArrayList<>();
+        List<@NotNull MemberRecord> memberRecords = new ArrayList<>();
+        StringBuilder sharedBuilder = new StringBuilder();
+        for (List<@NotNull String> columns : records) {
+            if (columns.size() == 3) {
+                String current = columns.get(1);
+                classRecords.add(new @NotNull String[] {current, this.currentClassNames.getOrDefault(current, current), columns.get(2)});
+            } else {
+                String owner = this.currentClassNames.getOrDefault(columns.get(1), columns.get(1));
+                String desc = this.translateDescriptor(columns.get(2), sharedBuilder);
+                String name = this.currentMemberNames.getOrDefault(BatchedRemapper.getMemberKey(owner, columns.get(3), desc), columns.get(3));
+                memberRecords.add(new MemberRecord(columns.get(0).equals("METHOD"), owner, desc, name, columns.get(4)));
+            }
+        }
+
+        for (@NotNull String[] classRecord : classRecords) {
+            this.currentClassNames.remove(classRecord[0]);
+        }
+        for (@NotNull String[] classRecord : classRecords) {
+            this.currentClassNames.put(classRecord[2], classRecord[1]);
+            this.classes.put(classRecord[1], classRecord[2]);
+        }
+
+        for (MemberRecord record : memberRecords) {
+            MemberRecord previous = this.members.put(BatchedRemapper.getMemberKey(record.owner, record.name, record.desc), record);
+            String previousName = previous == null ? record.name : previous.dstName;
+            this.currentMemberNames.remove(BatchedRemapper.getMemberKey(record.owner, previousName, record.desc));
+            this.currentMemberNames.put(BatchedRemapper.getMemberKey(record.owner, record.dstName, record.desc), record.name);
+            this.renamedMembers.add(record.dstName + ' ' + record.desc);
+        }
+    }
+
+    /**
+     * Hands all pending mappings to the remapper and rewrites all classes through a single {@link Remapper#process()} pass.
+     * Does nothing if there are no pending mappings.
+     */
+    void flush() {
+        if (this.classes.isEmpty() && this.members.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<String, String> e : this.classes.entrySet()) {
+            this.remapper.remapClassName(e.getKey(), e.getValue());
+        }
+        for (MemberRecord record : this.members.values()) {
+            if (record.method) {
+                this.remapper.remapMethod(record.owner, record.desc, record.name, record.dstName);
+            } else {
+                this.remapper.remapField(record.owner, record.desc, record.name, record.dstName);
+            }
+        }
+        this.remapper.process();
+
+        this.classes.clear();
+        this.currentClassNames.clear();
+        this.currentMemberNames.clear();
+        this.members.clear();
+        this.renamedMembers.clear();
+    }
+
+    /**
+     * Checks whether the given records can be translated into the namespace of the last flush. This is not the case
+     * if a record references a member by a name given to it within the current batch, but through a different owner
+     * than the one the member was renamed in (as would be the case with inherited members).
+     */
+    private boolean isTranslatable(@NotNull List<@NotNull List<@NotNull String>> records) {
+        if (this.renamedMembers.isEmpty()) {
+            return true;
+        }
+        StringBuilder sharedBuilder = new StringBuilder();
+        for (List<@NotNull String> columns : records) {
+            if (columns.size() != 5) {
+                continue;
+            }
+            String owner = this.currentClassNames.getOrDefault(columns.get(1), columns.get(1));
+            String desc = this.translateDescriptor(columns.get(2), sharedBuilder);
+            String name = columns.get(3);
+            if (this.renamedMembers.contains(name + ' ' + desc)
+                    && !this.currentMemberNames.containsKey(BatchedRemapper.getMemberKey(owner, name, desc))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private String translateDescriptor(@NotNull String desc, @NotNull StringBuilder sharedBuilder) {
+        if (this.currentClassNames.isEmpty() || desc.indexOf('L') == -1) {
+            return desc;
+        }
+        sharedBuilder.setLength(0);
+        int length = desc.length();
+        for (int i = 0; i < length; i++) {
+            char c = desc.charAt(i);
+            sharedBuilder.append(c);
+            if (c == 'L') {
+                int end = desc.indexOf(';', i);
+                String className = desc.substring(i + 1, end);
+                sharedBuilder.append(this.currentClassNames.getOrDefault(className, className));
+                i = end - 1;
+            }
+        }
+        return sharedBuilder.toString();
+    }
+}
@@ -0,0 +1,152 @@
+package de.geolykt.starplane;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+/**
+ * An index of the places where constants are loaded, objects are created, methods are invoked and fields are
+ * accessed within a list of classes. The index is built through a single pass over all instructions, after which
+ * lookups no longer require walking the instructions of every method.
+ *
+ * <p>The sites returned by the index are ordered in the same way as if the classes, their methods and their
+ * instructions were iterated sequentially, so code that previously iterated over all instructions can
+ * use the index without changing the order in which matches are found.
+ *
+ * <p>The index is not updated when the instructions of a method change, so it should only be used while the
+ * instructions of the indexed methods are not altered in a way that matters for the lookups.
+ */
+final class BytecodeIndex {
+
+    /**
+     * The location of an instruction.
+     */
+    static final class Site {
+        @NotNull
+        final AbstractInsnNode insn;
+        @NotNull
+        final MethodNode method;
+        @NotNull
+        final ClassNode node;
+
+        private Site(@NotNull ClassNode node, @NotNull MethodNode method, @NotNull AbstractInsnNode insn) {
+            this.node = node;
+            this.method = method;
+            this.insn = insn;
+        }
+    }
+
+    private static <K> void add(@NotNull Map<K, List<@NotNull Site>> sites, @NotNull K key, @NotNull Site site) {
+        sites.computeIfAbsent(key, (ignore) -> new ArrayList<>(2)).add(site);
+    }
+
+    @NotNull
+    private static String getMemberKey(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return owner + '.' + name + ' ' + desc;
+    }
+
+    @NotNull
+    private final Map<String, List<@NotNull Site>> fieldSites = new HashMap<>();
+    @NotNull
+    private final Map<Object, List<@NotNull Site>> ldcSites = new HashMap<>();
+    @NotNull
+    private final Map<String, List<@NotNull Site>> methodSites = new HashMap<>();
+    @NotNull
+    private final Map<String, List<@NotNull Site>> newSites = new HashMap<>();
+
+    BytecodeIndex(@NotNull List<ClassNode> nodes) {
+        for (ClassNode node : nodes) {
+            for (MethodNode method : node.methods) {
+                for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                    int opcode = insn.getOpcode();
+                    if (opcode == Opcodes.LDC) {
+                        BytecodeIndex.add(this.ldcSites, ((LdcInsnNode) insn).cst, new Site(node, method, insn));
+                    } else if (opcode == Opcodes.NEW) {
+                        BytecodeIndex.add(this.newSites, ((TypeInsnNode) insn).desc, new Site(node, method, insn));
+                    } else if (insn instanceof MethodInsnNode) {
+                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                        BytecodeIndex.add(this.methodSites, BytecodeIndex.getMemberKey(methodInsn.owner, methodInsn.name, methodInsn.desc), new Site(node, method, insn));
+                    } else if (insn instanceof FieldInsnNode) {
+                        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                        BytecodeIndex.add(this.fieldSites, BytecodeIndex.getMemberKey(fieldInsn.owner, fieldInsn.name, fieldInsn.desc), new Site(node, method, insn));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains all field instructions (GETFIELD, PUTFIELD, GETSTATIC and PUTSTATIC) that reference the given field.
+     *
+     * @param owner The owner of the field as referenced by the instruction
+     * @param name The name of the field
+     * @param desc The descriptor of the field
+     * @return The sites that reference the field, in class, method and instruction order
+     */
+    @NotNull
+    @Unmodifiable
+    List<@NotNull Site> getFieldSites(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return this.getSites(this.fieldSites, BytecodeIndex.getMemberKey(owner, name, desc));
+    }
+
+    /**
+     * Obtains all LDC instructions that load the given constant.
+     *
+     * @param constant The constant, as stored in {@link LdcInsnNode#cst}
+     * @return The sites that load the constant, in class, method and instruction order
+     */
+    @NotNull
+    @Unmodifiable
+    List<@NotNull Site> getLdcSites(@NotNull Object constant) {
+        return this.getSites(this.ldcSites, constant);
+    }
+
+    /**
+     * Obtains all method invocation instructions (excluding INVOKEDYNAMIC) that reference the given method.
+     *
+     * @param owner The owner of the method as referenced by the instruction
+     * @param name The name of the method
+     * @param desc The descriptor of the method
+     * @return The sites that invoke the method, in class, method and instruction order
+     */
+    @NotNull
+    @Unmodifiable
+    List<@NotNull Site> getMethodSites(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return this.getSites(this.methodSites, BytecodeIndex.getMemberKey(owner, name, desc));
+    }
+
+    /**
+     * Obtains all NEW instructions that create an instance of the given type.
+     *
+     * @param type The internal name of the type
+     * @return The sites that create an instance of the type, in class, method and instruction order
+     */
+    @NotNull
+    @Unmodifiable
+    List<@NotNull Site> getNewSites(@NotNull String type) {
+        return this.getSites(this.newSites, type);
+    }
+
+    @NotNull
+    @Unmodifiable
+    private <K> List<@NotNull Site> getSites(@NotNull Map<K, List<@NotNull Site>> sites, @NotNull K key) {
+        List<@NotNull Site> list = sites.get(key);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
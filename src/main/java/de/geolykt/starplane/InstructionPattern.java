@@ -0,0 +1,133 @@
+package de.geolykt.starplane;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A compiled form of an instruction template as used by {@link Autodeobf#contentsEqual(MethodNode, AbstractInsnNode...)}.
+ *
+ * <p>The template is flattened into parallel arrays of opcodes and operands when the pattern is compiled, so
+ * matching it against a method only consists of comparing the opcode stream of the method against an int array,
+ * followed by the comparison of the operands. Pseudo-instructions (labels, line numbers and frames) in the
+ * template are dropped and are skipped within the method. Unsupported instruction types are rejected
+ * when the pattern is compiled rather than when it is first matched.
+ *
+ * <p>Like {@link Autodeobf#contentsEqual(MethodNode, AbstractInsnNode...)}, a pattern matches if the
+ * instructions of the method start with the instructions of the template. A member name of {@code "*"}
+ * matches any name.
+ */
+final class InstructionPattern {
+
+    /**
+     * Compiles the given template into a pattern.
+     *
+     * @param template The instructions to match
+     * @return The compiled pattern
+     * @throws AssertionError If the template contains instructions that cannot be compared
+     */
+    @NotNull
+    static InstructionPattern compile(@NotNull AbstractInsnNode @NotNull... template) {
+        int length = 0;
+        for (AbstractInsnNode insn : template) {
+            if (insn.getOpcode() != -1) {
+                length++;
+            }
+        }
+
+        int[] opcodes = new int[length];
+        int[] vars = new int[length];
+        String[] owners = new String[length];
+        String[] names = new String[length];
+        String[] descs = new String[length];
+        int i = 0;
+        for (AbstractInsnNode insn : template) {
+            if (insn.getOpcode() == -1) {
+                continue;
+            }
+            opcodes[i] = insn.getOpcode();
+            if (insn instanceof MethodInsnNode) {
+                MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                owners[i] = methodInsn.owner;
+                names[i] = methodInsn.name.equals("*") ? null : methodInsn.name;
+                descs[i] = methodInsn.desc;
+            } else if (insn instanceof FieldInsnNode) {
+                FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                owners[i] = fieldInsn.owner;
+                names[i] = fieldInsn.name.equals("*") ? null : fieldInsn.name;
+                descs[i] = fieldInsn.desc;
+            } else if (insn instanceof VarInsnNode) {
+                vars[i] = ((VarInsnNode) insn).var;
+            } else if (!(insn instanceof InsnNode)) {
+                throw new AssertionError("Cannot compare instances of class " + insn.getClass().getName());
+            }
+            i++;
+        }
+        return new InstructionPattern(opcodes, vars, owners, names, descs);
+    }
+
+    @Nullable
+    private final String @NotNull[] descs;
+    @Nullable
+    private final String @NotNull[] names;
+    private final int @NotNull[] opcodes;
+    @Nullable
+    private final String @NotNull[] owners;
+    private final int @NotNull[] vars;
+
+    private InstructionPattern(int @NotNull[] opcodes, int @NotNull[] vars, @Nullable String @NotNull[] owners, @Nullable String @NotNull[] names, @Nullable String @NotNull[] descs) {
+        this.opcodes = opcodes;
+        this.vars = vars;
+        this.owners = owners;
+        this.names = names;
+        this.descs = descs;
+    }
+
+    /**
+     * Checks whether the instructions of the given method start with the instructions of this pattern.
+     *
+     * @param method The method to match against
+     * @return True if the pattern matches the method
+     */
+    boolean matches(@NotNull MethodNode method) {
+        int length = this.opcodes.length;
+        // A method needs at least as many instructions as the pattern, pseudo-instructions included
+        if (method.instructions.size() < length) {
+            return false;
+        }
+
+        AbstractInsnNode insn = method.instructions.getFirst();
+        for (int i = 0; i < length; i++) {
+            while (insn != null && insn.getOpcode() == -1) {
+                insn = insn.getNext();
+            }
+            if (insn == null || insn.getOpcode() != this.opcodes[i]) {
+                return false;
+            }
+            String owner = this.owners[i];
+            if (owner != null) {
+                String name = this.names[i];
+                if (insn instanceof MethodInsnNode) {
+                    MethodInsnNode methodInsn = (MethodInsnNode) insn;
+                    if (!owner.equals(methodInsn.owner) || !this.descs[i].equals(methodInsn.desc) || (name != null && !name.equals(methodInsn.name))) {
+                        return false;
+                    }
+                } else {
+                    FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+                    if (!owner.equals(fieldInsn.owner) || !this.descs[i].equals(fieldInsn.desc) || (name != null && !name.equals(fieldInsn.name))) {
+                        return false;
+                    }
+                }
+            } else if (insn instanceof VarInsnNode && ((VarInsnNode) insn).var != this.vars[i]) {
+                return false;
+            }
+            insn = insn.getNext();
+        }
+        return true;
+    }
+}
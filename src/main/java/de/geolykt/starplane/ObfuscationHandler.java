@@ -8,18 +8,28 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
@@ -28,27 +38,32 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.jar.JarFile;
+import java.util.stream.Stream;
 import java.util.zip.Adler32;
 import java.util.zip.CheckedInputStream;
-import java.util.zip.Checksum;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InnerClassNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stianloader.micromixin.remapper.IllegalMixinException;
+import org.stianloader.micromixin.remapper.MemberLister;
 import org.stianloader.micromixin.remapper.MicromixinRemapper;
 import org.stianloader.micromixin.remapper.MissingFeatureException;
 import org.stianloader.remapper.HierarchyAwareMappingDelegator;
@@ -75,8 +90,12 @@ import de.geolykt.starloader.deobf.Oaktree;
 import de.geolykt.starloader.ras.ReversibleAccessSetterContext;
 import de.geolykt.starloader.ras.ReversibleAccessSetterContext.RASTransformFailure;
 import de.geolykt.starloader.ras.ReversibleAccessSetterContext.RASTransformScope;
+import de.geolykt.starplane.TransformationStages.Stage;
 import de.geolykt.starplane.remapping.ChainMappingLookup;
+import de.geolykt.starplane.remapping.ComposedMappingLookup;
 import de.geolykt.starplane.remapping.CommentLookup;
+import de.geolykt.starplane.remapping.ConcurrentMappingLookup;
+import de.geolykt.starplane.remapping.IndexedCommentLookup;
 import de.geolykt.starplane.remapping.MIOContainerFormat;
 import de.geolykt.starplane.remapping.MIOMappingTreeProvider;
 import de.geolykt.starplane.remapping.RASRemapper;
@@ -87,23 +106,171 @@ import de.geolykt.starplane.remapping.StarplaneMappingLookup;
 
 public class ObfuscationHandler {
 
+    /**
+     * Name of the file storing the reversible access setter that was applied on the
+     * transformed jars, used to incrementally apply changes to the RAS.
+     */
+    @NotNull
+    private static final String APPLIED_RAS_FILE_NAME = "applied-ras.ras";
     @NotNull
     private static final String COMPILED_SOFTMAP_FILE_NAME = "compiled-softmap.tiny";
     @NotNull
+    private static final String COMPOSED_MAPPINGS_FILE_NAME = "composed-mappings.bin";
+    @NotNull
+    private static final String COMPOSED_MAPPINGS_REVERSED_FILE_NAME = "composed-mappings-reversed.bin";
+    @NotNull
     private static final String INTERMEDIARY_FILE_NAME = "slintermediary.tiny";
-    private static final byte @NotNull[] IO_BUFFER = new byte[4096];
+    /**
+     * Buffer used to exhaust streams when computing checksums. The buffer is held per-thread as several
+     * projects may be configured concurrently when Gradle runs with --parallel.
+     */
+    @NotNull
+    private static final ThreadLocal<byte @NotNull[]> IO_BUFFER = ThreadLocal.withInitial(() -> new byte[4096]);
     private static final Logger LOGGER = LoggerFactory.getLogger(ObfuscationHandler.class);
     @NotNull
+    private static final String ORIGINAL_SKELETON_FILE_NAME = "galimulator-desktop.skeleton";
+    /**
+     * Name of the JSON file to which the timings and allocations of the individual steps that were
+     * run during the last transformation of the galimulator jar are written to.
+     */
+    @NotNull
+    private static final String PERFORMANCE_REPORT_FILE_NAME = "performance-report.json";
+    /**
+     * Name of the pre-RAS snapshot within the entries of the {@link SharedCache}.
+     */
+    @NotNull
+    private static final String SHARED_SNAPSHOT_FILE_NAME = "supplementary.jar";
+    @NotNull
+    private static final String SKELETON_FILE_NAME = "galimulator-remapped.skeleton";
+    @NotNull
+    private static final String SOFTMAP_CACHE_DIRECTORY_NAME = "softmap-cache";
+    @NotNull
     private static final String STARMAP_FILE_NAME = "spstarmap.tiny";
+    /**
+     * The checksum of the code of the plugin, computed lazily by {@link #getStarplaneChecksum()}.
+     */
+    @Nullable
+    private static volatile String starplaneChecksum;
 
-    private static String getStarplaneChecksum() throws IOException {
-        try (InputStream autodeobfClass = Autodeobf.class.getClassLoader().getResourceAsStream("de/geolykt/starplane/Autodeobf.class");
-                CheckedInputStream checkedIn = new CheckedInputStream(autodeobfClass, new Adler32())) {
-            while (checkedIn.read(ObfuscationHandler.IO_BUFFER) != -1); // read the entire input stream until it is exhausted
+    @NotNull
+    private static String getClassChecksum(@NotNull Class<?> clazz) throws IOException {
+        try (InputStream classIn = clazz.getClassLoader().getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+                CheckedInputStream checkedIn = new CheckedInputStream(classIn, new Adler32())) {
+            while (checkedIn.read(ObfuscationHandler.IO_BUFFER.get()) != -1); // read the entire input stream until it is exhausted
             return Long.toUnsignedString(checkedIn.getChecksum().getValue(), Character.MAX_RADIX);
         }
     }
 
+    /**
+     * Obtains the normalized transform entries of a reversible access setter, excluding comments,
+     * blank lines and the header.
+     *
+     * @param rasContent The content of the reversible access setter, or null if no RAS is used.
+     * @return The set of entries, or null if an entry whose owner cannot be determined was encountered.
+     */
+    @Nullable
+    private static Set<String> getRASEntries(@Nullable String rasContent) {
+        Set<String> entries = new HashSet<>();
+        if (rasContent == null) {
+            return entries;
+        }
+
+        boolean header = true;
+        for (String line : rasContent.split("\\R")) {
+            if (Utils.isBlank(line) || line.codePointAt(0) == '#') {
+                continue;
+            }
+            if (header) {
+                header = false;
+                continue;
+            }
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length != 4 && parts.length != 6) {
+                return null;
+            }
+            entries.add(String.join(" ", parts));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Obtains a checksum of the code of the plugin alongside the version of {@link Autodeobf}.
+     * The checksum covers all classes that take part in transforming the galimulator jar
+     * (such as {@link Autodeobf} and its inner classes, the {@link BytecodeIndex}, the {@link TypeHierarchyIndex}
+     * or the {@link ObfuscationHandler} itself), as it is computed from the code source of the plugin.
+     * This is usually the plugin jar, but can also be a directory of class files.
+     *
+     * @return The checksum of the plugin
+     * @throws IOException If the code source of the plugin could not be read
+     */
+    @NotNull
+    public static String getStarplaneChecksum() throws IOException {
+        String checksum = ObfuscationHandler.starplaneChecksum;
+        if (checksum != null) {
+            return checksum;
+        }
+
+        CodeSource codeSource = ObfuscationHandler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new IOException("Unable to locate the code source of the plugin");
+        }
+        Path location;
+        try {
+            location = Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            throw new IOException("Unable to locate the code source of the plugin: " + codeSource.getLocation(), e);
+        }
+
+        MessageDigest digest = ObfuscationHandler.newSHA256Digest();
+        digest.update(Autodeobf.getVersion().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        List<@NotNull Path> files = new ArrayList<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> stream = Files.walk(location)) {
+                stream.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+        } else {
+            files.add(location);
+        }
+        for (Path file : files) {
+            // Names are included so that moving code between files changes the checksum
+            digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (DigestInputStream din = new DigestInputStream(Files.newInputStream(file), digest)) {
+                while (din.read(ObfuscationHandler.IO_BUFFER.get()) != -1); // Discard all read bytes
+            }
+        }
+
+        checksum = ObfuscationHandler.toHexHash(digest.digest());
+        ObfuscationHandler.starplaneChecksum = checksum;
+        return checksum;
+    }
+
+    private static boolean isMixin(@NotNull ClassNode node) {
+        for (List<AnnotationNode> annotations : Arrays.asList(node.invisibleAnnotations, node.visibleAnnotations)) {
+            if (annotations == null) {
+                continue;
+            }
+            for (AnnotationNode annotation : annotations) {
+                if (annotation.desc.equals("Lorg/spongepowered/asm/mixin/Mixin;")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private static MessageDigest newSHA256Digest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+
     @SuppressWarnings("null")
     @NotNull
     private static String toHexHash(byte[] hash) {
@@ -126,6 +293,12 @@ public class ObfuscationHandler {
     @NotNull
     private final Path projectDir;
 
+    @Nullable
+    private final SharedCache sharedCache;
+
+    @Nullable
+    private Path transformedGalimulatorJar;
+
     @Nullable
     private final String rasContent;
 
@@ -140,7 +313,26 @@ public class ObfuscationHandler {
     public ObfuscationHandler(@NotNull Path cacheDir, @NotNull Path projectDir, @Nullable String rasContent,
             @NotNull @Unmodifiable Collection<@NotNull Path> softmapFiles,
             @NotNull @Unmodifiable List<@NotNull MIOMappingTreeProvider> supplementaryMappings) {
+        this(cacheDir, projectDir, rasContent, softmapFiles, supplementaryMappings, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDir The project-local directory in which the transformed jars and intermediary files are stored
+     * @param projectDir The directory of the project
+     * @param rasContent The contents of the reversible access setter to apply, or null if none
+     * @param softmapFiles The softmap files to apply
+     * @param supplementaryMappings The supplementary mappings to apply
+     * @param sharedCache A cache shared with other projects from which the transformation stages that precede
+     * the RAS stage are restored (and to which they are published), or null to always transform locally.
+     */
+    public ObfuscationHandler(@NotNull Path cacheDir, @NotNull Path projectDir, @Nullable String rasContent,
+            @NotNull @Unmodifiable Collection<@NotNull Path> softmapFiles,
+            @NotNull @Unmodifiable List<@NotNull MIOMappingTreeProvider> supplementaryMappings,
+            @Nullable SharedCache sharedCache) {
         this.cacheDir = cacheDir;
+        this.sharedCache = sharedCache;
         this.projectDir = projectDir;
         this.rasContent = rasContent;
         this.softmapFiles = softmapFiles;
@@ -168,12 +360,244 @@ public class ObfuscationHandler {
         }
     }
 
+    private void applyIntermediaryStage(@NotNull Oaktree deobfuscator, @NotNull PerformanceReport report) throws IOException {
+        Path map = this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME);
+        IntermediaryGenerator generator = new IntermediaryGenerator(map, null, deobfuscator.getClassNodesDirectly());
+        generator.useAlternateClassNaming(!Boolean.getBoolean("de.geolykt.starplane.oldnames"));
+        report.measure("intermediary", "remapClassesV2", () -> generator.remapClassesV2(true));
+        report.measure("intermediary", "fixSwitchMaps", deobfuscator::fixSwitchMaps);
+        report.measure("intermediary", "doProposeEnumFieldsV2", generator::doProposeEnumFieldsV2);
+        report.measure("intermediary", "remapGetters", generator::remapGetters);
+        report.measure("intermediary", "deobfuscate", generator::deobfuscate);
+
+        try {
+            de.geolykt.starloader.deobf.remapper.Remapper remapper = new de.geolykt.starloader.deobf.remapper.Remapper();
+            remapper.addTargets(deobfuscator.getClassNodesDirectly());
+            long startSlStarmap = System.currentTimeMillis();
+            Autodeobf deobf = new Autodeobf(deobfuscator.getClassNodesDirectly(), remapper);
+            deobf.setPerformanceReport(report);
+            try (Writer writer = Files.newBufferedWriter(this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write("v1\tintermediary\tnamed\n");
+                deobf.runAll(writer);
+                for (Map.Entry<String, String> e : remapper.fixICNNames(new StringBuilder()).entrySet()) {
+                    writer.write("CLASS\t");
+                    writer.write(e.getKey());
+                    writer.write('\t');
+                    writer.write(e.getValue());
+                    writer.write('\n');
+                }
+                writer.flush();
+                report.measure("intermediary", "process", remapper::process);
+            }
+            StarplaneMappingLookup.compile(map);
+            StarplaneMappingLookup.compile(this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME));
+            LOGGER.info("Computed spStarmap in " + (System.currentTimeMillis() - startSlStarmap) + " ms.");
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot write Autodeobf.java-generated mappings", e);
+        }
+    }
+
+    private void applyOaktreeStage(@NotNull Oaktree deobfuscator, @NotNull PerformanceReport report) {
+        Map<String, ClassNode> nameToNode = new HashMap<>();
+        for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+            nameToNode.put(node.name, node);
+        }
+        long startDeobf = System.currentTimeMillis();
+        report.measure("oaktree", "fixInnerClasses", deobfuscator::fixInnerClasses);
+        report.measure("oaktree", "fixParameterLVT", deobfuscator::fixParameterLVT);
+        report.measure("oaktree", "guessFieldGenerics", deobfuscator::guessFieldGenerics);
+        report.measure("oaktree", "analyseLikelyMethodReturnCollectionGenerics", () -> {
+            addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, deobfuscator.analyseLikelyMethodReturnCollectionGenerics());
+        });
+        report.measure("oaktree", "lambdaStreamGenericSignatureGuessing", () -> {
+            Map<MethodReference, ClassWrapper> methods = new HashMap<>();
+            deobfuscator.lambdaStreamGenericSignatureGuessing(null, methods);
+            addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, methods);
+        });
+        report.measure("oaktree", "inferMethodGenerics", deobfuscator::inferMethodGenerics);
+        report.measure("oaktree", "inferConstructorGenerics", deobfuscator::inferConstructorGenerics);
+        report.measure("oaktree", "fixForeachOnArray", deobfuscator::fixForeachOnArray);
+        report.measure("oaktree", "fixComparators", () -> deobfuscator.fixComparators(true));
+        report.measure("oaktree", "guessAnonymousInnerClasses", deobfuscator::guessAnonymousInnerClasses);
+
+        // sl-deobf adds ACC_SUPER as that was the observed behaviour of compilers when compiling anonymous inner classes.
+        // However, asm-util's ClassCheckAdapter does not tolerate that flag on anonymous inner classes, so we shall strip it.
+        // In the end, this should have absolutely no impact on runtime 90% of the time (the other 10% are when the
+        // ClassCheckAdapter is being used by SLL in case a class failed to transform).
+        for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+            for (InnerClassNode icn : node.innerClasses) {
+                icn.access &= ~Opcodes.ACC_SUPER;
+            }
+        }
+
+        LOGGER.info("Deobfuscated classes in " + (System.currentTimeMillis() - startDeobf) + " ms.");
+    }
+
+    private void applyRASStage(@NotNull Oaktree deobfuscator, @Nullable ReversibleAccessSetterContext rasInfo,
+            @NotNull Path cleanGalimJar, @NotNull Path compileAccess, @NotNull Path runAccess) throws IOException {
+        if (rasInfo == null) {
+            try (OutputStream os = Files.newOutputStream(compileAccess)) {
+                deobfuscator.write(os, cleanGalimJar);
+            }
+            // Compile-time Access = Runtime Access
+            Files.copy(compileAccess, runAccess, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        // Duplicate all nodes
+        List<ClassNode> runNodes = new ArrayList<>();
+        Map<String, ClassNode> compileNodes = new HashMap<>();
+
+        for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+            if (node == null) {
+                continue;
+            }
+            // Apply RAS
+            try {
+                rasInfo.accept(node);
+            } catch (RASTransformFailure e) {
+                LOGGER.error("Unable to apply RAS on class {}", node.name, e);
+            }
+
+            ClassNode duplicate = new ClassNode();
+            node.accept(duplicate);
+            runNodes.add(duplicate);
+            compileNodes.put(node.name, node);
+        }
+
+        // Write compile-time nodes to disk
+        try (OutputStream os = Files.newOutputStream(compileAccess)) {
+            deobfuscator.write(os, cleanGalimJar);
+        }
+
+        // Write runtime nodes to disk
+        try (ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(runAccess), StandardCharsets.UTF_8)) {
+            // Copy resources
+            try (InputStream rawIn = Files.newInputStream(cleanGalimJar);
+                    ZipInputStream zipIn = new ZipInputStream(rawIn)) {
+                for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                    if (entry.getName().endsWith(".class")) {
+                        // Do not copy classes
+                        continue;
+                    }
+                    os.putNextEntry(entry);
+                    byte[] b = new byte[4096];
+                    int read;
+                    while ((read = zipIn.read(b)) != -1) {
+                        os.write(b, 0, read);
+                    }
+                }
+            }
+            // Write the actual nodes - in alphabetic order to preserve consistency
+            TreeSet<ClassNode> sortedNodes = new TreeSet<>((node1, node2) -> node1.name.compareTo(node2.name));
+            sortedNodes.addAll(runNodes);
+            for (ClassNode node : sortedNodes) {
+                ClassWriter writer = new ClassWriter(0);
+                node.accept(writer);
+                os.putNextEntry(new ZipEntry(node.name + ".class"));
+                os.write(writer.toByteArray());
+            }
+        }
+    }
+
+    private void applySoftmapStage(@NotNull Oaktree deobfuscator, @NotNull String intermediaryFingerprint) {
+        try {
+            Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
+            Path softmapCacheDir = this.cacheDir.resolve(ObfuscationHandler.SOFTMAP_CACHE_DIRECTORY_NAME);
+            if (this.softmapFiles.isEmpty()) {
+                Files.deleteIfExists(compiledSoftmap);
+                Files.deleteIfExists(StarplaneMappingLookup.getCompiledPath(compiledSoftmap));
+            } else {
+                de.geolykt.starloader.deobf.remapper.Remapper remapper = new de.geolykt.starloader.deobf.remapper.Remapper();
+                remapper.addTargets(deobfuscator.getClassNodesDirectly());
+                BatchedRemapper batchedRemapper = new BatchedRemapper(remapper);
+                long startOfSoftmap = System.currentTimeMillis();
+
+                @SuppressWarnings("null")
+                @NotNull
+                List<@NotNull ClassNode> nodes = deobfuscator.getClassNodesDirectly();
+                List<@NotNull String> allTiny = new ArrayList<>();
+
+                allTiny.add("v1\tintermediary\tnamed");
+                allTiny.add("# This file was compiled from softmap files, do not touch unless you know what you are doing");
+
+                // The output of a softmap file depends on the intermediary names as well as on all softmap files
+                // which were applied before it, so all of them are part of the key of the cached output.
+                MessageDigest precedingOutputs = MessageDigest.getInstance("SHA-1");
+                precedingOutputs.update(intermediaryFingerprint.getBytes(StandardCharsets.UTF_8));
+                Set<Path> usedCacheFiles = new HashSet<>();
+
+                for (Path softmapFile : this.softmapFiles) {
+                    byte[] softmapBytes = Files.readAllBytes(softmapFile);
+                    MessageDigest keyDigest = (MessageDigest) precedingOutputs.clone();
+                    keyDigest.update(MessageDigest.getInstance("SHA-1").digest(softmapBytes));
+                    Path cacheFile = softmapCacheDir.resolve(ObfuscationHandler.toHexHash(keyDigest.digest()) + ".tiny");
+                    usedCacheFiles.add(cacheFile);
+
+                    if (!Files.isRegularFile(cacheFile)) {
+                        // The softmap file needs to be applied on the classes as left behind by the previous softmap files
+                        batchedRemapper.flush();
+                    }
+                    List<@NotNull String> generatedTiny = this.compileSoftmap(softmapFile, softmapBytes, nodes, cacheFile);
+                    for (String s : generatedTiny) {
+                        precedingOutputs.update(s.getBytes(StandardCharsets.UTF_8));
+                        precedingOutputs.update((byte) '\n');
+                    }
+                    allTiny.addAll(generatedTiny);
+                    batchedRemapper.add(generatedTiny);
+                }
+                batchedRemapper.flush();
+
+                Files.write(compiledSoftmap, allTiny, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                StarplaneMappingLookup.compile(compiledSoftmap);
+
+                // Remove cached outputs that can no longer be used
+                if (Files.isDirectory(softmapCacheDir)) {
+                    try (Stream<Path> cachedFiles = Files.list(softmapCacheDir)) {
+                        for (Path cachedFile : (Iterable<Path>) cachedFiles::iterator) {
+                            if (!usedCacheFiles.contains(cachedFile)) {
+                                Files.deleteIfExists(cachedFile);
+                            }
+                        }
+                    }
+                }
+
+                ObfuscationHandler.LOGGER.info("Compiled all softmap files in " + (System.currentTimeMillis() - startOfSoftmap) + "ms.");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot write softmap-generated mappings", e);
+        }
+    }
+
+    private void applySupplementaryStage(@NotNull Oaktree deobfuscator) throws IOException {
+        if (!this.supplementaryMappings.isEmpty()) {
+            for (MIOMappingTreeProvider supplementaryMapping : this.supplementaryMappings) {
+                VisitableMappingTree mappingTree = supplementaryMapping.get();
+
+                TopLevelMemberLookup definitionLookup = new SimpleTopLevelLookup(deobfuscator.getClassNodesDirectly());
+                ReadOnlyMIOMappingLookup directLookup = new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMinNamespaceId(), mappingTree.getMaxNamespaceId() - 1);
+                HierarchyAwareMappingDelegator<ReadOnlyMIOMappingLookup> hierarchicalLookup = new HierarchyAwareMappingDelegator<>(directLookup, definitionLookup);
+//                HierarchyAwareMappingDelegator<ReadOnlyMappingLookupSink> hierarchicalLookup = new HierarchyAwareMappingDelegator<>(new ReadOnlyMappingLookupSink(new ChainMappingLookup(directLookup).enableDebugMode(true)), definitionLookup);
+                Remapper remapper = new Remapper(hierarchicalLookup);
+                StringBuilder sharedBuilder = new StringBuilder();
+                for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
+                    remapper.remapNode(node, sharedBuilder);
+                }
+            }
+        }
+    }
+
     @NotNull
     @Unmodifiable
-    @Contract(pure = true)
-    private List<@NotNull String> compileSoftmap(@NotNull Path softmapFile, @NotNull List<@NotNull ClassNode> obfuscatedNodes) throws IOException {
+    private List<@NotNull String> compileSoftmap(@NotNull Path softmapFile, byte @NotNull[] softmapBytes, @NotNull List<@NotNull ClassNode> obfuscatedNodes, @NotNull Path cacheFile) throws IOException {
         long fileStart = System.currentTimeMillis();
-        String softmapContent = new String(Files.readAllBytes(softmapFile), StandardCharsets.UTF_8);
+        if (Files.isRegularFile(cacheFile)) {
+            List<@NotNull String> cachedTiny = Collections.unmodifiableList(Files.readAllLines(cacheFile, StandardCharsets.UTF_8));
+            ObfuscationHandler.LOGGER.info("Softmap file {} loaded from cache in {}ms.", softmapFile, (System.currentTimeMillis() - fileStart));
+            return cachedTiny;
+        }
+
+        String softmapContent = new String(softmapBytes, StandardCharsets.UTF_8);
         SoftmapContext softmapContext = SoftmapContext.parse(softmapContent, 0, softmapContent.length(), 1, 1);
 
         List<SoftmapParseError> parseErrors = softmapContext.getParseErrors();
@@ -214,88 +638,30 @@ public class ObfuscationHandler {
             System.out.println();
         }
 
+        List<@NotNull String> generatedTiny = result.getGeneratedTinyV1Mappings();
+        if (parseErrors.isEmpty() && applyErrors.isEmpty()) {
+            // Only cache error-free outputs so that errors are reported on every build until they are fixed
+            Files.createDirectories(cacheFile.getParent());
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(temp, generatedTiny, StandardCharsets.UTF_8);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
         ObfuscationHandler.LOGGER.info("Softmap file {} compiled in {}ms.", softmapFile, (System.currentTimeMillis() - fileStart));
-        return result.getGeneratedTinyV1Mappings();
+        return generatedTiny;
     }
 
     public void deobfuscateJar(@NotNull Path source, @NotNull Path target) throws IOException {
-        Path spstarmap = this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME);
-        Path slintermediary = this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME);
-        Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
-
-        List<@NotNull MappingLookup> lookups = new ArrayList<>();
-        lookups.add(new StarplaneMappingLookup(slintermediary, false).load());
-        lookups.add(new StarplaneMappingLookup(spstarmap, false).load());
-        lookups.add(new StarplaneMappingLookup(compiledSoftmap, false, true).load());
-
-        if (!this.supplementaryMappings.isEmpty()) {
-            LOGGER.info("Loading supplementary mappings");
-            for  (MIOMappingTreeProvider provider : this.supplementaryMappings) {
-                VisitableMappingTree mappingTree = provider.get();
-                lookups.add(new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMinNamespaceId(), mappingTree.getMaxNamespaceId() - 1));
-            }
-        }
-
         Map<String, ClassNode> remapNodes = new HashMap<>();
         Map<String, byte[]> rawFiles = new HashMap<>();
 
-        try (InputStream is = Files.newInputStream(source); ZipInputStream zipIn = new ZipInputStream(is, StandardCharsets.UTF_8)) {
-            ZipEntry e;
-            while ((e = zipIn.getNextEntry()) != null) {
-                byte[] allData = zipIn.readAllBytes();
-                if (allData.length < 4
-                        || allData[0] != (byte) 0xCA
-                        || allData[1] != (byte) 0xFE
-                        || allData[2] != (byte) 0xBA
-                        || allData[3] != (byte) 0xBE
-                        || !e.getName().endsWith(".class")) {
-                    if (rawFiles.put(e.getName(), allData) != null) {
-                        ObfuscationHandler.LOGGER.warn("Overwrote entry for raw file {}. The remapped jar may be malformed", e.getName());
-                    }
-                    continue;
-                }
-                try {
-                    ClassReader reader = new ClassReader(allData);
-                    ClassNode visitedNode = new ClassNode();
-                    reader.accept(visitedNode, 0); // Do not skip anything (we will write the nodes as-is, including frames!)
-                    remapNodes.put(e.getName(), visitedNode);
-                } catch (Exception ex) {
-                    ObfuscationHandler.LOGGER.warn("Unable to read classfile {}; treating it as a regular file instead.", e.getName(), ex);
-                    if (rawFiles.put(e.getName(), allData) != null) {
-                        ObfuscationHandler.LOGGER.warn("Overwrote entry for raw file {}. The remapped jar may be malformed", e.getName());
-                    }
-                }
-            }
+        try {
+            ParallelJarReader.readJar(source, remapNodes, rawFiles);
         } catch (IOException e) {
             throw new IOException("Unable to read input jar " + source, e);
         }
 
-        Map<String, ClassNode> libraryNodes = new HashMap<>();
-        try (InputStream is = Files.newInputStream(this.getOriginalGalimulatorJar());
-                ZipInputStream zipIn = new ZipInputStream(is, StandardCharsets.UTF_8)) {
-            ZipEntry e;
-            while ((e = zipIn.getNextEntry()) != null) {
-                byte[] allData = zipIn.readAllBytes();
-                if (allData.length < 4
-                        || allData[0] != (byte) 0xCA
-                        || allData[1] != (byte) 0xFE
-                        || allData[2] != (byte) 0xBA
-                        || allData[3] != (byte) 0xBE
-                        || !e.getName().endsWith(".class")) {
-                    continue;
-                }
-                try {
-                    ClassReader reader = new ClassReader(allData);
-                    ClassNode visitedNode = new ClassNode();
-                    reader.accept(visitedNode, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
-                    if (libraryNodes.put(visitedNode.name, visitedNode) != null) {
-                        ObfuscationHandler.LOGGER.warn("Collision for path {}, entry {}. Likely caused due to unexpected multi-release-jar", visitedNode.name, e.getName());
-                    }
-                } catch (Exception ex) {
-                    ObfuscationHandler.LOGGER.warn("Unable to read library classfile {}; skipping it instead.", e.getName(), ex);
-                }
-            }
-        }
+        Map<String, ClassNode> libraryNodes = SkeletonIndex.getOrCreate(this.getOriginalGalimulatorJar(), this.cacheDir.resolve(ObfuscationHandler.ORIGINAL_SKELETON_FILE_NAME));
 
         // multi-release jar version -> map of class name to ClassNode pairs.
         Map<Integer, Map<String, ClassNode>> mrjClasses = new HashMap<>();
@@ -329,8 +695,7 @@ public class ObfuscationHandler {
 
         try (OutputStream os = Files.newOutputStream(target);
                 ZipOutputStream zipOut = new ZipOutputStream(os, StandardCharsets.UTF_8)) {
-            @SuppressWarnings("null")
-            ChainMappingLookup externalLookups = new ChainMappingLookup(lookups.toArray(new @NotNull MappingLookup[0]));
+            MappingLookup externalLookups = this.getExternalLookup(false);
             for (int mrjVersion = maxMrjVersion; mrjVersion >= 8; mrjVersion--) {
                 Map<String, ClassNode> versionClasses = mrjClasses.remove(mrjVersion);
                 if (versionClasses == null) {
@@ -348,8 +713,11 @@ public class ObfuscationHandler {
                     }
                 }
 
+                // The lookups are built from skeletons of the classes, as the classes themselves are modified while the lookups are in use
                 List<ClassNode> allClasses = new ArrayList<>(libraryNodes.values());
-                allClasses.addAll(versionClasses.values());
+                for (ClassNode node : versionClasses.values()) {
+                    allClasses.add(SkeletonIndex.createSkeleton(node));
+                }
                 SimpleTopLevelLookup allTopLevelLookup = new SimpleTopLevelLookup(allClasses);
                 DebugableMemberLister libraryMemberLister = new DebugableMemberLister(allTopLevelLookup, libraryNodes);
 
@@ -367,38 +735,42 @@ public class ObfuscationHandler {
 //                System.out.println("-----------------------------------------------------");
 
                 StringBuilder sharedBuilder = new StringBuilder();
-                for (ClassNode mainNode : mainClasses) {
-                    mainNode = Objects.requireNonNull(mainNode);
-
-//                    if (mainNode.name.equals("de/geolykt/starloader/impl/asm/TransformCallbacks$1")) {
-//                        allLookup.enableDebugMode(true);
-//                        externalLookups.enableDebugMode(true);
-//                        libraryMemberLister.setDebugging(true);
-//                    }
-
-                    StarplaneAnnotationRemapper.apply(mainNode, coreRemaper, sharedBuilder);
-                    try {
-                        mixinRemapper.remapClass(mainNode);
-                    } catch (IllegalMixinException | MissingFeatureException e) {
-                        throw new IOException("Unable to remap due to a problem which occured while remapping mixin " + mainNode.name + " in multi-release-jar sourceset " + mrjVersion, e);
-                    }
+                if (Boolean.getBoolean("de.geolykt.starplane.parallelRemap")) {
+                    this.remapClassesConcurrently(mainClasses, mrjVersion, allLookup, mixinLookup, libraryMemberLister, mixinRemapper, sharedBuilder, zipOut);
+                } else {
+                    for (ClassNode mainNode : mainClasses) {
+                        mainNode = Objects.requireNonNull(mainNode);
+
+//                        if (mainNode.name.equals("de/geolykt/starloader/impl/asm/TransformCallbacks$1")) {
+//                            allLookup.enableDebugMode(true);
+//                            externalLookups.enableDebugMode(true);
+//                            libraryMemberLister.setDebugging(true);
+//                        }
+
+                        StarplaneAnnotationRemapper.apply(mainNode, coreRemaper, sharedBuilder);
+                        try {
+                            mixinRemapper.remapClass(mainNode);
+                        } catch (IllegalMixinException | MissingFeatureException e) {
+                            throw new IOException("Unable to remap due to a problem which occured while remapping mixin " + mainNode.name + " in multi-release-jar sourceset " + mrjVersion, e);
+                        }
 
-                    coreRemaper.remapNode(mainNode, sharedBuilder);
+                        coreRemaper.remapNode(mainNode, sharedBuilder);
 
-//                    if (mainNode.name.equals("de/geolykt/starloader/impl/asm/TransformCallbacks$1")) {
-//                        allLookup.enableDebugMode(false);
-//                        externalLookups.enableDebugMode(false);
-//                        libraryMemberLister.setDebugging(false);
-//                    }
+//                        if (mainNode.name.equals("de/geolykt/starloader/impl/asm/TransformCallbacks$1")) {
+//                            allLookup.enableDebugMode(false);
+//                            externalLookups.enableDebugMode(false);
+//                            libraryMemberLister.setDebugging(false);
+//                        }
 
-                    ClassWriter writer = new ClassWriter(0);
-                    mainNode.accept(writer);
-                    if (mrjVersion != 8) {
-                        zipOut.putNextEntry(new ZipEntry("META-INF/versions/" + mrjVersion + "/" + mainNode.name + ".class"));
-                    } else {
-                        zipOut.putNextEntry(new ZipEntry(mainNode.name + ".class"));
+                        ClassWriter writer = new ClassWriter(0);
+                        mainNode.accept(writer);
+                        if (mrjVersion != 8) {
+                            zipOut.putNextEntry(new ZipEntry("META-INF/versions/" + mrjVersion + "/" + mainNode.name + ".class"));
+                        } else {
+                            zipOut.putNextEntry(new ZipEntry(mainNode.name + ".class"));
+                        }
+                        zipOut.write(writer.toByteArray());
                     }
-                    zipOut.write(writer.toByteArray());
                 }
 
                 if (mrjVersion == 8) {
@@ -427,27 +799,6 @@ public class ObfuscationHandler {
         return false;
     }
 
-    @NotNull
-    private String getAdditionalMappingChecksums() throws IOException {
-        if (this.softmapFiles.isEmpty() && this.supplementaryMappings.isEmpty()) {
-            return "0";
-        }
-
-        Checksum csum = new Adler32();
-
-        for (Path p : this.softmapFiles) {
-            try (CheckedInputStream cis = new CheckedInputStream(Files.newInputStream(p), csum)) {
-                while (cis.read(ObfuscationHandler.IO_BUFFER) != -1); // Discard all read bytes
-            }
-        }
-
-        for (MIOMappingTreeProvider e : this.supplementaryMappings) {
-            e.checksum(csum, ObfuscationHandler.IO_BUFFER);
-        }
-
-        return Long.toUnsignedString(csum.getValue(), Character.MAX_RADIX);
-    }
-
     @NotNull
     public Path getOriginalGalimulatorJar() {
         File cleanGalimJar = new File(this.projectDir.toFile(), "galimulator-desktop.jar");
@@ -491,6 +842,84 @@ public class ObfuscationHandler {
         return cleanGalimJar.toPath();
     }
 
+    /**
+     * Obtains the lookup that maps between the obfuscated names used by galimulator and the deobfuscated names
+     * used by the transformed galimulator jar, taking all intermediary, softmap and supplementary mappings into account.
+     *
+     * <p>The lookup is a single flattened table ({@link ComposedMappingLookup}) that is cached within the cache directory
+     * and will be reused as long as none of the mapping files it was composed from have changed. Should the mappings
+     * not be composable, a {@link ChainMappingLookup} over all mappings is returned instead.
+     *
+     * @param reverse True to map from deobfuscated names to obfuscated names, false for the other direction.
+     * @return The lookup to use for remapping.
+     * @throws IOException If the mappings could not be read
+     */
+    @NotNull
+    private MappingLookup getExternalLookup(boolean reverse) throws IOException {
+        Path spstarmap = this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME);
+        Path slintermediary = this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME);
+        Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
+        Path composedFile = this.cacheDir.resolve(reverse ? ObfuscationHandler.COMPOSED_MAPPINGS_REVERSED_FILE_NAME : ObfuscationHandler.COMPOSED_MAPPINGS_FILE_NAME);
+
+        StringBuilder fingerprint = new StringBuilder();
+        for (Path p : new Path[] {slintermediary, spstarmap, compiledSoftmap}) {
+            if (Files.isRegularFile(p)) {
+                fingerprint.append(Files.size(p)).append('-').append(Files.getLastModifiedTime(p).toMillis());
+            } else {
+                fingerprint.append("missing");
+            }
+            fingerprint.append(';');
+        }
+        fingerprint.append(this.getSupplementaryMappingChecksum());
+        String fingerprintString = fingerprint.toString();
+
+        // The lookups are kept in memory across builds run by the same daemon, so they only need to be loaded once
+        return ResidentCache.get("external lookup", composedFile, fingerprintString, () -> {
+            if (!Boolean.getBoolean("de.geolykt.starplane.nocache")) {
+                ComposedMappingLookup composed = ComposedMappingLookup.read(composedFile, fingerprintString);
+                if (composed != null) {
+                    return composed;
+                }
+            }
+
+            List<@NotNull MappingLookup> lookups = new ArrayList<>();
+            if (reverse) {
+                lookups.add(new StarplaneMappingLookup(compiledSoftmap, true, true).load());
+                lookups.add(new StarplaneMappingLookup(spstarmap, true).load());
+                lookups.add(new StarplaneMappingLookup(slintermediary, true).load());
+            } else {
+                lookups.add(new StarplaneMappingLookup(slintermediary, false).load());
+                lookups.add(new StarplaneMappingLookup(spstarmap, false).load());
+                lookups.add(new StarplaneMappingLookup(compiledSoftmap, false, true).load());
+            }
+
+            if (!this.supplementaryMappings.isEmpty()) {
+                LOGGER.info("Loading supplementary mappings");
+                for  (MIOMappingTreeProvider provider : this.supplementaryMappings) {
+                    VisitableMappingTree mappingTree = provider.get();
+                    if (reverse) {
+                        lookups.add(0, new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMaxNamespaceId() - 1, mappingTree.getMinNamespaceId()));
+                    } else {
+                        lookups.add(new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMinNamespaceId(), mappingTree.getMaxNamespaceId() - 1));
+                    }
+                }
+            }
+
+            ComposedMappingLookup composed = ComposedMappingLookup.compose(lookups);
+            if (composed == null) {
+                ObfuscationHandler.LOGGER.warn("Unable to compose mappings into a single table; falling back to chained lookups.");
+                return new ChainMappingLookup(lookups.toArray(new @NotNull MappingLookup[0]));
+            }
+
+            try {
+                composed.write(composedFile, fingerprintString);
+            } catch (IOException e) {
+                ObfuscationHandler.LOGGER.warn("Unable to write composed mappings to {}", composedFile, e);
+            }
+            return composed;
+        });
+    }
+
     @NotNull
     public CommentLookup getJavadocLookup() throws IOException {
         List<@NotNull MappingLookup> lookups = new ArrayList<>();
@@ -502,312 +931,212 @@ public class ObfuscationHandler {
             }
         }
 
-        return new ChainMappingLookup(lookups.toArray(new MappingLookup[0]));
+        // Javadocs are looked up for every class and member that is decompiled, so they are indexed beforehand
+        IndexedCommentLookup indexed = IndexedCommentLookup.index(lookups);
+        if (indexed == null) {
+            ObfuscationHandler.LOGGER.warn("Unable to index javadocs; falling back to chained lookups.");
+            return new ChainMappingLookup(lookups.toArray(new MappingLookup[0]));
+        }
+        return indexed;
     }
 
+    /**
+     * Obtains a fingerprint of the inputs of {@link #getJavadocLookup()}, which changes whenever the returned lookup may change.
+     *
+     * @return The fingerprint of the javadoc lookup
+     * @throws IOException If the supplementary mappings could not be read
+     */
     @NotNull
-    public Path getTransformedGalimulatorJar() {
-        if (!Files.isDirectory(this.cacheDir)) {
-            try {
-                Files.createDirectories(this.cacheDir);
-            } catch (IOException e) {
-                throw new IllegalStateException("Unable to create cache folder!", e);
-            }
-        }
+    public String getJavadocLookupFingerprint() throws IOException {
+        return this.getSupplementaryMappingChecksum();
+    }
 
-        Path awHash = this.cacheDir.resolve("accesswidener-hash.dat");
-        boolean recomputeAw = false;
-        String currentHash = null;
+    /**
+     * Obtains the cache that is shared with other projects, if any.
+     *
+     * @return The shared cache, or null if the shared cache is not used
+     */
+    @Nullable
+    public SharedCache getSharedCache() {
+        return this.sharedCache;
+    }
 
-        final ReversibleAccessSetterContext rasInfo;
-        String rasContent = this.rasContent;
+    @NotNull
+    private String getSoftmapChecksum() throws IOException {
+        if (this.softmapFiles.isEmpty()) {
+            return "0";
+        }
 
-        if (rasContent == null) {
-            rasInfo = null;
-        } else {
-            try (DigestInputStream din = new DigestInputStream(new ByteArrayInputStream(rasContent.getBytes(StandardCharsets.UTF_8)), MessageDigest.getInstance("SHA-1"));
-                    BufferedReader br = new BufferedReader(new InputStreamReader(din))) {
-                rasInfo = new ReversibleAccessSetterContext(RASTransformScope.BUILDTIME, false);
-                rasInfo.read("<mod>", br, false);
-                currentHash = toHexHash(din.getMessageDigest().digest());
-            } catch (Exception e) {
-                throw new IllegalStateException("Unable to read reversibleAccessSetter!", e);
-            }
+        MessageDigest digest = ObfuscationHandler.newSHA256Digest();
+        for (Path p : this.softmapFiles) {
+            Utils.digestFile(digest, p);
         }
 
-        try {
-            currentHash = currentHash + '-' + ObfuscationHandler.getStarplaneChecksum() + '-' + this.getAdditionalMappingChecksums();
-        } catch (IOException e) {
-            e.printStackTrace();
+        return ObfuscationHandler.toHexHash(digest.digest());
+    }
+
+    @NotNull
+    private String getSupplementaryMappingChecksum() throws IOException {
+        if (this.supplementaryMappings.isEmpty()) {
+            return "0";
         }
 
-        // Check whether the effects of the access widener needs to be computed anew.
-        if (Files.exists(awHash)) {
-            try (BufferedReader br = Files.newBufferedReader(awHash, StandardCharsets.UTF_8)) {
-                String readLine = br.readLine();
-                if (!readLine.equalsIgnoreCase(currentHash)) {
-                    recomputeAw = true;
-                    ObfuscationHandler.LOGGER.warn("AW Hash mismatch. Expected: " + readLine + ", but the current aw hash is " + currentHash + ". Caches are considered invalid.");
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-                recomputeAw = true;
-            }
-        } else if (rasInfo != null) {
-            recomputeAw = true; // AW file newly created
+        MessageDigest digest = ObfuscationHandler.newSHA256Digest();
+        for (MIOMappingTreeProvider e : this.supplementaryMappings) {
+            e.digest(digest);
         }
 
-        final Path runAccess = this.cacheDir.resolve("galimulator-remapped-rt.jar");
-        final Path compileAccess = this.cacheDir.resolve("galimulator-remapped.jar");
+        return ObfuscationHandler.toHexHash(digest.digest());
+    }
 
-        if (Files.isRegularFile(runAccess) && Files.isRegularFile(compileAccess) && !Boolean.getBoolean("de.geolykt.starplane.nocache") && !recomputeAw) {
-            return compileAccess;
+    /**
+     * Obtains the transformed galimulator jar with compile-time access, transforming the original galimulator jar
+     * first if any of the transformation stages is out of date. The stages are only checked by the first call
+     * on an instance, later calls return the jar right away.
+     *
+     * @return The transformed galimulator jar
+     */
+    @NotNull
+    public synchronized Path getTransformedGalimulatorJar() {
+        Path transformedJar = this.transformedGalimulatorJar;
+        if (transformedJar == null) {
+            this.transformedGalimulatorJar = transformedJar = this.transformGalimulatorJar();
         }
+        return transformedJar;
+    }
 
-        this.didRefresh = true;
+    private boolean hasStageOutputs(@NotNull Stage stage, @NotNull Path compileAccess, @NotNull Path runAccess) {
+        switch (stage) {
+        case INTERMEDIARY:
+            return Files.isRegularFile(this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME))
+                    && Files.isRegularFile(this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME));
+        case SOFTMAP:
+            return this.softmapFiles.isEmpty() || Files.isRegularFile(this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME));
+        case RAS:
+            return Files.isRegularFile(compileAccess) && Files.isRegularFile(runAccess);
+        default:
+            return true;
+        }
+    }
 
-        // Now, somehow obtain the galim jar
-        Path cleanGalimJar = this.getOriginalGalimulatorJar();
-        LOGGER.info("Using the base galimulator jar found at " + cleanGalimJar.toAbsolutePath());
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.rasContent, this.cacheDir, this.projectDir, this.softmapFiles);
+    }
 
-        Path map = this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME);
-        Oaktree deobfuscator = new Oaktree();
+    /**
+     * Publishes the transformed jar up to the supplementary stage alongside the intermediary, the starmap and
+     * the compiled softmap (if any) to the shared cache. Failures are logged but otherwise ignored.
+     *
+     * @param sharedKey The key of the shared cache entry
+     * @param stages The stages of the transformation pipeline
+     */
+    private void publishSharedStages(@NotNull String sharedKey, @NotNull TransformationStages stages) {
+        SharedCache sharedCache = this.sharedCache;
+        if (sharedCache == null) {
+            return;
+        }
+        Map<@NotNull String, @NotNull Path> files = new HashMap<>();
+        files.put(ObfuscationHandler.SHARED_SNAPSHOT_FILE_NAME, stages.getSnapshot(Stage.SUPPLEMENTARY));
+        files.put(ObfuscationHandler.INTERMEDIARY_FILE_NAME, this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME));
+        files.put(ObfuscationHandler.STARMAP_FILE_NAME, this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME));
+        Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
+        if (!this.softmapFiles.isEmpty() && Files.isRegularFile(compiledSoftmap)) {
+            files.put(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME, compiledSoftmap);
+        }
         try {
-            long start = System.currentTimeMillis();
-            JarFile jar = new JarFile(cleanGalimJar.toFile());
-            deobfuscator.index(jar);
-            jar.close();
-            Map<String, ClassNode> nameToNode = new HashMap<>();
-            for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                nameToNode.put(node.name, node);
-            }
-            LOGGER.info("Loaded input jar in " + (System.currentTimeMillis() - start) + " ms.");
-            long startDeobf = System.currentTimeMillis();
-            deobfuscator.fixInnerClasses();
-            deobfuscator.fixParameterLVT();
-            deobfuscator.guessFieldGenerics();
-            addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, deobfuscator.analyseLikelyMethodReturnCollectionGenerics());
-            Map<MethodReference, ClassWrapper> methods = new HashMap<>();
-            deobfuscator.lambdaStreamGenericSignatureGuessing(null, methods);
-            addSignatures(deobfuscator.getClassNodesDirectly(), nameToNode, methods);
-            deobfuscator.inferMethodGenerics();
-            deobfuscator.inferConstructorGenerics();
-            deobfuscator.fixForeachOnArray();
-            deobfuscator.fixComparators(true);
-            deobfuscator.guessAnonymousInnerClasses();
-
-            // sl-deobf adds ACC_SUPER as that was the observed behaviour of compilers when compiling anonymous inner classes.
-            // However, asm-util's ClassCheckAdapter does not tolerate that flag on anonymous inner classes, so we shall strip it.
-            // In the end, this should have absolutely no impact on runtime 90% of the time (the other 10% are when the
-            // ClassCheckAdapter is being used by SLL in case a class failed to transform).
-            for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                for (InnerClassNode icn : node.innerClasses) {
-                    icn.access &= ~Opcodes.ACC_SUPER;
-                }
-            }
-
-            LOGGER.info("Deobfuscated classes in " + (System.currentTimeMillis() - startDeobf) + " ms.");
-            long startIntermediarisation = System.currentTimeMillis();
-
-            IntermediaryGenerator generator = new IntermediaryGenerator(map, null, deobfuscator.getClassNodesDirectly());
-            generator.useAlternateClassNaming(!Boolean.getBoolean("de.geolykt.starplane.oldnames"));
-            generator.remapClassesV2(true);
-            deobfuscator.fixSwitchMaps();
-            generator.doProposeEnumFieldsV2();
-            generator.remapGetters();
-            generator.deobfuscate();
-
-            try {
-                de.geolykt.starloader.deobf.remapper.Remapper remapper = new de.geolykt.starloader.deobf.remapper.Remapper();
-                remapper.addTargets(deobfuscator.getClassNodesDirectly());
-                long startSlStarmap = System.currentTimeMillis();
-                Autodeobf deobf = new Autodeobf(deobfuscator.getClassNodesDirectly(), remapper);
-                try (Writer writer = Files.newBufferedWriter(this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME), StandardOpenOption.CREATE)) {
-                    writer.write("v1\tintermediary\tnamed\n");
-                    deobf.runAll(writer);
-                    for (Map.Entry<String, String> e : remapper.fixICNNames(new StringBuilder()).entrySet()) {
-                        writer.write("CLASS\t");
-                        writer.write(e.getKey());
-                        writer.write('\t');
-                        writer.write(e.getValue());
-                        writer.write('\n');
-                    }
-                    writer.flush();
-                    remapper.process();
-                }
-                LOGGER.info("Computed spStarmap in " + (System.currentTimeMillis() - startSlStarmap) + " ms.");
-            } catch (Exception e) {
-                throw new RuntimeException("Cannot write Autodeobf.java-generated mappings", e);
-            }
+            sharedCache.publish(sharedKey, files);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to publish the transformed galimulator jar to the shared cache", e);
+        }
+    }
 
-            try {
-                Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
-                if (this.softmapFiles.isEmpty()) {
-                    Files.deleteIfExists(compiledSoftmap);
-                } else {
-                    de.geolykt.starloader.deobf.remapper.Remapper remapper = new de.geolykt.starloader.deobf.remapper.Remapper();
-                    remapper.addTargets(deobfuscator.getClassNodesDirectly());
-                    long startOfSoftmap = System.currentTimeMillis();
-
-                    @SuppressWarnings("null")
-                    @NotNull
-                    List<@NotNull ClassNode> nodes = deobfuscator.getClassNodesDirectly();
-                    List<@NotNull String> allTiny = new ArrayList<>();
-
-                    allTiny.add("v1\tintermediary\tnamed");
-                    allTiny.add("# This file was compiled from softmap files, do not touch unless you know what you are doing");
-
-                    for (Path softmapFile : this.softmapFiles) {
-                        List<@NotNull String> generatedTiny = this.compileSoftmap(softmapFile, nodes);
-                        allTiny.addAll(generatedTiny);
-                        for (String s : generatedTiny) {
-                            String[] parts = s.split("\\s+");
-                            if (parts[0].equals("METHOD")) {
-                                remapper.remapMethod(parts[1], parts[2], parts[3], parts[4]);
-                            } else if (parts[0].equals("FIELD")) {
-                                remapper.remapField(parts[1], parts[2], parts[3], parts[4]);
-                            } else if (parts[0].equals("CLASS")) {
-                                remapper.remapClassName(parts[1], parts[2]);
-                            }
+    /**
+     * Remaps the given classes and writes them to the output jar in the order of the list, processing
+     * the bodies of the classes concurrently. Annotations and mixins are remapped on the calling thread
+     * in the order of the list, as is the case when remapping the classes one after another. The mixin remapper
+     * registers the mappings of mixin members in the shared mixin lookup, so the bodies of all preceding classes are
+     * remapped before a mixin is, and the bodies of the following classes are only remapped afterwards. That way the body
+     * of every class is remapped using the exact same mappings as when remapping the classes one after another.
+     * In between mixins the lookups are only read, which is done through a {@link ConcurrentMappingLookup}.
+     *
+     * <p>The lookups must have been built from {@link SkeletonIndex#createSkeleton(ClassNode) skeletons} of the
+     * classes, as the classes themselves are modified concurrently.
+     *
+     * @param mainClasses The classes to remap, in the order in which they should be written
+     * @param mrjVersion The multi-release jar version the classes belong to
+     * @param allLookup The lookup used to remap the classes
+     * @param mixinLookup The lookup in which the mixin remapper registers the mappings of mixin members
+     * @param memberLister The member lister used by the mixin remapper
+     * @param mixinRemapper The remapper used to remap mixins
+     * @param sharedBuilder A {@link StringBuilder} to use on the calling thread
+     * @param zipOut The output jar
+     * @throws IOException If the classes could not be remapped or written
+     */
+    private void remapClassesConcurrently(@NotNull List<ClassNode> mainClasses, int mrjVersion, @NotNull MappingLookup allLookup,
+            @NotNull SimpleHierarchyAwareMappingLookup mixinLookup, @NotNull MemberLister memberLister, @NotNull MicromixinRemapper mixinRemapper,
+            @NotNull StringBuilder sharedBuilder, @NotNull ZipOutputStream zipOut) throws IOException {
+        Remapper coreRemaper = new Remapper(allLookup);
+        ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(StringBuilder::new);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(ParallelJarReader.getThreadCount(), mainClasses.size())));
+        try {
+            List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(mainClasses.size());
+            int completedTasks = 0;
+            ThreadLocal<Remapper> remappers = null;
+            MicromixinRemapper concurrentMixinRemapper = null;
+            for (ClassNode mainNode : mainClasses) {
+                mainNode = Objects.requireNonNull(mainNode);
+                try {
+                    boolean mixin = ObfuscationHandler.isMixin(mainNode);
+                    if (mixin) {
+                        // The lookups are mutated, which neither may happen while they are read nor may be visible to the preceding classes
+                        for (; completedTasks < tasks.size(); completedTasks++) {
+                            tasks.get(completedTasks).join();
                         }
-                        remapper.process();
+                        StarplaneAnnotationRemapper.apply(mainNode, coreRemaper, sharedBuilder);
+                        mixinRemapper.remapClass(mainNode);
+                        // Results memoized so far might be outdated now
+                        remappers = null;
                     }
-
-                    Files.write(compiledSoftmap, allTiny, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-
-                    ObfuscationHandler.LOGGER.info("Compiled all softmap files in " + (System.currentTimeMillis() - startOfSoftmap) + "ms.");
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Cannot write softmap-generated mappings", e);
-            }
-
-            if (!this.supplementaryMappings.isEmpty()) {
-                for (MIOMappingTreeProvider supplementaryMapping : this.supplementaryMappings) {
-                    VisitableMappingTree mappingTree = supplementaryMapping.get();
-
-                    TopLevelMemberLookup definitionLookup = new SimpleTopLevelLookup(deobfuscator.getClassNodesDirectly());
-                    ReadOnlyMIOMappingLookup directLookup = new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMinNamespaceId(), mappingTree.getMaxNamespaceId() - 1);
-                    HierarchyAwareMappingDelegator<ReadOnlyMIOMappingLookup> hierarchicalLookup = new HierarchyAwareMappingDelegator<>(directLookup, definitionLookup);
-//                    HierarchyAwareMappingDelegator<ReadOnlyMappingLookupSink> hierarchicalLookup = new HierarchyAwareMappingDelegator<>(new ReadOnlyMappingLookupSink(new ChainMappingLookup(directLookup).enableDebugMode(true)), definitionLookup);
-                    Remapper remapper = new Remapper(hierarchicalLookup);
-                    StringBuilder sharedBuilder = new StringBuilder();
-                    for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                        remapper.remapNode(node, sharedBuilder);
+                    if (remappers == null) {
+                        ConcurrentMappingLookup concurrentLookup = new ConcurrentMappingLookup(allLookup);
+                        remappers = ThreadLocal.withInitial(() -> new Remapper(concurrentLookup));
+                        concurrentMixinRemapper = new MicromixinRemapper(concurrentLookup, mixinLookup, memberLister);
                     }
-                }
-            }
-
-            deobfuscator.invalidateNameCaches();
-            deobfuscator.applyInnerclasses();
-            // TODO fix ICN names here
-
-            LOGGER.info("Computed intermediaries of classes in " + (System.currentTimeMillis() - startIntermediarisation) + " ms.");
-
-            if (rasInfo == null) {
-                try (OutputStream os = Files.newOutputStream(compileAccess)) {
-                    deobfuscator.write(os, cleanGalimJar);
-                }
-                // Compile-time Access = Runtime Access
-                Files.copy(compileAccess, runAccess, StandardCopyOption.REPLACE_EXISTING);
-
-                try {
-                    Files.writeString(awHash, currentHash, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                } catch (IOException e) {
-                    LOGGER.warn("Cannot write aw hash; caching may not work correctly", e);
-                }
-            } else {
-                // Duplicate all nodes
-                List<ClassNode> runNodes = new ArrayList<>();
-                Map<String, ClassNode> compileNodes = new HashMap<>();
-
-                for (ClassNode node : deobfuscator.getClassNodesDirectly()) {
-                    if (node == null) {
-                        continue;
-                    }
-                    // Apply RAS
-                    try {
-                        rasInfo.accept(node);
-                    } catch (RASTransformFailure e) {
-                        LOGGER.error("Unable to apply RAS on class {}", node.name, e);
+                    if (!mixin) {
+                        StarplaneAnnotationRemapper.apply(mainNode, remappers.get(), sharedBuilder);
+                        concurrentMixinRemapper.remapClass(mainNode);
                     }
-
-                    ClassNode duplicate = new ClassNode();
-                    node.accept(duplicate);
-                    runNodes.add(duplicate);
-                    compileNodes.put(node.name, node);
+                } catch (IllegalMixinException | MissingFeatureException e) {
+                    throw new IOException("Unable to remap due to a problem which occured while remapping mixin " + mainNode.name + " in multi-release-jar sourceset " + mrjVersion, e);
                 }
 
-                try {
-                    Files.writeString(awHash, currentHash, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                } catch (IOException e) {
-                    LOGGER.warn("Cannot write aw hash; caching may not work correctly", e);
-                }
-
-                // Write compile-time nodes to disk
-                try (OutputStream os = Files.newOutputStream(compileAccess)) {
-                    deobfuscator.write(os, cleanGalimJar);
-                }
+                ThreadLocal<Remapper> taskRemappers = remappers;
+                ClassNode taskNode = mainNode;
+                tasks.add(pool.submit(() -> {
+                    taskRemappers.get().remapNode(taskNode, builders.get());
+                    ClassWriter writer = new ClassWriter(0);
+                    taskNode.accept(writer);
+                    return writer.toByteArray();
+                }));
+            }
 
-                // Write runtime nodes to disk
-                try (ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(runAccess), StandardCharsets.UTF_8)) {
-                    // Copy resources
-                    try (InputStream rawIn = Files.newInputStream(cleanGalimJar);
-                            ZipInputStream zipIn = new ZipInputStream(rawIn)) {
-                        for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
-                            if (entry.getName().endsWith(".class")) {
-                                // Do not copy classes
-                                continue;
-                            }
-                            os.putNextEntry(entry);
-                            byte[] b = new byte[4096];
-                            int read;
-                            while ((read = zipIn.read(b)) != -1) {
-                                os.write(b, 0, read);
-                            }
-                        }
-                    }
-                    // Write the actual nodes - in alphabetic order to preserve consistency
-                    TreeSet<ClassNode> sortedNodes = new TreeSet<>((node1, node2) -> node1.name.compareTo(node2.name));
-                    sortedNodes.addAll(runNodes);
-                    for (ClassNode node : sortedNodes) {
-                        ClassWriter writer = new ClassWriter(0);
-                        node.accept(writer);
-                        os.putNextEntry(new ZipEntry(node.name + ".class"));
-                        os.write(writer.toByteArray());
-                    }
+            for (int i = 0; i < tasks.size(); i++) {
+                ClassNode mainNode = mainClasses.get(i);
+                byte[] data = tasks.get(i).join();
+                if (mrjVersion != 8) {
+                    zipOut.putNextEntry(new ZipEntry("META-INF/versions/" + mrjVersion + "/" + mainNode.name + ".class"));
+                } else {
+                    zipOut.putNextEntry(new ZipEntry(mainNode.name + ".class"));
                 }
+                zipOut.write(data);
             }
-            LOGGER.info("Finished transforming classes in " + (System.currentTimeMillis() - start) + " ms.");
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
         }
-
-        return compileAccess;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(this.rasContent, this.cacheDir, this.projectDir, this.softmapFiles);
     }
 
     public void reobfuscateJar(@NotNull Path jarPath, @NotNull Collection<@NotNull Path> alsoInclude) throws IOException {
-        Path spstarmap = this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME);
-        Path slintermediary = this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME);
-        Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
-
-        List<@NotNull MappingLookup> lookups = new ArrayList<>();
-        lookups.add(new StarplaneMappingLookup(compiledSoftmap, true, true).load());
-        lookups.add(new StarplaneMappingLookup(spstarmap, true).load());
-        lookups.add(new StarplaneMappingLookup(slintermediary, true).load());
-
-        if (!this.supplementaryMappings.isEmpty()) {
-            LOGGER.info("Loading supplementary mappings");
-            for  (MIOMappingTreeProvider provider : this.supplementaryMappings) {
-                VisitableMappingTree mappingTree = provider.get();
-                lookups.add(0, new ReadOnlyMIOMappingLookup(mappingTree, mappingTree.getMaxNamespaceId() - 1, mappingTree.getMinNamespaceId()));
-            }
-        }
-
         Map<String, ClassNode> remapNodes = new HashMap<>();
         Map<String, byte[]> rawFiles = new HashMap<>();
 
@@ -815,64 +1144,14 @@ public class ObfuscationHandler {
         allInputs.add(jarPath);
 
         for (Path p : allInputs) {
-            try (InputStream is = Files.newInputStream(p); ZipInputStream zipIn = new ZipInputStream(is, StandardCharsets.UTF_8)) {
-                ZipEntry e;
-                while ((e = zipIn.getNextEntry()) != null) {
-                    byte[] allData = zipIn.readAllBytes();
-                    if (allData.length < 4
-                            || allData[0] != (byte) 0xCA
-                            || allData[1] != (byte) 0xFE
-                            || allData[2] != (byte) 0xBA
-                            || allData[3] != (byte) 0xBE
-                            || !e.getName().endsWith(".class")) {
-                        if (rawFiles.put(e.getName(), allData) != null) {
-                            ObfuscationHandler.LOGGER.warn("Overwrote entry for raw file {}. The remapped jar may be malformed", e.getName());
-                        }
-                        continue;
-                    }
-                    try {
-                        ClassReader reader = new ClassReader(allData);
-                        ClassNode visitedNode = new ClassNode();
-                        reader.accept(visitedNode, 0); // Do not skip anything (we will write the nodes as-is, including frames!)
-                        remapNodes.put(e.getName(), visitedNode);
-                    } catch (Exception ex) {
-                        ObfuscationHandler.LOGGER.warn("Unable to read classfile {}; treating it as a regular file instead.", e.getName(), ex);
-                        if (rawFiles.put(e.getName(), allData) != null) {
-                            ObfuscationHandler.LOGGER.warn("Overwrote entry for raw file {}. The remapped jar may be malformed", e.getName());
-                        }
-                    }
-                }
+            try {
+                ParallelJarReader.readJar(p, remapNodes, rawFiles);
             } catch (IOException e) {
                 throw new IOException("Unable to read input jar " + jarPath, e);
             }
         }
 
-        Map<String, ClassNode> libraryNodes = new HashMap<>();
-        try (InputStream is = Files.newInputStream(this.getTransformedGalimulatorJar());
-                ZipInputStream zipIn = new ZipInputStream(is, StandardCharsets.UTF_8)) {
-            ZipEntry e;
-            while ((e = zipIn.getNextEntry()) != null) {
-                byte[] allData = zipIn.readAllBytes();
-                if (allData.length < 4
-                        || allData[0] != (byte) 0xCA
-                        || allData[1] != (byte) 0xFE
-                        || allData[2] != (byte) 0xBA
-                        || allData[3] != (byte) 0xBE
-                        || !e.getName().endsWith(".class")) {
-                    continue;
-                }
-                try {
-                    ClassReader reader = new ClassReader(allData);
-                    ClassNode visitedNode = new ClassNode();
-                    reader.accept(visitedNode, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
-                    if (libraryNodes.put(visitedNode.name, visitedNode) != null) {
-                        ObfuscationHandler.LOGGER.warn("Collision for path {}, entry {}. Likely caused due to unexpected multi-release-jar", visitedNode.name, e.getName());
-                    }
-                } catch (Exception ex) {
-                    ObfuscationHandler.LOGGER.warn("Unable to read library classfile {}; skipping it instead.", e.getName(), ex);
-                }
-            }
-        }
+        Map<String, ClassNode> libraryNodes = SkeletonIndex.getOrCreate(this.getTransformedGalimulatorJar(), this.cacheDir.resolve(ObfuscationHandler.SKELETON_FILE_NAME));
 
         // multi-release jar version -> map of class name to ClassNode pairs.
         Map<Integer, Map<String, ClassNode>> mrjClasses = new HashMap<>();
@@ -906,8 +1185,7 @@ public class ObfuscationHandler {
 
         try (OutputStream os = Files.newOutputStream(jarPath);
                 ZipOutputStream zipOut = new ZipOutputStream(os, StandardCharsets.UTF_8)) {
-            @SuppressWarnings("null")
-            ChainMappingLookup externalLookups = new ChainMappingLookup(lookups.toArray(new @NotNull MappingLookup[0]));
+            MappingLookup externalLookups = this.getExternalLookup(true);
             for (int mrjVersion = maxMrjVersion; mrjVersion >= 8; mrjVersion--) {
                 Map<String, ClassNode> versionClasses = mrjClasses.remove(mrjVersion);
                 if (versionClasses == null) {
@@ -925,13 +1203,20 @@ public class ObfuscationHandler {
                     }
                 }
 
+                // The lookups are built from skeletons of the classes, as the classes themselves are modified while the lookups are in use
+                Map<String, ClassNode> skeletons = new LinkedHashMap<>();
+                for (Map.Entry<String, ClassNode> versionEntry : versionClasses.entrySet()) {
+                    skeletons.put(versionEntry.getKey(), SkeletonIndex.createSkeleton(versionEntry.getValue()));
+                }
                 List<ClassNode> allClasses = new ArrayList<>(libraryNodes.values());
-                allClasses.addAll(mainClasses);
+                for (ClassNode mainNode : mainClasses) {
+                    allClasses.add(skeletons.get(mainNode.name));
+                }
                 SimpleTopLevelLookup allTopLevelLookup = new SimpleTopLevelLookup(allClasses);
                 DebugableMemberLister libraryMemberLister = new DebugableMemberLister(allTopLevelLookup, libraryNodes);
 
                 @SuppressWarnings("null")
-                SimpleHierarchyAwareMappingLookup mixinLookup = new SimpleHierarchyAwareMappingLookup(new ArrayList<>(versionClasses.values()));
+                SimpleHierarchyAwareMappingLookup mixinLookup = new SimpleHierarchyAwareMappingLookup(new ArrayList<>(skeletons.values()));
                 ReadOnlyMappingLookupSink readOnlyExternalLookups = new ReadOnlyMappingLookupSink(externalLookups);
                 MappingLookup externalHierarchyLookup = new HierarchyAwareMappingDelegator<>(readOnlyExternalLookups, allTopLevelLookup);
                 ChainMappingLookup allLookup = new ChainMappingLookup(mixinLookup, externalHierarchyLookup);
@@ -939,38 +1224,42 @@ public class ObfuscationHandler {
                 Remapper coreRemaper = new Remapper(allLookup);
 
                 StringBuilder sharedBuilder = new StringBuilder();
-                for (ClassNode mainNode : mainClasses) {
-                    mainNode = Objects.requireNonNull(mainNode);
-
-//                    if (mainNode.name.equals("de/geolykt/starloader/apimixins/StarMixins")) {
-//                        allLookup.enableDebugMode(true);
-//                        externalLookups.enableDebugMode(true);
-//                        libraryMemberLister.setDebugging(true);
-//                    }
-
-                    StarplaneAnnotationRemapper.apply(mainNode, coreRemaper, sharedBuilder);
-                    try {
-                        mixinRemapper.remapClass(mainNode);
-                    } catch (IllegalMixinException | MissingFeatureException e) {
-                        throw new IOException("Unable to remap due to a problem which occured while remapping mixin " + mainNode.name + " in multi-release-jar sourceset " + mrjVersion, e);
-                    }
+                if (Boolean.getBoolean("de.geolykt.starplane.parallelRemap")) {
+                    this.remapClassesConcurrently(mainClasses, mrjVersion, allLookup, mixinLookup, libraryMemberLister, mixinRemapper, sharedBuilder, zipOut);
+                } else {
+                    for (ClassNode mainNode : mainClasses) {
+                        mainNode = Objects.requireNonNull(mainNode);
+
+//                        if (mainNode.name.equals("de/geolykt/starloader/apimixins/StarMixins")) {
+//                            allLookup.enableDebugMode(true);
+//                            externalLookups.enableDebugMode(true);
+//                            libraryMemberLister.setDebugging(true);
+//                        }
+
+                        StarplaneAnnotationRemapper.apply(mainNode, coreRemaper, sharedBuilder);
+                        try {
+                            mixinRemapper.remapClass(mainNode);
+                        } catch (IllegalMixinException | MissingFeatureException e) {
+                            throw new IOException("Unable to remap due to a problem which occured while remapping mixin " + mainNode.name + " in multi-release-jar sourceset " + mrjVersion, e);
+                        }
 
-                    coreRemaper.remapNode(mainNode, sharedBuilder);
+                        coreRemaper.remapNode(mainNode, sharedBuilder);
 
-//                    if (mainNode.name.equals("de/geolykt/starloader/apimixins/StarMixins")) {
-//                        allLookup.enableDebugMode(false);
-//                        externalLookups.enableDebugMode(false);
-//                        libraryMemberLister.setDebugging(false);
-//                    }
+//                        if (mainNode.name.equals("de/geolykt/starloader/apimixins/StarMixins")) {
+//                            allLookup.enableDebugMode(false);
+//                            externalLookups.enableDebugMode(false);
+//                            libraryMemberLister.setDebugging(false);
+//                        }
 
-                    ClassWriter writer = new ClassWriter(0);
-                    mainNode.accept(writer);
-                    if (mrjVersion != 8) {
-                        zipOut.putNextEntry(new ZipEntry("META-INF/versions/" + mrjVersion + "/" + mainNode.name + ".class"));
-                    } else {
-                        zipOut.putNextEntry(new ZipEntry(mainNode.name + ".class"));
+                        ClassWriter writer = new ClassWriter(0);
+                        mainNode.accept(writer);
+                        if (mrjVersion != 8) {
+                            zipOut.putNextEntry(new ZipEntry("META-INF/versions/" + mrjVersion + "/" + mainNode.name + ".class"));
+                        } else {
+                            zipOut.putNextEntry(new ZipEntry(mainNode.name + ".class"));
+                        }
+                        zipOut.write(writer.toByteArray());
                     }
-                    zipOut.write(writer.toByteArray());
                 }
 
                 if (mrjVersion == 8) {
@@ -988,4 +1277,382 @@ public class ObfuscationHandler {
 
         ObfuscationHandler.LOGGER.info("Reobfuscating done");
     }
+
+    /**
+     * Restores all stages up to and including the supplementary stage from the shared cache.
+     * The local stages are only replaced once every file of the entry has been restored.
+     *
+     * @param sharedCache The shared cache to restore from
+     * @param sharedKey The key of the shared cache entry
+     * @param stages The stages of the transformation pipeline
+     * @return True if the stages were restored, false if the entry is missing, incomplete or could not be restored.
+     */
+    private boolean restoreSharedStages(@NotNull SharedCache sharedCache, @NotNull String sharedKey, @NotNull TransformationStages stages) {
+        Path entry = sharedCache.getEntry(sharedKey);
+        if (entry == null) {
+            return false;
+        }
+
+        // Files are restored next to their targets first, so that an incomplete entry leaves the local stages untouched
+        Map<@NotNull String, @NotNull Path> requiredFiles = new LinkedHashMap<>();
+        requiredFiles.put(ObfuscationHandler.SHARED_SNAPSHOT_FILE_NAME, stages.getSnapshot(Stage.SUPPLEMENTARY));
+        requiredFiles.put(ObfuscationHandler.INTERMEDIARY_FILE_NAME, this.cacheDir.resolve(ObfuscationHandler.INTERMEDIARY_FILE_NAME));
+        requiredFiles.put(ObfuscationHandler.STARMAP_FILE_NAME, this.cacheDir.resolve(ObfuscationHandler.STARMAP_FILE_NAME));
+        Map<@NotNull Path, @NotNull Path> restoredFiles = new LinkedHashMap<>();
+        Path compiledSoftmap = this.cacheDir.resolve(ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME);
+        Path restoredSoftmap = compiledSoftmap.resolveSibling(compiledSoftmap.getFileName() + ".shared");
+        try {
+            for (Map.Entry<@NotNull String, @NotNull Path> e : requiredFiles.entrySet()) {
+                Path restoredFile = e.getValue().resolveSibling(e.getValue().getFileName() + ".shared");
+                restoredFiles.put(e.getValue(), restoredFile);
+                if (!sharedCache.restore(entry, e.getKey(), restoredFile)) {
+                    LOGGER.warn("The shared cache entry {} is incomplete; transforming the galimulator jar locally.", entry);
+                    return false;
+                }
+            }
+            boolean hasSoftmap = sharedCache.restore(entry, ObfuscationHandler.COMPILED_SOFTMAP_FILE_NAME, restoredSoftmap);
+
+            // Every file is present, so the local stages can be replaced
+            stages.invalidate(Stage.OAKTREE);
+            // The applied RAS describes the jars of the previous local run, so the RAS cannot be applied incrementally
+            Files.deleteIfExists(this.cacheDir.resolve(ObfuscationHandler.APPLIED_RAS_FILE_NAME));
+            for (Map.Entry<@NotNull Path, @NotNull Path> e : restoredFiles.entrySet()) {
+                Files.move(e.getValue(), e.getKey(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (hasSoftmap) {
+                Files.move(restoredSoftmap, compiledSoftmap, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(compiledSoftmap);
+            }
+            stages.completeExternally(Stage.OAKTREE, false);
+            stages.completeExternally(Stage.INTERMEDIARY, false);
+            stages.completeExternally(Stage.SOFTMAP, false);
+            stages.completeExternally(Stage.SUPPLEMENTARY, true);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to restore the shared cache entry {}; transforming the galimulator jar locally.", entry, e);
+            return false;
+        } finally {
+            try {
+                for (Path restoredFile : restoredFiles.values()) {
+                    Files.deleteIfExists(restoredFile);
+                }
+                Files.deleteIfExists(restoredSoftmap);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to delete the files restored from the shared cache entry {}", entry, e);
+            }
+        }
+    }
+
+    private void runStages(@NotNull TransformationStages stages, @NotNull Stage firstStaleStage, @Nullable ReversibleAccessSetterContext rasInfo,
+            @NotNull Path cleanGalimJar, @NotNull Path compileAccess, @NotNull Path runAccess, @Nullable String sharedKey) {
+        if (firstStaleStage == Stage.RAS && !Boolean.getBoolean("de.geolykt.starplane.nocache")) {
+            try {
+                stages.invalidate(Stage.RAS);
+                if (this.tryApplyRASIncrementally(stages, rasInfo, compileAccess, runAccess)) {
+                    this.writeAppliedRAS();
+                    stages.complete(Stage.RAS, null);
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Unable to incrementally apply the reversible access setter; recomputing the RAS stage in full", e);
+            }
+        }
+
+        LOGGER.info("Using the base galimulator jar found at " + cleanGalimJar.toAbsolutePath());
+
+        Stage resumptionStage = firstStaleStage == Stage.OAKTREE ? null : stages.getResumptionStage(firstStaleStage);
+        Path inputJar = resumptionStage == null ? cleanGalimJar : stages.getSnapshot(resumptionStage);
+        if (resumptionStage != null) {
+            LOGGER.info("Resuming the transformation of the galimulator jar at stage {} using the output of stage {}.", firstStaleStage, resumptionStage);
+        }
+
+        Oaktree deobfuscator = new Oaktree();
+        PerformanceReport report = new PerformanceReport();
+        try {
+            stages.invalidate(firstStaleStage);
+
+            long start = System.currentTimeMillis();
+            PerformanceReport.Measurement stageMeasurement = report.start("stage", "INDEX");
+            try (JarFile jar = new JarFile(inputJar.toFile())) {
+                deobfuscator.index(jar);
+            }
+            stageMeasurement.stop();
+            LOGGER.info("Loaded input jar in " + (System.currentTimeMillis() - start) + " ms.");
+
+            if (firstStaleStage.compareTo(Stage.OAKTREE) <= 0) {
+                stageMeasurement = report.start("stage", Stage.OAKTREE.name());
+                this.applyOaktreeStage(deobfuscator, report);
+                stages.complete(Stage.OAKTREE, deobfuscator.getClassNodesDirectly());
+                stageMeasurement.stop();
+            }
+
+            long startIntermediarisation = System.currentTimeMillis();
+
+            if (firstStaleStage.compareTo(Stage.INTERMEDIARY) <= 0) {
+                stageMeasurement = report.start("stage", Stage.INTERMEDIARY.name());
+                this.applyIntermediaryStage(deobfuscator, report);
+                stages.complete(Stage.INTERMEDIARY, deobfuscator.getClassNodesDirectly());
+                stageMeasurement.stop();
+            }
+
+            if (firstStaleStage.compareTo(Stage.SOFTMAP) <= 0) {
+                stageMeasurement = report.start("stage", Stage.SOFTMAP.name());
+                this.applySoftmapStage(deobfuscator, stages.getFingerprint(Stage.INTERMEDIARY));
+                stages.complete(Stage.SOFTMAP, this.softmapFiles.isEmpty() ? null : deobfuscator.getClassNodesDirectly());
+                stageMeasurement.stop();
+            }
+
+            if (firstStaleStage.compareTo(Stage.SUPPLEMENTARY) <= 0) {
+                stageMeasurement = report.start("stage", Stage.SUPPLEMENTARY.name());
+                this.applySupplementaryStage(deobfuscator);
+                deobfuscator.invalidateNameCaches();
+                deobfuscator.applyInnerclasses();
+                // TODO fix ICN names here
+                stages.complete(Stage.SUPPLEMENTARY, deobfuscator.getClassNodesDirectly());
+                stageMeasurement.stop();
+                if (sharedKey != null) {
+                    this.publishSharedStages(sharedKey, stages);
+                }
+            }
+
+            LOGGER.info("Computed intermediaries of classes in " + (System.currentTimeMillis() - startIntermediarisation) + " ms.");
+
+            stageMeasurement = report.start("stage", Stage.RAS.name());
+            Files.deleteIfExists(this.cacheDir.resolve(ObfuscationHandler.APPLIED_RAS_FILE_NAME));
+            this.applyRASStage(deobfuscator, rasInfo, cleanGalimJar, compileAccess, runAccess);
+            this.writeAppliedRAS();
+            SkeletonIndex.write(this.cacheDir.resolve(ObfuscationHandler.SKELETON_FILE_NAME), deobfuscator.getClassNodesDirectly(), compileAccess);
+            stages.complete(Stage.RAS, null);
+            stageMeasurement.stop();
+
+            LOGGER.info("Finished transforming classes in " + (System.currentTimeMillis() - start) + " ms.");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            report.finish();
+            // Stages that failed are kept in the report as incomplete, which is useful to see where the transformation stopped
+            try {
+                report.write(this.cacheDir.resolve(ObfuscationHandler.PERFORMANCE_REPORT_FILE_NAME));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write the performance report", e);
+            }
+        }
+    }
+
+    /**
+     * Re-applies the reversible access setter only on the classes whose entries changed compared to the
+     * last applied RAS, replacing the classes in the compile-time and runtime jars. The classes are
+     * transformed based on the pre-RAS snapshot.
+     *
+     * @param stages The stages of the transformation pipeline
+     * @param rasInfo The parsed reversible access setter, or null if none is used
+     * @param compileAccess The compile-time jar
+     * @param runAccess The runtime jar
+     * @return True if the jars were patched, false if the RAS stage needs to be computed anew.
+     * @throws IOException If an I/O error occurred while patching the jars. The jars might be in an inconsistent state afterwards.
+     */
+    private boolean tryApplyRASIncrementally(@NotNull TransformationStages stages, @Nullable ReversibleAccessSetterContext rasInfo,
+            @NotNull Path compileAccess, @NotNull Path runAccess) throws IOException {
+        Path appliedRAS = this.cacheDir.resolve(ObfuscationHandler.APPLIED_RAS_FILE_NAME);
+        Path preRASJar = stages.getSnapshot(Stage.SUPPLEMENTARY);
+        if (!stages.isUpToDate(Stage.SUPPLEMENTARY) || !Files.isRegularFile(appliedRAS) || !Files.isRegularFile(preRASJar)
+                || !Files.isRegularFile(compileAccess) || !Files.isRegularFile(runAccess)) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        String appliedContent = new String(Files.readAllBytes(appliedRAS), StandardCharsets.UTF_8);
+        Set<String> oldEntries = ObfuscationHandler.getRASEntries(appliedContent.isEmpty() ? null : appliedContent);
+        Set<String> newEntries = ObfuscationHandler.getRASEntries(this.rasContent);
+        if (oldEntries == null || newEntries == null) {
+            return false;
+        }
+
+        // Collect the owners of all added or removed entries
+        Set<String> changedClasses = new TreeSet<>();
+        boolean changedClassAccess = false;
+        for (Set<String> entries : Arrays.asList(oldEntries, newEntries)) {
+            Set<String> otherEntries = entries == oldEntries ? newEntries : oldEntries;
+            for (String entry : entries) {
+                if (!otherEntries.contains(entry)) {
+                    String[] parts = entry.split(" ");
+                    changedClasses.add(parts[3]);
+                    changedClassAccess |= parts.length == 4;
+                }
+            }
+        }
+
+        Map<String, byte[]> patchedClasses = new HashMap<>();
+        try (ZipFile preRASZip = new ZipFile(preRASJar.toFile())) {
+            Set<String> nestedClasses = new HashSet<>();
+            if (changedClassAccess) {
+                // The access of nested classes is mirrored in the inner class attributes of all classes referring to them
+                for (String className : changedClasses) {
+                    ZipEntry entry = preRASZip.getEntry(className + ".class");
+                    if (entry == null) {
+                        continue;
+                    }
+                    try (InputStream in = preRASZip.getInputStream(entry)) {
+                        ClassNode node = new ClassNode();
+                        new ClassReader(in).accept(node, ClassReader.SKIP_CODE);
+                        for (InnerClassNode icn : node.innerClasses) {
+                            if (icn.name.equals(node.name)) {
+                                nestedClasses.add(node.name);
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (!nestedClasses.isEmpty()) {
+                Enumeration<? extends ZipEntry> entries = preRASZip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.getName().endsWith(".class")) {
+                        continue;
+                    }
+                    try (InputStream in = preRASZip.getInputStream(entry)) {
+                        new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                                if (nestedClasses.contains(name)) {
+                                    changedClasses.add(entry.getName().substring(0, entry.getName().length() - 6));
+                                }
+                            }
+                        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    }
+                }
+            }
+
+            for (String className : changedClasses) {
+                ZipEntry entry = preRASZip.getEntry(className + ".class");
+                if (entry == null) {
+                    continue;
+                }
+                ClassNode node = new ClassNode();
+                try (InputStream in = preRASZip.getInputStream(entry)) {
+                    new ClassReader(in).accept(node, 0);
+                }
+                if (rasInfo != null) {
+                    try {
+                        rasInfo.accept(node);
+                    } catch (RASTransformFailure e) {
+                        LOGGER.error("Unable to apply RAS on class {}", node.name, e);
+                    }
+                }
+                ClassWriter writer = new ClassWriter(0);
+                node.accept(writer);
+                patchedClasses.put(entry.getName(), writer.toByteArray());
+            }
+        }
+
+        for (Path jar : Arrays.asList(compileAccess, runAccess)) {
+            try (FileSystem jarFs = FileSystems.newFileSystem(jar, (ClassLoader) null)) {
+                for (Map.Entry<String, byte[]> e : patchedClasses.entrySet()) {
+                    Files.write(jarFs.getPath(e.getKey()), e.getValue());
+                }
+            }
+        }
+
+        LOGGER.info("Incrementally applied reversible access setter on {} classes in {} ms.", patchedClasses.size(), System.currentTimeMillis() - start);
+        return true;
+    }
+
+    @NotNull
+    private Path transformGalimulatorJar() {
+        if (!Files.isDirectory(this.cacheDir)) {
+            try {
+                Files.createDirectories(this.cacheDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to create cache folder!", e);
+            }
+        }
+
+        final ReversibleAccessSetterContext rasInfo;
+        final String rasHash;
+        String rasContent = this.rasContent;
+
+        if (rasContent == null) {
+            rasInfo = null;
+            rasHash = "null";
+        } else {
+            try (DigestInputStream din = new DigestInputStream(new ByteArrayInputStream(rasContent.getBytes(StandardCharsets.UTF_8)), MessageDigest.getInstance("SHA-1"));
+                    BufferedReader br = new BufferedReader(new InputStreamReader(din))) {
+                rasInfo = new ReversibleAccessSetterContext(RASTransformScope.BUILDTIME, false);
+                rasInfo.read("<mod>", br, false);
+                rasHash = toHexHash(din.getMessageDigest().digest());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to read reversibleAccessSetter!", e);
+            }
+        }
+
+        final Path runAccess = this.cacheDir.resolve("galimulator-remapped-rt.jar");
+        final Path compileAccess = this.cacheDir.resolve("galimulator-remapped.jar");
+
+        // Now, somehow obtain the galim jar
+        Path cleanGalimJar = this.getOriginalGalimulatorJar();
+
+        TransformationStages stages = new TransformationStages(this.cacheDir);
+        try {
+            String galimulatorChecksum = ResidentCache.get("checksum", cleanGalimJar, ResidentCache.getFileFingerprint(cleanGalimJar), () -> Utils.getChecksum(cleanGalimJar.toFile()));
+            stages.setInputs(Stage.OAKTREE, galimulatorChecksum + '-' + ObfuscationHandler.getClassChecksum(Oaktree.class));
+            stages.setInputs(Stage.INTERMEDIARY, ObfuscationHandler.getClassChecksum(IntermediaryGenerator.class) + '-' + ObfuscationHandler.getStarplaneChecksum() + '-' + Boolean.getBoolean("de.geolykt.starplane.oldnames"));
+            stages.setInputs(Stage.SOFTMAP, this.getSoftmapChecksum());
+            stages.setInputs(Stage.SUPPLEMENTARY, this.getSupplementaryMappingChecksum());
+            stages.setInputs(Stage.RAS, rasHash);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compute the fingerprints of the transformation stages", e);
+        }
+
+        Stage firstStaleStage = null;
+        if (Boolean.getBoolean("de.geolykt.starplane.nocache")) {
+            firstStaleStage = Stage.OAKTREE;
+        } else {
+            for (Stage stage : Stage.values()) {
+                if (!stages.isUpToDate(stage) || !this.hasStageOutputs(stage, compileAccess, runAccess)) {
+                    firstStaleStage = stage;
+                    break;
+                }
+            }
+        }
+
+        if (firstStaleStage == null) {
+            return compileAccess;
+        }
+
+        this.didRefresh = true;
+
+        SharedCache sharedCache = this.sharedCache;
+        if (sharedCache == null || firstStaleStage == Stage.RAS || Boolean.getBoolean("de.geolykt.starplane.nocache")) {
+            this.runStages(stages, firstStaleStage, rasInfo, cleanGalimJar, compileAccess, runAccess, null);
+            return compileAccess;
+        }
+
+        // All stages but the RAS stage are shared, as the RAS usually differs between projects
+        try {
+            // The cache is shared between plugin versions, so the key needs to cover the code that produced the stages
+            String sharedKey = "stages-" + ObfuscationHandler.getStarplaneChecksum().substring(0, 16) + '-' + stages.getFingerprint(Stage.SUPPLEMENTARY);
+            SharedCache.Lock lock = sharedCache.lock(sharedKey);
+            try (lock) {
+                if (this.restoreSharedStages(sharedCache, sharedKey, stages)) {
+                    LOGGER.info("Restored the transformed galimulator jar up to the RAS stage from the shared cache.");
+                    this.runStages(stages, Stage.RAS, rasInfo, cleanGalimJar, compileAccess, runAccess, null);
+                } else {
+                    // Should the restore have failed after the local stages were invalidated, they need to be computed from scratch
+                    Stage restartStage = stages.isUpToDate(Stage.OAKTREE) ? firstStaleStage : Stage.OAKTREE;
+                    this.runStages(stages, restartStage, rasInfo, cleanGalimJar, compileAccess, runAccess, sharedKey);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to access the shared cache", e);
+        }
+
+        return compileAccess;
+    }
+
+    private void writeAppliedRAS() throws IOException {
+        String rasContent = this.rasContent;
+        Files.writeString(this.cacheDir.resolve(ObfuscationHandler.APPLIED_RAS_FILE_NAME), rasContent == null ? "" : rasContent, StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,198 @@
+package de.geolykt.starplane;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the entries of jars through the central directory, inflating and parsing the classes
+ * on a {@link ForkJoinPool}. The results are merged in the order of the central directory
+ * on the calling thread, so the resulting maps (and any logged warnings) are the same
+ * as if the jar was read sequentially.
+ *
+ * <p>The amount of threads used can be set via the <code>de.geolykt.starplane.threads</code>
+ * system property and defaults to the amount of available processors. A value of 1
+ * causes all entries to be read on the calling thread.
+ */
+public final class ParallelJarReader {
+
+    private static final class ReadEntry {
+        private final byte @NotNull[] data;
+        @Nullable
+        private Exception failure;
+        @NotNull
+        private final String name;
+        @Nullable
+        private ClassNode node;
+
+        private ReadEntry(@NotNull String name, byte @NotNull[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelJarReader.class);
+
+    public static int getThreadCount() {
+        return Math.max(1, Integer.getInteger("de.geolykt.starplane.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static boolean isClassFile(@NotNull String name, byte @NotNull[] data) {
+        return data.length >= 4
+                && data[0] == (byte) 0xCA
+                && data[1] == (byte) 0xFE
+                && data[2] == (byte) 0xBA
+                && data[3] == (byte) 0xBE
+                && name.endsWith(".class");
+    }
+
+    @NotNull
+    private static ReadEntry read(@NotNull ZipFile zip, @NotNull ZipEntry entry, int parsingOptions) throws IOException {
+        byte[] data;
+        try (InputStream in = zip.getInputStream(entry)) {
+            data = in.readAllBytes();
+        }
+        @SuppressWarnings("null")
+        ReadEntry readEntry = new ReadEntry(entry.getName(), data);
+        if (!ParallelJarReader.isClassFile(readEntry.name, data)) {
+            return readEntry;
+        }
+        try {
+            ClassReader reader = new ClassReader(data);
+            ClassNode visitedNode = new ClassNode();
+            reader.accept(visitedNode, parsingOptions);
+            readEntry.node = visitedNode;
+        } catch (Exception ex) {
+            readEntry.failure = ex;
+        }
+        return readEntry;
+    }
+
+    @NotNull
+    private static List<@NotNull ReadEntry> readAll(@NotNull Path jar, int parsingOptions, boolean keepRaw) throws IOException {
+        List<@NotNull ReadEntry> readEntries = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            List<ZipEntry> entries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry entry = enumeration.nextElement();
+                if (keepRaw || entry.getName().endsWith(".class")) {
+                    entries.add(entry);
+                }
+            }
+
+            int threads = Math.min(ParallelJarReader.getThreadCount(), entries.size());
+            if (threads <= 1) {
+                for (ZipEntry entry : entries) {
+                    readEntries.add(ParallelJarReader.read(zip, entry, parsingOptions));
+                }
+                return readEntries;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<ForkJoinTask<@NotNull ReadEntry>> tasks = new ArrayList<>(entries.size());
+                for (ZipEntry entry : entries) {
+                    tasks.add(pool.submit(() -> {
+                        try {
+                            return ParallelJarReader.read(zip, entry, parsingOptions);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+                for (ForkJoinTask<@NotNull ReadEntry> task : tasks) {
+                    try {
+                        readEntries.add(task.join());
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return readEntries;
+    }
+
+    /**
+     * Reads all entries of a jar that should be remapped. Class files are read without skipping anything
+     * and are stored under their entry name, all other entries (as well as class files that cannot be
+     * parsed) are stored as raw bytes.
+     *
+     * @param jar The jar to read
+     * @param classNodes The map to store the class nodes in, keyed by entry name
+     * @param rawFiles The map to store all other entries in, keyed by entry name
+     * @throws IOException If the jar could not be read
+     */
+    public static void readJar(@NotNull Path jar, @NotNull Map<String, ClassNode> classNodes, @NotNull Map<String, byte[]> rawFiles) throws IOException {
+        // Do not skip anything (we will write the nodes as-is, including frames!)
+        for (ReadEntry entry : ParallelJarReader.readAll(jar, 0, true)) {
+            ClassNode node = entry.node;
+            if (node != null) {
+                classNodes.put(entry.name, node);
+                continue;
+            }
+            if (entry.failure != null) {
+                ParallelJarReader.LOGGER.warn("Unable to read classfile {}; treating it as a regular file instead.", entry.name, entry.failure);
+            }
+            if (rawFiles.put(entry.name, entry.data) != null) {
+                ParallelJarReader.LOGGER.warn("Overwrote entry for raw file {}. The remapped jar may be malformed", entry.name);
+            }
+        }
+    }
+
+    /**
+     * Reads all classes of a library jar, skipping frames and debug information.
+     * Non-class entries as well as class files that cannot be parsed are skipped.
+     *
+     * @param jar The jar to read
+     * @param libraryNodes The map to store the class nodes in, keyed by the internal name of the class
+     * @throws IOException If the jar could not be read
+     */
+    public static void readLibraryJar(@NotNull Path jar, @NotNull Map<String, ClassNode> libraryNodes) throws IOException {
+        ParallelJarReader.readLibraryJar(jar, libraryNodes, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+    }
+
+    /**
+     * Reads all classes of a library jar using the given parsing options.
+     * Non-class entries as well as class files that cannot be parsed are skipped.
+     *
+     * @param jar The jar to read
+     * @param libraryNodes The map to store the class nodes in, keyed by the internal name of the class
+     * @param parsingOptions The options passed to {@link ClassReader#accept(org.objectweb.asm.ClassVisitor, int)}
+     * @throws IOException If the jar could not be read
+     */
+    public static void readLibraryJar(@NotNull Path jar, @NotNull Map<String, ClassNode> libraryNodes, int parsingOptions) throws IOException {
+        for (ReadEntry entry : ParallelJarReader.readAll(jar, parsingOptions, false)) {
+            ClassNode node = entry.node;
+            if (node != null) {
+                if (libraryNodes.put(node.name, node) != null) {
+                    ParallelJarReader.LOGGER.warn("Collision for path {}, entry {}. Likely caused due to unexpected multi-release-jar", node.name, entry.name);
+                }
+            } else if (entry.failure != null) {
+                ParallelJarReader.LOGGER.warn("Unable to read library classfile {}; skipping it instead.", entry.name, entry.failure);
+            }
+        }
+    }
+
+    private ParallelJarReader() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,261 @@
+package de.geolykt.starplane;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects the wall time, allocations and emitted mappings of the individual steps involved in transforming the
+ * galimulator jar, so that regressions can be traced back to a single step when a new galimulator version is used.
+ *
+ * <p>Allocations are measured through {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * and thus only include the memory allocated by the thread that ran the step. Allocations made by helper
+ * threads (for example parallel streams) are not included. If the JVM does not support measuring allocations,
+ * the allocations are reported as -1. Measuring allocations is enabled for as long as a report is in use and is
+ * restored to its previous state once all reports are {@link #finish() finished}.
+ *
+ * <p>Steps are reported in the order in which they were {@link #create(String, String) created}. Measurements
+ * may be started and stopped on any thread.
+ */
+final class PerformanceReport {
+
+    /**
+     * A single measured step.
+     */
+    static final class Measurement {
+        private long allocatedBytes = -1;
+        @NotNull
+        private final String category;
+        private long mappings = -1;
+        @NotNull
+        private final String name;
+        private long startAllocatedBytes = -1;
+        private long startTime;
+        private long wallTimeNanos = -1;
+
+        private Measurement(@NotNull String category, @NotNull String name) {
+            this.category = category;
+            this.name = name;
+        }
+
+        /**
+         * Sets the amount of mappings emitted by the step. Steps that do not emit mappings leave this unset.
+         *
+         * @param mappings The amount of emitted mappings
+         */
+        void setMappings(long mappings) {
+            this.mappings = mappings;
+        }
+
+        /**
+         * Starts measuring the step on the current thread.
+         *
+         * @return The current instance, for chaining
+         */
+        @NotNull
+        Measurement start() {
+            this.startAllocatedBytes = PerformanceReport.getCurrentThreadAllocatedBytes();
+            this.startTime = System.nanoTime();
+            return this;
+        }
+
+        /**
+         * Stops measuring the step. Must be called on the same thread as {@link #start()}.
+         */
+        void stop() {
+            this.wallTimeNanos = System.nanoTime() - this.startTime;
+            long allocated = PerformanceReport.getCurrentThreadAllocatedBytes();
+            if (allocated >= 0 && this.startAllocatedBytes >= 0) {
+                this.allocatedBytes = allocated - this.startAllocatedBytes;
+            }
+        }
+
+        @NotNull
+        private JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("category", this.category);
+            json.put("name", this.name);
+            json.put("completed", this.wallTimeNanos >= 0);
+            json.put("wallTimeMillis", this.wallTimeNanos < 0 ? -1D : this.wallTimeNanos / 1_000_000D);
+            json.put("allocatedBytes", this.allocatedBytes);
+            if (this.mappings >= 0) {
+                json.put("mappings", this.mappings);
+            }
+            return json;
+        }
+    }
+
+    /**
+     * The version of the layout of the written report. Should be incremented whenever existing keys are changed.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Whether measuring allocations was enabled by the reports, and thus needs to be disabled once all reports are finished.
+     * Guarded by the class lock.
+     */
+    private static boolean enabledAllocationMeasurement;
+    /**
+     * The amount of reports that were created but not yet finished. Guarded by the class lock.
+     */
+    private static int unfinishedReports;
+    @Nullable
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN;
+
+    static {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = null;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            allocationBean = (com.sun.management.ThreadMXBean) bean;
+            try {
+                if (!allocationBean.isThreadAllocatedMemorySupported()) {
+                    allocationBean = null;
+                }
+            } catch (UnsupportedOperationException | SecurityException e) {
+                allocationBean = null;
+            }
+        }
+        THREAD_MX_BEAN = allocationBean;
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean = PerformanceReport.THREAD_MX_BEAN;
+        if (bean == null) {
+            return -1;
+        }
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private final boolean allocationsMeasured;
+    private boolean finished;
+    @NotNull
+    private final List<@NotNull Measurement> measurements = new ArrayList<>();
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Creates a report, enabling the measurement of allocations until the report is {@link #finish() finished}.
+     */
+    PerformanceReport() {
+        com.sun.management.ThreadMXBean bean = PerformanceReport.THREAD_MX_BEAN;
+        boolean allocationsMeasured = false;
+        if (bean != null) {
+            synchronized (PerformanceReport.class) {
+                PerformanceReport.unfinishedReports++;
+                try {
+                    if (!bean.isThreadAllocatedMemoryEnabled()) {
+                        bean.setThreadAllocatedMemoryEnabled(true);
+                        PerformanceReport.enabledAllocationMeasurement = true;
+                    }
+                    allocationsMeasured = true;
+                } catch (UnsupportedOperationException | SecurityException e) {
+                    // Allocations are reported as -1
+                }
+            }
+        }
+        this.allocationsMeasured = allocationsMeasured;
+    }
+
+    /**
+     * Creates a measurement for a step without starting it. The step is placed in the report at the position of this call.
+     *
+     * @param category The category of the step, for example "oaktree" or "autodeobf"
+     * @param name The name of the step
+     * @return The created measurement
+     */
+    @NotNull
+    synchronized Measurement create(@NotNull String category, @NotNull String name) {
+        Measurement measurement = new Measurement(category, name);
+        this.measurements.add(measurement);
+        return measurement;
+    }
+
+    /**
+     * Finishes the report. Should no other report be in use, the measurement of allocations is disabled again
+     * if it was disabled before the first report was created. Measurements that are still running afterwards
+     * may report their allocations as -1.
+     */
+    void finish() {
+        com.sun.management.ThreadMXBean bean = PerformanceReport.THREAD_MX_BEAN;
+        if (bean == null) {
+            return;
+        }
+        synchronized (PerformanceReport.class) {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            if (--PerformanceReport.unfinishedReports == 0 && PerformanceReport.enabledAllocationMeasurement) {
+                PerformanceReport.enabledAllocationMeasurement = false;
+                bean.setThreadAllocatedMemoryEnabled(false);
+            }
+        }
+    }
+
+    /**
+     * Runs and measures a step which does not emit any mappings.
+     *
+     * @param category The category of the step
+     * @param name The name of the step
+     * @param step The step to run
+     */
+    void measure(@NotNull String category, @NotNull String name, @NotNull Runnable step) {
+        Measurement measurement = this.create(category, name).start();
+        try {
+            step.run();
+        } finally {
+            measurement.stop();
+        }
+    }
+
+    /**
+     * Creates and starts a measurement for a step.
+     *
+     * @param category The category of the step
+     * @param name The name of the step
+     * @return The started measurement, which needs to be {@link Measurement#stop() stopped} once the step completes
+     */
+    @NotNull
+    Measurement start(@NotNull String category, @NotNull String name) {
+        return this.create(category, name).start();
+    }
+
+    /**
+     * Writes the report as a JSON document to the given file, replacing any previous report.
+     *
+     * @param file The file to write to
+     * @throws IOException If the file could not be written
+     */
+    synchronized void write(@NotNull Path file) throws IOException {
+        JSONArray steps = new JSONArray();
+        for (Measurement measurement : this.measurements) {
+            steps.put(measurement.toJSON());
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("formatVersion", PerformanceReport.FORMAT_VERSION);
+        report.put("autodeobfVersion", Autodeobf.getVersion());
+        report.put("timestamp", Instant.now().toString());
+        report.put("totalWallTimeMillis", (System.nanoTime() - this.startTime) / 1_000_000D);
+        report.put("allocationsMeasured", this.allocationsMeasured);
+        report.put("steps", steps);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            report.write(writer, 2, 0);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
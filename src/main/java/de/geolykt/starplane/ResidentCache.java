@@ -0,0 +1,109 @@
+package de.geolykt.starplane;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of expensive to load, read-only state (such as mapping lookups, mapping trees and library skeletons)
+ * that is kept for the lifetime of the classloader of the plugin. As Gradle reuses the classloader of a plugin
+ * across builds run by the same daemon, the cached state survives between builds so that repeated invocations
+ * of tasks such as remapJar or deployMods do not need to load it again.
+ *
+ * <p>Every entry is stored alongside a fingerprint of its inputs and is only returned if the fingerprint
+ * still matches. Values are held through {@link SoftReference soft references}, so they are discarded if
+ * the daemon runs low on memory. Cached values are shared between projects and threads and thus must not be
+ * mutated by their users. Setting the {@code de.geolykt.starplane.nocache} system property to {@code true}
+ * bypasses the cache entirely.
+ */
+public final class ResidentCache {
+
+    private static final class Entry {
+        @NotNull
+        private final String fingerprint;
+        @NotNull
+        private final SoftReference<Object> value;
+
+        private Entry(@NotNull String fingerprint, @NotNull Object value) {
+            this.fingerprint = fingerprint;
+            this.value = new SoftReference<>(value);
+        }
+    }
+
+    @FunctionalInterface
+    public static interface Loader<T> {
+        @NotNull
+        T load() throws IOException;
+    }
+
+    @NotNull
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResidentCache.class);
+
+    /**
+     * Discards all cached state.
+     */
+    public static void clear() {
+        ResidentCache.ENTRIES.clear();
+    }
+
+    /**
+     * Obtains a cached value, loading it if it was not cached yet, was discarded or its fingerprint changed.
+     * Concurrent calls with the same key may both end up loading the value, in which case the value loaded last is kept.
+     *
+     * @param <T> The type of the value
+     * @param namespace The kind of value, which keeps keys of different kinds of values apart
+     * @param key The key of the value within the namespace, for example the path of the file it is loaded from
+     * @param fingerprint A fingerprint of all inputs of the value
+     * @param loader The loader used to load the value on a cache miss
+     * @return The cached or newly loaded value
+     * @throws IOException If the loader failed to load the value
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public static <T> T get(@NotNull String namespace, @NotNull Object key, @NotNull String fingerprint, @NotNull Loader<T> loader) throws IOException {
+        if (Boolean.getBoolean("de.geolykt.starplane.nocache")) {
+            return loader.load();
+        }
+
+        String entryKey = namespace + '\0' + key;
+        Entry entry = ResidentCache.ENTRIES.get(entryKey);
+        if (entry != null && entry.fingerprint.equals(fingerprint)) {
+            Object value = entry.value.get();
+            if (value != null) {
+                ResidentCache.LOGGER.debug("Reusing resident {} of {}", namespace, key);
+                return (T) value;
+            }
+        }
+
+        T value = loader.load();
+        ResidentCache.ENTRIES.put(entryKey, new Entry(fingerprint, value));
+        return value;
+    }
+
+    /**
+     * Obtains a fingerprint of a file based on its size and modification time.
+     *
+     * @param file The file
+     * @return The fingerprint of the file
+     * @throws IOException If the attributes of the file could not be read
+     */
+    @NotNull
+    public static String getFileFingerprint(@NotNull Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return "missing";
+        }
+        return Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private ResidentCache() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,189 @@
+package de.geolykt.starplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache that is shared between several projects (and thus possibly several concurrently running builds),
+ * usually located within the Gradle user home.
+ *
+ * <p>The cache consists of immutable entries, each being a directory of files identified by a key which
+ * must describe all inputs that were used to produce the files. Entries are assembled in a temporary directory
+ * and then atomically moved into place, so an entry is either complete or not visible at all.
+ * In order to avoid several builds producing the same entry at the same time, builds should hold the
+ * {@link #lock(String) lock} of an entry while checking for it and producing it.
+ */
+public final class SharedCache {
+
+    /**
+     * A lock on a single key of the cache, held both within the current JVM and across processes.
+     */
+    public static final class Lock implements Closeable {
+        @NotNull
+        private final FileChannel channel;
+        @NotNull
+        private final FileLock fileLock;
+        @NotNull
+        private final ReentrantLock jvmLock;
+
+        private Lock(@NotNull ReentrantLock jvmLock, @NotNull FileChannel channel, @NotNull FileLock fileLock) {
+            this.jvmLock = jvmLock;
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.fileLock.release();
+                this.channel.close();
+            } finally {
+                this.jvmLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Locks held by the current JVM. File locks are held on behalf of the entire JVM, so projects that are
+     * evaluated in parallel (through --parallel) need to be synchronised separately.
+     */
+    @NotNull
+    private static final Map<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedCache.class);
+
+    private static void deleteRecursively(@NotNull Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach((file) -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    SharedCache.LOGGER.debug("Unable to delete {}", file, e);
+                }
+            });
+        } catch (IOException e) {
+            SharedCache.LOGGER.debug("Unable to delete {}", directory, e);
+        }
+    }
+
+    @NotNull
+    private final Path root;
+
+    public SharedCache(@NotNull Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Obtains the directory of a complete entry.
+     *
+     * @param key The key of the entry
+     * @return The directory of the entry, or null if no complete entry exists for the key
+     */
+    @Nullable
+    public Path getEntry(@NotNull String key) {
+        Path entry = this.root.resolve("entries").resolve(key);
+        return Files.isDirectory(entry) ? entry : null;
+    }
+
+    /**
+     * Locks the given key, blocking until other threads or processes holding the lock release it.
+     *
+     * @param key The key to lock
+     * @return The lock, which must be closed once it is no longer needed
+     * @throws IOException If the lock file cannot be created or locked
+     */
+    @NotNull
+    public Lock lock(@NotNull String key) throws IOException {
+        Path lockFile = this.root.resolve("locks").resolve(key + ".lock");
+        ReentrantLock jvmLock = SharedCache.JVM_LOCKS.computeIfAbsent(lockFile, (ignore) -> new ReentrantLock());
+        if (!jvmLock.tryLock()) {
+            SharedCache.LOGGER.info("Waiting for another project to release the shared cache entry {}", key);
+            jvmLock.lock();
+        }
+
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                SharedCache.LOGGER.info("Waiting for another build to release the shared cache entry {}", key);
+                fileLock = channel.lock();
+            }
+            return new Lock(jvmLock, channel, fileLock);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes an entry by copying the given files into a temporary directory which is then atomically
+     * moved into place. If an entry with the key already exists, it is kept as-is.
+     *
+     * @param key The key of the entry
+     * @param files The files of the entry, keyed by their name within the entry
+     * @throws IOException If the files could not be copied or the entry could not be moved into place
+     */
+    public void publish(@NotNull String key, @NotNull Map<@NotNull String, @NotNull Path> files) throws IOException {
+        Path entries = this.root.resolve("entries");
+        Files.createDirectories(entries);
+        Path temp = Files.createTempDirectory(entries, key + ".tmp");
+        try {
+            for (Map.Entry<@NotNull String, @NotNull Path> file : files.entrySet()) {
+                Files.copy(file.getValue(), temp.resolve(file.getKey()), StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            Files.move(temp, entries.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            SharedCache.LOGGER.debug("Shared cache entry {} was already published", key);
+        } catch (AtomicMoveNotSupportedException e) {
+            throw new IOException("The shared cache at " + this.root + " does not support atomic moves", e);
+        } finally {
+            if (Files.exists(temp)) {
+                SharedCache.deleteRecursively(temp);
+            }
+        }
+    }
+
+    /**
+     * Copies a file of an entry to the given location. The file is copied to a temporary sibling
+     * of the target first, so the target is never left in a partially written state.
+     *
+     * @param entry The directory of the entry, as obtained through {@link #getEntry(String)}
+     * @param name The name of the file within the entry
+     * @param target The location to copy the file to
+     * @return True if the file was copied, false if the entry does not contain the file
+     * @throws IOException If the file could not be copied
+     */
+    public boolean restore(@NotNull Path entry, @NotNull String name, @NotNull Path target) throws IOException {
+        Path source = entry.resolve(name);
+        if (!Files.isRegularFile(source)) {
+            return false;
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+}
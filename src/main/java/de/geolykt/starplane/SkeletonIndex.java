@@ -0,0 +1,241 @@
+package de.geolykt.starplane;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact binary index of the skeleton of the classes within a jar. The skeleton of a class consists
+ * of its name, access flags, superclass, interfaces as well as the names, descriptors and access flags
+ * of its members. This is all the information that is needed by the lookups that are used when
+ * remapping against a library, so the index can be used in place of fully parsing the library jar.
+ *
+ * <p>The index is stamped with the size and modification time of the jar it was created from and is
+ * considered stale should either of them change.
+ */
+public final class SkeletonIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SkeletonIndex.class);
+    private static final int MAGIC = 0x534B454C; // "SKEL"
+    private static final int VERSION = 1;
+
+    /**
+     * Creates the skeleton of a class, which is a copy of the class that only retains the parts that are stored
+     * within the index. Unlike the class itself, the skeleton is unaffected by the class being remapped.
+     *
+     * @param node The class to create the skeleton of
+     * @return The skeleton of the class
+     */
+    @NotNull
+    public static ClassNode createSkeleton(@NotNull ClassNode node) {
+        ClassNode skeleton = new ClassNode();
+        skeleton.access = node.access;
+        skeleton.name = node.name;
+        skeleton.superName = node.superName;
+        skeleton.interfaces = new ArrayList<>(node.interfaces);
+        for (FieldNode field : node.fields) {
+            skeleton.fields.add(new FieldNode(field.access, field.name, field.desc, null, null));
+        }
+        for (MethodNode method : node.methods) {
+            skeleton.methods.add(new MethodNode(method.access, method.name, method.desc, null, null));
+        }
+        return skeleton;
+    }
+
+    private static long[] getStamp(@NotNull Path jar) throws IOException {
+        return new long[] {Files.size(jar), Files.getLastModifiedTime(jar).toMillis()};
+    }
+
+    /**
+     * Obtains the skeletons of all classes within a jar, reading them from the index if it is up to date.
+     * Otherwise the jar is parsed and the index is written anew.
+     *
+     * @param jar The jar to obtain the class skeletons of
+     * @param index The location of the index file
+     * @return An unmodifiable map of internal class names to the skeleton {@link ClassNode class nodes}.
+     * The map may be shared with other callers, so the nodes must not be modified.
+     * @throws IOException If the jar could not be read
+     */
+    @NotNull
+    public static Map<String, ClassNode> getOrCreate(@NotNull Path jar, @NotNull Path index) throws IOException {
+        // The skeletons are kept in memory across builds run by the same daemon, see ResidentCache
+        return ResidentCache.get("skeleton index", index, ResidentCache.getFileFingerprint(jar), () -> {
+            return Collections.unmodifiableMap(SkeletonIndex.load(jar, index));
+        });
+    }
+
+    @NotNull
+    private static Map<String, ClassNode> load(@NotNull Path jar, @NotNull Path index) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, ClassNode> nodes = SkeletonIndex.read(index, jar);
+        if (nodes != null) {
+            SkeletonIndex.LOGGER.debug("Read skeleton index {} in {} ms.", index, System.currentTimeMillis() - start);
+            return nodes;
+        }
+
+        nodes = new HashMap<>();
+        ParallelJarReader.readLibraryJar(jar, nodes, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+        try {
+            SkeletonIndex.write(index, nodes.values(), jar);
+        } catch (IOException e) {
+            SkeletonIndex.LOGGER.warn("Unable to write skeleton index {}", index, e);
+        }
+        SkeletonIndex.LOGGER.info("Indexed {} in {} ms.", jar.getFileName(), System.currentTimeMillis() - start);
+        return nodes;
+    }
+
+    /**
+     * Reads the index, returning null if it does not exist, is malformed or does not belong to the current state of the jar.
+     *
+     * @param index The location of the index file
+     * @param jar The jar the index should describe
+     * @return A map of internal class names to the skeleton {@link ClassNode class nodes}, or null if the index cannot be used.
+     */
+    @Nullable
+    public static Map<String, ClassNode> read(@NotNull Path index, @NotNull Path jar) {
+        if (!Files.isRegularFile(index) || !Files.isRegularFile(jar)) {
+            return null;
+        }
+
+        // The index is read through a stream rather than mapped, as a mapped file cannot be replaced on Windows
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            long[] stamp = SkeletonIndex.getStamp(jar);
+            if (in.readInt() != SkeletonIndex.MAGIC || in.readInt() != SkeletonIndex.VERSION
+                    || in.readLong() != stamp[0] || in.readLong() != stamp[1]) {
+                return null;
+            }
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+
+            int classCount = in.readInt();
+            Map<String, ClassNode> nodes = new HashMap<>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                ClassNode node = new ClassNode();
+                node.access = in.readInt();
+                node.name = strings[in.readInt()];
+                int superName = in.readInt();
+                node.superName = superName == -1 ? null : strings[superName];
+                int interfaceCount = in.readInt();
+                node.interfaces = new ArrayList<>(interfaceCount);
+                for (int j = 0; j < interfaceCount; j++) {
+                    node.interfaces.add(strings[in.readInt()]);
+                }
+                int fieldCount = in.readInt();
+                for (int j = 0; j < fieldCount; j++) {
+                    node.fields.add(new FieldNode(in.readInt(), strings[in.readInt()], strings[in.readInt()], null, null));
+                }
+                int methodCount = in.readInt();
+                for (int j = 0; j < methodCount; j++) {
+                    node.methods.add(new MethodNode(in.readInt(), strings[in.readInt()], strings[in.readInt()], null, null));
+                }
+                nodes.put(node.name, node);
+            }
+            return nodes;
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            SkeletonIndex.LOGGER.warn("Unable to read skeleton index {}; it will be regenerated", index, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the skeletons of the given nodes to the index file.
+     *
+     * @param index The location of the index file
+     * @param nodes The nodes to index, usually the contents of the jar.
+     * @param jar The jar which the nodes belong to. Must have been written before the index is written.
+     * @throws IOException If the index could not be written
+     */
+    public static void write(@NotNull Path index, @NotNull Collection<ClassNode> nodes, @NotNull Path jar) throws IOException {
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        List<ClassNode> sortedNodes = new ArrayList<>(nodes);
+        sortedNodes.removeIf(Objects::isNull);
+        sortedNodes.sort((n1, n2) -> n1.name.compareTo(n2.name));
+        for (ClassNode node : sortedNodes) {
+            stringIds.putIfAbsent(node.name, stringIds.size());
+            if (node.superName != null) {
+                stringIds.putIfAbsent(node.superName, stringIds.size());
+            }
+            for (String interfaceName : node.interfaces) {
+                stringIds.putIfAbsent(interfaceName, stringIds.size());
+            }
+            for (FieldNode field : node.fields) {
+                stringIds.putIfAbsent(field.name, stringIds.size());
+                stringIds.putIfAbsent(field.desc, stringIds.size());
+            }
+            for (MethodNode method : node.methods) {
+                stringIds.putIfAbsent(method.name, stringIds.size());
+                stringIds.putIfAbsent(method.desc, stringIds.size());
+            }
+        }
+
+        long[] stamp = SkeletonIndex.getStamp(jar);
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SkeletonIndex.MAGIC);
+            out.writeInt(SkeletonIndex.VERSION);
+            out.writeLong(stamp[0]);
+            out.writeLong(stamp[1]);
+            out.writeInt(stringIds.size());
+            for (String string : stringIds.keySet()) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            out.writeInt(sortedNodes.size());
+            for (ClassNode node : sortedNodes) {
+                out.writeInt(node.access);
+                out.writeInt(stringIds.get(node.name));
+                out.writeInt(node.superName == null ? -1 : stringIds.get(node.superName));
+                out.writeInt(node.interfaces.size());
+                for (String interfaceName : node.interfaces) {
+                    out.writeInt(stringIds.get(interfaceName));
+                }
+                out.writeInt(node.fields.size());
+                for (FieldNode field : node.fields) {
+                    out.writeInt(field.access);
+                    out.writeInt(stringIds.get(field.name));
+                    out.writeInt(stringIds.get(field.desc));
+                }
+                out.writeInt(node.methods.size());
+                for (MethodNode method : node.methods) {
+                    out.writeInt(method.access);
+                    out.writeInt(stringIds.get(method.name));
+                    out.writeInt(stringIds.get(method.desc));
+                }
+            }
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private SkeletonIndex() {
+        throw new UnsupportedOperationException();
+    }
+}
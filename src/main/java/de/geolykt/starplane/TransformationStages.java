@@ -0,0 +1,275 @@
+package de.geolykt.starplane;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bookkeeping for the individual stages of {@link ObfuscationHandler#getTransformedGalimulatorJar()}.
+ *
+ * <p>Each stage has a fingerprint which is derived from the fingerprint of the previous stage and
+ * the inputs of the stage itself. A change in the inputs of a stage thus invalidates the stage as well
+ * as all stages that come after it, while all stages before it can be reused. Stages which alter the
+ * class nodes persist their output as a snapshot jar from which the pipeline can be resumed later on.
+ */
+final class TransformationStages {
+
+    enum Stage {
+        /**
+         * Indexing of the original galimulator jar and the generic signature inference done by Oaktree.
+         */
+        OAKTREE,
+        /**
+         * Generation of slintermediary.tiny through the {@link de.geolykt.starloader.deobf.IntermediaryGenerator}
+         * and of spstarmap.tiny through {@link Autodeobf}.
+         */
+        INTERMEDIARY,
+        /**
+         * Compilation and application of the softmap files, producing compiled-softmap.tiny.
+         */
+        SOFTMAP,
+        /**
+         * Application of the supplementary mappings. The snapshot of this stage is the pre-RAS jar.
+         */
+        SUPPLEMENTARY,
+        /**
+         * Application of the reversible access setter and writing of the compile-time and runtime jars.
+         */
+        RAS;
+    }
+
+    @NotNull
+    private static final String FINGERPRINT_FILE_NAME = "stage-fingerprints.dat";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformationStages.class);
+
+    @NotNull
+    private static String sha1(@NotNull String input) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(input.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @NotNull
+    private final Map<Stage, String> currentFingerprints = new EnumMap<>(Stage.class);
+    @NotNull
+    private final Path fingerprintFile;
+    @NotNull
+    private final Path snapshotDir;
+    @NotNull
+    private final Map<Stage, Boolean> storedSnapshots = new EnumMap<>(Stage.class);
+    @NotNull
+    private final Map<Stage, String> storedFingerprints = new EnumMap<>(Stage.class);
+
+    TransformationStages(@NotNull Path cacheDir) {
+        this.fingerprintFile = cacheDir.resolve(TransformationStages.FINGERPRINT_FILE_NAME);
+        this.snapshotDir = cacheDir.resolve("stages");
+
+        if (!Files.isRegularFile(this.fingerprintFile)) {
+            return;
+        }
+
+        try (BufferedReader br = Files.newBufferedReader(this.fingerprintFile, StandardCharsets.UTF_8)) {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    continue;
+                }
+                Stage stage;
+                try {
+                    stage = Stage.valueOf(parts[0].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException ignored) {
+                    continue;
+                }
+                this.storedFingerprints.put(stage, parts[1]);
+                this.storedSnapshots.put(stage, Boolean.parseBoolean(parts[2]));
+            }
+        } catch (IOException e) {
+            TransformationStages.LOGGER.warn("Unable to read stage fingerprints; all stages will be recomputed", e);
+            this.storedFingerprints.clear();
+            this.storedSnapshots.clear();
+        }
+    }
+
+    /**
+     * Marks the stage as completed, persisting its fingerprint and, if the stage altered the class nodes,
+     * a snapshot of the nodes.
+     *
+     * @param stage The completed stage
+     * @param nodes The class nodes as they are after the stage, or null if the stage did not alter them.
+     * @throws IOException If the snapshot or the fingerprints could not be written
+     */
+    void complete(@NotNull Stage stage, @Nullable Collection<@NotNull ClassNode> nodes) throws IOException {
+        Path snapshot = this.getSnapshot(stage);
+        if (nodes == null) {
+            Files.deleteIfExists(snapshot);
+        } else {
+            long start = System.currentTimeMillis();
+            Files.createDirectories(this.snapshotDir);
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(temp), StandardCharsets.UTF_8)) {
+                // Snapshots are rewritten often and read rarely, so favour speed over size
+                zipOut.setLevel(Deflater.BEST_SPEED);
+                TreeSet<ClassNode> sortedNodes = new TreeSet<>((node1, node2) -> node1.name.compareTo(node2.name));
+                sortedNodes.addAll(nodes);
+                for (ClassNode node : sortedNodes) {
+                    ClassWriter writer = new ClassWriter(0);
+                    node.accept(writer);
+                    zipOut.putNextEntry(new ZipEntry(node.name + ".class"));
+                    zipOut.write(writer.toByteArray());
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            TransformationStages.LOGGER.debug("Wrote snapshot of stage {} in {} ms.", stage, System.currentTimeMillis() - start);
+        }
+
+        this.storedFingerprints.put(stage, this.getCurrentFingerprint(stage));
+        this.storedSnapshots.put(stage, nodes != null);
+        this.save();
+    }
+
+    /**
+     * Marks the stage as completed without writing a snapshot, for use when the outputs of the stage
+     * (including the snapshot, if it has one) were put in place by other means, such as a shared cache.
+     *
+     * @param stage The completed stage
+     * @param snapshot Whether a snapshot of the stage exists at {@link #getSnapshot(Stage)}
+     * @throws IOException If the fingerprints could not be written
+     */
+    void completeExternally(@NotNull Stage stage, boolean snapshot) throws IOException {
+        if (!snapshot) {
+            Files.deleteIfExists(this.getSnapshot(stage));
+        }
+        this.storedFingerprints.put(stage, this.getCurrentFingerprint(stage));
+        this.storedSnapshots.put(stage, snapshot);
+        this.save();
+    }
+
+    @NotNull
+    private String getCurrentFingerprint(@NotNull Stage stage) {
+        String fingerprint = this.currentFingerprints.get(stage);
+        if (fingerprint == null) {
+            throw new IllegalStateException("The inputs of stage " + stage + " have not been defined.");
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Obtains the current fingerprint of a stage, which describes the inputs of the stage and all stages before it.
+     *
+     * @param stage The stage to obtain the fingerprint of
+     * @return The fingerprint of the stage
+     */
+    @NotNull
+    String getFingerprint(@NotNull Stage stage) {
+        return this.getCurrentFingerprint(stage);
+    }
+
+    /**
+     * Obtains the stage which produced the most recent snapshot before the given stage.
+     *
+     * @param stage The stage to resume
+     * @return The stage whose snapshot should be used as the input of the given stage,
+     * or null if the original galimulator jar should be used.
+     */
+    @Nullable
+    Stage getResumptionStage(@NotNull Stage stage) {
+        for (int i = stage.ordinal() - 1; i >= 0; i--) {
+            Stage previous = Stage.values()[i];
+            if (Boolean.TRUE.equals(this.storedSnapshots.get(previous))) {
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    Path getSnapshot(@NotNull Stage stage) {
+        return this.snapshotDir.resolve(stage.name().toLowerCase(Locale.ROOT) + ".jar");
+    }
+
+    /**
+     * Removes the stored fingerprints of the given stage and all stages that come after it.
+     * This should be called before a stage is recomputed so that an interrupted run does not
+     * leave a stale stage that is considered up to date.
+     *
+     * @param stage The first stage to invalidate
+     * @throws IOException If the fingerprints could not be written
+     */
+    void invalidate(@NotNull Stage stage) throws IOException {
+        for (Stage s : Stage.values()) {
+            if (s.ordinal() >= stage.ordinal()) {
+                this.storedFingerprints.remove(s);
+                this.storedSnapshots.remove(s);
+            }
+        }
+        this.save();
+    }
+
+    /**
+     * Checks whether the stored fingerprint of the stage matches the current fingerprint
+     * and whether the snapshot of the stage (if the stage produced one) still exists.
+     *
+     * @param stage The stage to check
+     * @return True if the stage does not need to be recomputed
+     */
+    boolean isUpToDate(@NotNull Stage stage) {
+        if (!this.getCurrentFingerprint(stage).equals(this.storedFingerprints.get(stage))) {
+            return false;
+        }
+        return !Boolean.TRUE.equals(this.storedSnapshots.get(stage)) || Files.isRegularFile(this.getSnapshot(stage));
+    }
+
+    private void save() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(this.fingerprintFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Stage, String> e : this.storedFingerprints.entrySet()) {
+                writer.write(e.getKey().name().toLowerCase(Locale.ROOT));
+                writer.write('\t');
+                writer.write(e.getValue());
+                writer.write('\t');
+                writer.write(String.valueOf(Boolean.TRUE.equals(this.storedSnapshots.get(e.getKey()))));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Defines the inputs of a stage. Stages must be defined in the order in which they run as the fingerprint
+     * of a stage includes the fingerprint of the stage before it.
+     *
+     * @param stage The stage to define
+     * @param inputs A string uniquely describing the inputs of the stage, excluding the inputs of previous stages.
+     */
+    void setInputs(@NotNull Stage stage, @NotNull String inputs) {
+        String previous = stage.ordinal() == 0 ? "" : this.getCurrentFingerprint(Stage.values()[stage.ordinal() - 1]);
+        this.currentFingerprints.put(stage, TransformationStages.sha1(previous + '\n' + stage.name() + '\n' + inputs));
+    }
+}
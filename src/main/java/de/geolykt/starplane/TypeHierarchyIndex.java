@@ -0,0 +1,202 @@
+package de.geolykt.starplane;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * A precomputed index of the type hierarchy of a list of classes, allowing instanceof-style queries in constant time.
+ *
+ * <p>Each class is assigned an id in the order of the list. For every class the set of its superclasses
+ * (including itself) as well as the set of its supertypes is stored as a {@link BitSet}, along with the inverse
+ * sets which are used to enumerate all subclasses or subtypes of a class in the order of the list.
+ * Only classes that are part of the list are considered, classes outside of it (such as JDK classes)
+ * terminate the hierarchy.
+ *
+ * <p>The supertypes of a class are its superclasses as well as the interfaces directly implemented by any of them
+ * (along with the superclasses of these interfaces). Superinterfaces of interfaces are not considered.
+ */
+final class TypeHierarchyIndex {
+
+    @NotNull
+    private final Map<String, Integer> ids = new HashMap<>();
+    @NotNull
+    private final ClassNode @NotNull[] nodes;
+    @NotNull
+    private final BitSet @NotNull[] subclasses;
+    @NotNull
+    private final BitSet @NotNull[] subtypes;
+    @NotNull
+    private final BitSet @NotNull[] superclasses;
+    @NotNull
+    private final BitSet @NotNull[] supertypes;
+
+    TypeHierarchyIndex(@NotNull List<ClassNode> nodes) {
+        this.nodes = nodes.toArray(new ClassNode[0]);
+        for (int i = 0; i < this.nodes.length; i++) {
+            this.ids.put(this.nodes[i].name, i);
+        }
+
+        int count = this.nodes.length;
+        this.superclasses = new BitSet[count];
+        this.supertypes = new BitSet[count];
+        this.subclasses = new BitSet[count];
+        this.subtypes = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            this.subclasses[i] = new BitSet();
+            this.subtypes[i] = new BitSet();
+        }
+
+        for (int i = 0; i < count; i++) {
+            this.computeSuperclasses(i);
+        }
+
+        for (int i = 0; i < count; i++) {
+            BitSet types = (BitSet) this.superclasses[i].clone();
+            for (int superclass = this.superclasses[i].nextSetBit(0); superclass >= 0; superclass = this.superclasses[i].nextSetBit(superclass + 1)) {
+                for (String interfaceName : this.nodes[superclass].interfaces) {
+                    Integer interfaceId = this.ids.get(interfaceName);
+                    if (interfaceId != null) {
+                        types.or(this.superclasses[interfaceId]);
+                    }
+                }
+            }
+            this.supertypes[i] = types;
+        }
+
+        for (int i = 0; i < count; i++) {
+            for (int superclass = this.superclasses[i].nextSetBit(0); superclass >= 0; superclass = this.superclasses[i].nextSetBit(superclass + 1)) {
+                this.subclasses[superclass].set(i);
+            }
+            for (int supertype = this.supertypes[i].nextSetBit(0); supertype >= 0; supertype = this.supertypes[i].nextSetBit(supertype + 1)) {
+                this.subtypes[supertype].set(i);
+            }
+        }
+    }
+
+    @NotNull
+    private BitSet computeSuperclasses(int id) {
+        BitSet computed = this.superclasses[id];
+        if (computed != null) {
+            return computed;
+        }
+
+        // Walk up the chain until a class with known superclasses (or the end of the chain) is found.
+        // This avoids deep recursion and guards against (invalid) circular hierarchies.
+        List<Integer> chain = new ArrayList<>();
+        BitSet visited = new BitSet();
+        BitSet base = new BitSet();
+        for (Integer current = id; current != null && !visited.get(current); current = this.ids.get(this.nodes[current].superName)) {
+            if (this.superclasses[current] != null) {
+                base = this.superclasses[current];
+                break;
+            }
+            visited.set(current);
+            chain.add(current);
+        }
+
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int current = chain.get(i);
+            BitSet set = (BitSet) base.clone();
+            set.set(current);
+            this.superclasses[current] = set;
+            base = set;
+        }
+        return this.superclasses[id];
+    }
+
+    @NotNull
+    private List<@NotNull ClassNode> enumerate(@NotNull BitSet @NotNull[] sets, @Nullable String type) {
+        Integer id = type == null ? null : this.ids.get(type);
+        if (id == null) {
+            return new ArrayList<>();
+        }
+        BitSet set = sets[id];
+        List<@NotNull ClassNode> enumerated = new ArrayList<>(set.cardinality());
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            enumerated.add(this.nodes[i]);
+        }
+        return enumerated;
+    }
+
+    /**
+     * Obtains all classes that are the given class or extend it, in the order of the indexed list.
+     *
+     * @param type The internal name of the class
+     * @return The subclasses of the class. Empty if the class is not indexed.
+     */
+    @NotNull
+    List<@NotNull ClassNode> getSubclasses(@Nullable String type) {
+        return this.enumerate(this.subclasses, type);
+    }
+
+    /**
+     * Obtains all classes that are the given type, extend it or implement it (see {@link #isSubtype(ClassNode, String)}),
+     * in the order of the indexed list.
+     *
+     * @param type The internal name of the type
+     * @return The subtypes of the type. Empty if the type is not indexed.
+     */
+    @NotNull
+    List<@NotNull ClassNode> getSubtypes(@Nullable String type) {
+        return this.enumerate(this.subtypes, type);
+    }
+
+    private boolean isContained(@NotNull BitSet @NotNull[] sets, @Nullable ClassNode node, @Nullable String type) {
+        if (node == null || type == null) {
+            return false;
+        }
+        if (node.name.equals(type)) {
+            return true;
+        }
+        Integer typeId = this.ids.get(type);
+        if (typeId == null) {
+            return false;
+        }
+        Integer nodeId = this.ids.get(node.name);
+        if (nodeId != null && this.nodes[nodeId] == node) {
+            return sets[nodeId].get(typeId);
+        }
+
+        // The node is not part of the index, resolve the query through its direct supertypes instead
+        if (sets == this.supertypes) {
+            for (String interfaceName : node.interfaces) {
+                Integer interfaceId = this.ids.get(interfaceName);
+                if (interfaceId != null && this.superclasses[interfaceId].get(typeId)) {
+                    return true;
+                }
+            }
+        }
+        Integer superId = node.superName == null ? null : this.ids.get(node.superName);
+        return superId != null && sets[superId].get(typeId);
+    }
+
+    /**
+     * Checks whether the given class is the given type or extends it.
+     *
+     * @param node The class to check
+     * @param type The internal name of the potential superclass
+     * @return True if the type is a superclass of the class
+     */
+    boolean isSubclass(@Nullable ClassNode node, @Nullable String type) {
+        return this.isContained(this.superclasses, node, type);
+    }
+
+    /**
+     * Checks whether the given class is the given type, extends it, or implements it - either directly or
+     * through one of its superclasses. Interfaces extended by interfaces are not considered.
+     *
+     * @param node The class to check
+     * @param type The internal name of the potential supertype
+     * @return True if the type is a supertype of the class
+     */
+    boolean isSubtype(@Nullable ClassNode node, @Nullable String type) {
+        return this.isContained(this.supertypes, node, type);
+    }
+}
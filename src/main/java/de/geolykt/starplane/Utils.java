@@ -10,6 +10,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
@@ -44,6 +45,35 @@ public final class Utils {
         READ_ALL_BYTES_HANDLE = handle;
     }
 
+    /**
+     * Feeds the name, the size and the SHA-256 hash of a file into a digest. Unlike digesting the contents of
+     * several files directly, neither the boundaries between the files nor their names are lost.
+     *
+     * @param digest The digest to update
+     * @param file The file to digest
+     * @throws IOException If the file could not be read
+     */
+    public static void digestFile(@NotNull MessageDigest digest, @NotNull Path file) throws IOException {
+        MessageDigest fileDigest;
+        try {
+            fileDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+        byte[] buffer = new byte[8192];
+        long size = 0;
+        try (DigestInputStream din = new DigestInputStream(Files.newInputStream(file), fileDigest)) {
+            for (int read = din.read(buffer); read != -1; read = din.read(buffer)) {
+                size += read;
+            }
+        }
+        digest.update(String.valueOf(file.getFileName()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Long.toString(size).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(fileDigest.digest());
+    }
+
     public static final String getChecksum(File file) {
         MessageDigest digest;
         try {
@@ -0,0 +1,281 @@
+package de.geolykt.starplane.remapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stianloader.remapper.MappingLookup;
+import org.stianloader.remapper.Remapper;
+import org.stianloader.remapper.SimpleMappingLookup;
+
+/**
+ * A flattened form of a {@link ChainMappingLookup}, where every class and member is mapped from
+ * the source namespace of the first lookup in the chain to the destination namespace of the last
+ * lookup in the chain through a single table lookup.
+ *
+ * <p>The table is computed by translating the keys of the mappings of every lookup in the chain
+ * back into the source namespace of the chain, after which the chain is queried once for each key.
+ * Any class or member that is not within the table is mapped to itself by the chain, so the
+ * composed lookup yields the exact same results as the chain it was composed from.
+ */
+public class ComposedMappingLookup implements MappingLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComposedMappingLookup.class);
+    private static final int MAGIC = 0x434D4150; // "CMAP"
+    private static final int VERSION = 1;
+
+    /**
+     * Composes the given chain of lookups into a single table.
+     *
+     * @param lookups The lookups in the order in which they would be passed to {@link ChainMappingLookup#ChainMappingLookup(MappingLookup...)}.
+     * @return The composed lookup, or null if any of the lookups cannot be enumerated.
+     */
+    @Nullable
+    public static ComposedMappingLookup compose(@NotNull List<@NotNull MappingLookup> lookups) {
+        long start = System.currentTimeMillis();
+
+        List<Map<String, String>> hopClasses = new ArrayList<>();
+        List<List<@NotNull String[]>> hopMembers = new ArrayList<>();
+        for (MappingLookup lookup : lookups) {
+            if (!(lookup instanceof EnumerableMappingLookup)) {
+                return null;
+            }
+            Map<String, String> classes = new HashMap<>();
+            List<@NotNull String[]> members = new ArrayList<>();
+            boolean enumerable = ((EnumerableMappingLookup) lookup).enumerateMappings(new EnumerableMappingLookup.MappingEntryConsumer() {
+                @Override
+                public void acceptClass(@NotNull String srcName, @NotNull String dstName) {
+                    classes.put(srcName, dstName);
+                }
+
+                @Override
+                public void acceptMember(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String dstName) {
+                    members.add(new @NotNull String[] {srcOwner, srcName, srcDesc, dstName});
+                }
+            });
+            if (!enumerable) {
+                return null;
+            }
+            hopClasses.add(classes);
+            hopMembers.add(members);
+        }
+
+        // For each lookup, obtain the inverse class mappings as well as the inverse member mappings,
+        // the latter being keyed by the owner, name and descriptor in the destination namespace of the lookup.
+        StringBuilder sharedBuilder = new StringBuilder();
+        List<SimpleMappingLookup> inverseClasses = new ArrayList<>();
+        List<Map<String, String>> inverseMembers = new ArrayList<>();
+        for (int i = 0; i < lookups.size(); i++) {
+            SimpleMappingLookup forward = new SimpleMappingLookup();
+            SimpleMappingLookup inverse = new SimpleMappingLookup();
+            for (Map.Entry<String, String> e : hopClasses.get(i).entrySet()) {
+                forward.remapClass(e.getKey(), e.getValue());
+                inverse.remapClass(e.getValue(), e.getKey());
+            }
+            Map<String, String> inverseMemberMap = new HashMap<>();
+            for (@NotNull String[] member : hopMembers.get(i)) {
+                String dstOwner = forward.getRemappedClassName(member[0]);
+                String dstDesc = ComposedMappingLookup.remapDesc(forward, member[2], sharedBuilder);
+                inverseMemberMap.put(ComposedMappingLookup.getMemberKey(dstOwner, member[3], dstDesc), member[1]);
+            }
+            inverseClasses.add(inverse);
+            inverseMembers.add(inverseMemberMap);
+        }
+
+        // Translate all keys back to the source namespace of the chain
+        Set<String> classKeys = new HashSet<>();
+        Map<String, @NotNull String[]> memberKeys = new HashMap<>();
+        for (int i = 0; i < lookups.size(); i++) {
+            for (String className : hopClasses.get(i).keySet()) {
+                for (int j = i - 1; j >= 0; j--) {
+                    className = inverseClasses.get(j).getRemappedClassName(className);
+                }
+                classKeys.add(className);
+            }
+            for (@NotNull String[] member : hopMembers.get(i)) {
+                String owner = member[0];
+                String name = member[1];
+                String desc = member[2];
+                for (int j = i - 1; j >= 0; j--) {
+                    name = inverseMembers.get(j).getOrDefault(ComposedMappingLookup.getMemberKey(owner, name, desc), name);
+                    owner = inverseClasses.get(j).getRemappedClassName(owner);
+                    desc = ComposedMappingLookup.remapDesc(inverseClasses.get(j), desc, sharedBuilder);
+                }
+                memberKeys.put(ComposedMappingLookup.getMemberKey(owner, name, desc), new @NotNull String[] {owner, name, desc});
+            }
+        }
+
+        // Query the chain once for every key
+        ChainMappingLookup chain = new ChainMappingLookup(lookups.toArray(new @NotNull MappingLookup[0]));
+        Map<String, String> classes = new HashMap<>();
+        Map<String, String> fields = new HashMap<>();
+        Map<String, String> methods = new HashMap<>();
+        for (String className : classKeys) {
+            String dstName = chain.getRemappedClassName(className);
+            if (!dstName.equals(className)) {
+                classes.put(className, dstName);
+            }
+        }
+        for (Map.Entry<String, @NotNull String[]> e : memberKeys.entrySet()) {
+            @NotNull String[] member = e.getValue();
+            if (member[2].codePointAt(0) == '(') {
+                String dstName = chain.getRemappedMethodName(member[0], member[1], member[2]);
+                if (!dstName.equals(member[1])) {
+                    methods.put(e.getKey(), dstName);
+                }
+            } else {
+                String dstName = chain.getRemappedFieldName(member[0], member[1], member[2]);
+                if (!dstName.equals(member[1])) {
+                    fields.put(e.getKey(), dstName);
+                }
+            }
+        }
+
+        ComposedMappingLookup.LOGGER.debug("Composed {} lookups into {} class, {} field and {} method mappings in {} ms.",
+                lookups.size(), classes.size(), fields.size(), methods.size(), System.currentTimeMillis() - start);
+        return new ComposedMappingLookup(classes, fields, methods);
+    }
+
+    @NotNull
+    static String getMemberKey(@NotNull String owner, @NotNull String name, @NotNull String desc) {
+        return owner + ' ' + name + ' ' + desc;
+    }
+
+    /**
+     * Reads a composed lookup written through {@link #write(Path, String)}.
+     *
+     * @param file The file to read
+     * @param fingerprint The fingerprint of the inputs of the composed lookup
+     * @return The read lookup, or null if the file does not exist, is malformed or has a different fingerprint.
+     */
+    @Nullable
+    public static ComposedMappingLookup read(@NotNull Path file, @NotNull String fingerprint) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != ComposedMappingLookup.MAGIC || in.readInt() != ComposedMappingLookup.VERSION
+                    || !in.readUTF().equals(fingerprint)) {
+                return null;
+            }
+            Map<String, String> classes = ComposedMappingLookup.readTable(in);
+            Map<String, String> fields = ComposedMappingLookup.readTable(in);
+            Map<String, String> methods = ComposedMappingLookup.readTable(in);
+            return new ComposedMappingLookup(classes, fields, methods);
+        } catch (IOException e) {
+            ComposedMappingLookup.LOGGER.warn("Unable to read composed mappings from {}", file, e);
+            return null;
+        }
+    }
+
+    @NotNull
+    private static Map<String, String> readTable(@NotNull DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> table = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            table.put(in.readUTF(), in.readUTF());
+        }
+        return table;
+    }
+
+    @NotNull
+    static String remapDesc(@NotNull MappingLookup lookup, @NotNull String desc, @NotNull StringBuilder sharedBuilder) {
+        if (desc.codePointAt(0) == '(') {
+            return Remapper.getRemappedMethodDescriptor(lookup, desc, sharedBuilder);
+        } else {
+            return Remapper.getRemappedFieldDescriptor(lookup, desc, sharedBuilder);
+        }
+    }
+
+    private static void writeTable(@NotNull DataOutputStream out, @NotNull Map<String, String> table) throws IOException {
+        out.writeInt(table.size());
+        for (Map.Entry<String, String> e : table.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    @NotNull
+    private final Map<String, String> classes;
+    @NotNull
+    private final Map<String, String> fields;
+    @NotNull
+    private final Map<String, String> methods;
+
+    private ComposedMappingLookup(@NotNull Map<String, String> classes, @NotNull Map<String, String> fields, @NotNull Map<String, String> methods) {
+        this.classes = classes;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedClassName(@NotNull String srcName) {
+        return this.classes.getOrDefault(srcName, srcName);
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedClassNameFast(@NotNull String srcName) {
+        return this.classes.get(srcName);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.fields.getOrDefault(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc), srcName);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.methods.getOrDefault(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc), srcName);
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedParameterName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, int paramIndex, boolean isStatic) {
+        // Mirrors ChainMappingLookup#getRemappedParameterName, which yields the remapped name of the method
+        return this.getRemappedMethodName(srcOwner, srcName, srcDesc);
+    }
+
+    @Override
+    public String toString() {
+        return "Composed Mapping Lookup [classes=" + this.classes.size() + ",fields=" + this.fields.size() + ",methods=" + this.methods.size() + "]";
+    }
+
+    /**
+     * Writes the composed lookup to disk so it can be read again via {@link #read(Path, String)}.
+     *
+     * @param file The file to write to
+     * @param fingerprint The fingerprint of the inputs of the composed lookup
+     * @throws IOException If the file could not be written
+     */
+    public void write(@NotNull Path file, @NotNull String fingerprint) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(ComposedMappingLookup.MAGIC);
+            out.writeInt(ComposedMappingLookup.VERSION);
+            out.writeUTF(fingerprint);
+            ComposedMappingLookup.writeTable(out, this.classes);
+            ComposedMappingLookup.writeTable(out, this.fields);
+            ComposedMappingLookup.writeTable(out, this.methods);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
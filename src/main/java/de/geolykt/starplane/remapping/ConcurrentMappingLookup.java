@@ -0,0 +1,66 @@
+package de.geolykt.starplane.remapping;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.stianloader.remapper.MappingLookup;
+
+/**
+ * A {@link MappingLookup} which can be shared across threads, memoizing the results of a delegate lookup
+ * that would otherwise be queried over and over again by the threads.
+ *
+ * <p>All results are memoized in concurrent maps, so repeated queries never touch the delegate.
+ * Queries that are not yet memoized are forwarded to the delegate, whereby only concurrent queries
+ * of the same key wait on each other. As such, the delegate must support being queried concurrently as long
+ * as it is not mutated (which is the case for lookups that only read precomputed tables), and must not be mutated
+ * as long as this lookup is in use. Should the delegate need to be mutated, a new instance needs to be created afterwards.
+ */
+public class ConcurrentMappingLookup implements MappingLookup {
+
+    @NotNull
+    private final Map<String, String> classNames = new ConcurrentHashMap<>();
+    @NotNull
+    private final MappingLookup delegate;
+    @NotNull
+    private final Map<String, String> fieldNames = new ConcurrentHashMap<>();
+    @NotNull
+    private final Map<String, String> methodNames = new ConcurrentHashMap<>();
+    @NotNull
+    private final Map<String, Optional<String>> parameterNames = new ConcurrentHashMap<>();
+
+    public ConcurrentMappingLookup(@NotNull MappingLookup delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedClassName(@NotNull String srcName) {
+        return this.classNames.computeIfAbsent(srcName, this.delegate::getRemappedClassName);
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedFieldName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        String key = srcOwner + '.' + srcName + ' ' + srcDesc;
+        return this.fieldNames.computeIfAbsent(key, (ignore) -> this.delegate.getRemappedFieldName(srcOwner, srcName, srcDesc));
+    }
+
+    @Override
+    @NotNull
+    public String getRemappedMethodName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        String key = srcOwner + '.' + srcName + srcDesc;
+        return this.methodNames.computeIfAbsent(key, (ignore) -> this.delegate.getRemappedMethodName(srcOwner, srcName, srcDesc));
+    }
+
+    @Override
+    @Nullable
+    public String getRemappedParameterName(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, int paramIndex, boolean isStatic) {
+        String key = srcOwner + '.' + srcName + srcDesc + '@' + paramIndex + (isStatic ? 's' : 'v');
+        return this.parameterNames.computeIfAbsent(key, (ignore) -> {
+            return Optional.ofNullable(this.delegate.getRemappedParameterName(srcOwner, srcName, srcDesc, paramIndex, isStatic));
+        }).orElse(null);
+    }
+}
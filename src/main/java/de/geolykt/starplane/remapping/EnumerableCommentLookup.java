@@ -0,0 +1,34 @@
+package de.geolykt.starplane.remapping;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link CommentLookup} whose comments can be enumerated, which is required in order to
+ * index the comments of a chain of lookups through an {@link IndexedCommentLookup}.
+ */
+public interface EnumerableCommentLookup extends CommentLookup {
+
+    interface CommentConsumer {
+        void acceptClassComment(@NotNull String srcName, @NotNull String comment);
+
+        /**
+         * Consumes the comment of a field or method. Whether the member is a field or a method
+         * can be derived from the descriptor.
+         *
+         * @param srcOwner The owner of the member in the source namespace
+         * @param srcName The name of the member in the source namespace
+         * @param srcDesc The descriptor of the member in the source namespace
+         * @param comment The comment of the member
+         */
+        void acceptMemberComment(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String comment);
+    }
+
+    /**
+     * Passes all class and member comments of this lookup to the given consumer, keyed by the names
+     * under which they would be looked up.
+     *
+     * @param consumer The consumer to pass the comments to
+     * @return False if the comments cannot be fully enumerated, in which case the lookup cannot be indexed.
+     */
+    boolean enumerateComments(@NotNull CommentConsumer consumer);
+}
@@ -0,0 +1,37 @@
+package de.geolykt.starplane.remapping;
+
+import org.jetbrains.annotations.NotNull;
+import org.stianloader.remapper.MappingLookup;
+
+/**
+ * A {@link MappingLookup} whose mappings can be enumerated, which is required in order to
+ * flatten a chain of lookups into a {@link ComposedMappingLookup}.
+ */
+public interface EnumerableMappingLookup extends MappingLookup {
+
+    interface MappingEntryConsumer {
+        void acceptClass(@NotNull String srcName, @NotNull String dstName);
+
+        /**
+         * Consumes the mapping of a field or method. Whether the member is a field or a method
+         * can be derived from the descriptor.
+         *
+         * @param srcOwner The owner of the member in the source namespace
+         * @param srcName The name of the member in the source namespace
+         * @param srcDesc The descriptor of the member in the source namespace
+         * @param dstName The name of the member in the destination namespace
+         */
+        void acceptMember(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String dstName);
+    }
+
+    /**
+     * Passes all class and member mappings of this lookup to the given consumer.
+     * The mappings must be the exact mappings that are being looked up, that is for every
+     * enumerated mapping, querying the lookup with the source names must yield the destination name
+     * while querying the lookup with a member or class that is not enumerated must yield the source name.
+     *
+     * @param consumer The consumer to pass the mappings to
+     * @return False if the mappings cannot be fully enumerated, in which case the lookup cannot be composed.
+     */
+    boolean enumerateMappings(@NotNull MappingEntryConsumer consumer);
+}
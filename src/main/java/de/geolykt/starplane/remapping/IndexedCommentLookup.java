@@ -0,0 +1,149 @@
+package de.geolykt.starplane.remapping;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stianloader.remapper.MappingLookup;
+import org.stianloader.remapper.SimpleMappingLookup;
+
+/**
+ * An index of the comments provided by a {@link ChainMappingLookup}, where the comment of every class and member
+ * is obtained through a single table lookup using the names of the source namespace of the first lookup in the chain.
+ *
+ * <p>The index is computed by translating the keys of the comments of every lookup in the chain back into the
+ * source namespace of the chain, in the same way {@link ComposedMappingLookup} translates the keys of mappings.
+ * As comments of later lookups in the chain replace the comments of earlier lookups, the index yields the exact
+ * same comments as the chain it was built from.
+ */
+public class IndexedCommentLookup implements CommentLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedCommentLookup.class);
+
+    /**
+     * Indexes the comments of the given chain of lookups.
+     *
+     * @param lookups The lookups in the order in which they would be passed to {@link ChainMappingLookup#ChainMappingLookup(MappingLookup...)}.
+     * @return The indexed lookup, or null if the mappings or comments of any of the lookups cannot be enumerated.
+     */
+    @Nullable
+    public static IndexedCommentLookup index(@NotNull List<@NotNull MappingLookup> lookups) {
+        long start = System.currentTimeMillis();
+
+        Map<String, String> classComments = new HashMap<>();
+        Map<String, String> memberComments = new HashMap<>();
+        List<SimpleMappingLookup> inverseClasses = new ArrayList<>();
+        List<Map<String, String>> inverseMembers = new ArrayList<>();
+        StringBuilder sharedBuilder = new StringBuilder();
+
+        for (int hop = 0; hop < lookups.size(); hop++) {
+            MappingLookup lookup = lookups.get(hop);
+            if (!(lookup instanceof EnumerableMappingLookup)) {
+                return null;
+            }
+
+            // Comments are looked up before the lookup remaps the names, so only the inverse mappings
+            // of the preceding lookups are required to translate them back to the source namespace of the chain
+            if (lookup instanceof EnumerableCommentLookup) {
+                boolean enumerable = ((EnumerableCommentLookup) lookup).enumerateComments(new EnumerableCommentLookup.CommentConsumer() {
+                    @Override
+                    public void acceptClassComment(@NotNull String srcName, @NotNull String comment) {
+                        for (int i = inverseClasses.size() - 1; i >= 0; i--) {
+                            srcName = inverseClasses.get(i).getRemappedClassName(srcName);
+                        }
+                        classComments.put(srcName, comment);
+                    }
+
+                    @Override
+                    public void acceptMemberComment(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String comment) {
+                        for (int i = inverseClasses.size() - 1; i >= 0; i--) {
+                            srcName = inverseMembers.get(i).getOrDefault(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc), srcName);
+                            srcOwner = inverseClasses.get(i).getRemappedClassName(srcOwner);
+                            srcDesc = ComposedMappingLookup.remapDesc(inverseClasses.get(i), srcDesc, sharedBuilder);
+                        }
+                        memberComments.put(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc), comment);
+                    }
+                });
+                if (!enumerable) {
+                    return null;
+                }
+            } else if (lookup instanceof CommentLookup) {
+                return null;
+            }
+
+            if (hop == lookups.size() - 1) {
+                // No comments need to be translated through the last lookup
+                break;
+            }
+
+            SimpleMappingLookup forward = new SimpleMappingLookup();
+            SimpleMappingLookup inverse = new SimpleMappingLookup();
+            List<@NotNull String[]> members = new ArrayList<>();
+            boolean enumerable = ((EnumerableMappingLookup) lookup).enumerateMappings(new EnumerableMappingLookup.MappingEntryConsumer() {
+                @Override
+                public void acceptClass(@NotNull String srcName, @NotNull String dstName) {
+                    forward.remapClass(srcName, dstName);
+                    inverse.remapClass(dstName, srcName);
+                }
+
+                @Override
+                public void acceptMember(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc, @NotNull String dstName) {
+                    members.add(new @NotNull String[] {srcOwner, srcName, srcDesc, dstName});
+                }
+            });
+            if (!enumerable) {
+                return null;
+            }
+            Map<String, String> inverseMemberMap = new HashMap<>();
+            for (@NotNull String[] member : members) {
+                String dstOwner = forward.getRemappedClassName(member[0]);
+                String dstDesc = ComposedMappingLookup.remapDesc(forward, member[2], sharedBuilder);
+                inverseMemberMap.put(ComposedMappingLookup.getMemberKey(dstOwner, member[3], dstDesc), member[1]);
+            }
+            inverseClasses.add(inverse);
+            inverseMembers.add(inverseMemberMap);
+        }
+
+        IndexedCommentLookup.LOGGER.debug("Indexed {} class and {} member comments of {} lookups in {} ms.",
+                classComments.size(), memberComments.size(), lookups.size(), System.currentTimeMillis() - start);
+        return new IndexedCommentLookup(classComments, memberComments);
+    }
+
+    @NotNull
+    private final Map<String, String> classComments;
+    @NotNull
+    private final Map<String, String> memberComments;
+
+    private IndexedCommentLookup(@NotNull Map<String, String> classComments, @NotNull Map<String, String> memberComments) {
+        this.classComments = classComments;
+        this.memberComments = memberComments;
+    }
+
+    @Override
+    @Nullable
+    public String getClassComment(@NotNull String className) {
+        return this.classComments.get(className);
+    }
+
+    @Override
+    @Nullable
+    public String getFieldComment(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.memberComments.get(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc));
+    }
+
+    @Override
+    @Nullable
+    public String getMethodComment(@NotNull String srcOwner, @NotNull String srcName, @NotNull String srcDesc) {
+        return this.memberComments.get(ComposedMappingLookup.getMemberKey(srcOwner, srcName, srcDesc));
+    }
+
+    @Override
+    public String toString() {
+        return "Indexed Comment Lookup [classes=" + this.classComments.size() + ",members=" + this.memberComments.size() + "]";
+    }
+}
@@ -1,10 +1,8 @@
 package de.geolykt.starplane.remapping;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.zip.CheckedInputStream;
-import java.util.zip.Checksum;
+import java.security.MessageDigest;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -12,6 +10,8 @@ import net.fabricmc.mappingio.format.MappingFormat;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.fabricmc.mappingio.tree.VisitableMappingTree;
 
+import de.geolykt.starplane.ResidentCache;
+import de.geolykt.starplane.Utils;
 import de.geolykt.starplane.remapping.MIOContainerFormat.MappingContainer;
 
 public class MIOMappingTreeProvider {
@@ -30,23 +30,37 @@ public class MIOMappingTreeProvider {
         this.path = path;
     }
 
+    /**
+     * Obtains the mapping tree, reading it if it has not been read by the current daemon yet (or if the file has
+     * changed since). The returned tree may be shared with other callers and thus must not be modified.
+     *
+     * @return The mapping tree
+     * @throws IOException If the mappings file could not be read
+     */
     @NotNull
     public VisitableMappingTree get() throws IOException {
-        VisitableMappingTree tree = new MemoryMappingTree();
-        try {
-            this.format.read(this.path, tree);
-        } catch (IOException e) {
-            throw new IOException("Unable to consume supplementary mappings file at " + this.path + " using format " + this.format.toString(), e);
-        }
-        tree.reset();
-        return tree;
+        String fingerprint = this.format.toString() + '-' + ResidentCache.getFileFingerprint(this.path);
+        return ResidentCache.get("mapping tree", this.path, fingerprint, () -> {
+            VisitableMappingTree tree = new MemoryMappingTree();
+            try {
+                this.format.read(this.path, tree);
+            } catch (IOException e) {
+                throw new IOException("Unable to consume supplementary mappings file at " + this.path + " using format " + this.format.toString(), e);
+            }
+            tree.reset();
+            return tree;
+        });
     }
 
-    public void checksum(@NotNull Checksum csum, byte @NotNull[] exhaustBuffer) throws IOException {
-        csum.update(this.format.containerFormat.ordinal());
-        csum.update(this.format.coreFormat.ordinal());
-        try (CheckedInputStream cis = new CheckedInputStream(Files.newInputStream(this.path), csum)) {
-            while (cis.read(exhaustBuffer) != -1); // Discard all read bytes
-        }
+    /**
+     * Feeds the format as well as the name, size and contents of the mappings file into a digest.
+     *
+     * @param digest The digest to update
+     * @throws IOException If the mappings file could not be read
+     */
+    public void digest(@NotNull MessageDigest digest) throws IOException {
+        digest.update((byte) this.format.containerFormat.ordinal());
+        digest.update((byte) this.format.coreFormat.ordinal());
+        Utils.digestFile(digest, this.path);
     }
 }
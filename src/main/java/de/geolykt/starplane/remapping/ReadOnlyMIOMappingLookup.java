@@ -2,7 +2,6 @@ package de.geolykt.starplane.remapping;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.stianloader.remapper.MappingLookup;
 import org.stianloader.remapper.MappingSink;
 import org.stianloader.remapper.MemberRef;
 
@@ -14,7 +13,7 @@ import net.fabricmc.mappingio.tree.MappingTreeView.MethodMappingView;
 
 import de.geolykt.starloader.deobf.DescString;
 
-public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink, CommentLookup {
+public class ReadOnlyMIOMappingLookup implements EnumerableMappingLookup, MappingSink, EnumerableCommentLookup {
     private final int dstNamespace;
     @NotNull
     private final MappingTreeView mappingIOTree;
@@ -29,6 +28,86 @@ public class ReadOnlyMIOMappingLookup implements MappingLookup, MappingSink, Com
         }
     }
 
+    @Override
+    public boolean enumerateComments(@NotNull CommentConsumer consumer) {
+        for (ClassMappingView cmv : this.mappingIOTree.getClasses()) {
+            String srcOwner = cmv.getName(this.srcNamespace);
+            if (srcOwner == null) {
+                // Cannot be looked up in the source namespace
+                continue;
+            }
+            String classComment = cmv.getComment();
+            if (classComment != null) {
+                consumer.acceptClassComment(srcOwner, classComment);
+            }
+            for (FieldMappingView fmv : cmv.getFields()) {
+                String srcName = fmv.getName(this.srcNamespace);
+                String comment = fmv.getComment();
+                if (srcName == null || comment == null) {
+                    continue;
+                }
+                String srcDesc = fmv.getDesc(this.srcNamespace);
+                if (srcDesc == null) {
+                    return false;
+                }
+                consumer.acceptMemberComment(srcOwner, srcName, srcDesc, comment);
+            }
+            for (MethodMappingView mmv : cmv.getMethods()) {
+                String srcName = mmv.getName(this.srcNamespace);
+                String comment = mmv.getComment();
+                if (srcName == null || comment == null) {
+                    continue;
+                }
+                String srcDesc = mmv.getDesc(this.srcNamespace);
+                if (srcDesc == null) {
+                    return false;
+                }
+                consumer.acceptMemberComment(srcOwner, srcName, srcDesc, comment);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean enumerateMappings(@NotNull MappingEntryConsumer consumer) {
+        for (ClassMappingView cmv : this.mappingIOTree.getClasses()) {
+            String srcOwner = cmv.getName(this.srcNamespace);
+            if (srcOwner == null) {
+                // Cannot be looked up in the source namespace
+                continue;
+            }
+            String dstOwner = cmv.getName(this.dstNamespace);
+            if (dstOwner != null) {
+                consumer.acceptClass(srcOwner, dstOwner);
+            }
+            for (FieldMappingView fmv : cmv.getFields()) {
+                String srcName = fmv.getName(this.srcNamespace);
+                String dstName = fmv.getName(this.dstNamespace);
+                if (srcName == null || dstName == null) {
+                    continue;
+                }
+                String srcDesc = fmv.getDesc(this.srcNamespace);
+                if (srcDesc == null) {
+                    return false;
+                }
+                consumer.acceptMember(srcOwner, srcName, srcDesc, dstName);
+            }
+            for (MethodMappingView mmv : cmv.getMethods()) {
+                String srcName = mmv.getName(this.srcNamespace);
+                String dstName = mmv.getName(this.dstNamespace);
+                if (srcName == null || dstName == null) {
+                    continue;
+                }
+                String srcDesc = mmv.getDesc(this.srcNamespace);
+                if (srcDesc == null) {
+                    return false;
+                }
+                consumer.acceptMember(srcOwner, srcName, srcDesc, dstName);
+            }
+        }
+        return true;
+    }
+
     @Override
     @Nullable
     public String getClassComment(@NotNull String className) {
@@ -1,26 +1,114 @@
 package de.geolykt.starplane.remapping;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stianloader.remapper.MemberRef;
 import org.stianloader.remapper.Remapper;
 import org.stianloader.remapper.SimpleMappingLookup;
 
 import de.geolykt.starplane.Utils;
 
-public class StarplaneMappingLookup extends SimpleMappingLookup {
+/**
+ * A {@link SimpleMappingLookup} that is filled in with the contents of a tiny v1 file.
+ *
+ * <p>As parsing tiny files is comparatively slow, the mappings of both directions are stored in a compiled
+ * binary form next to the tiny file (see {@link #compile(Path)}). The compiled form consists of a string table
+ * followed by the class and member records of both directions. The records are kept in the order of the tiny file,
+ * so that the last mapping of a source name takes precedence just like when parsing the tiny file directly.
+ * It is read through a buffered stream when loading the lookup, so that the file is not held open (or mapped)
+ * while it might be recompiled, and is used for as long as the size and modification time of the tiny file do not change.
+ */
+public class StarplaneMappingLookup extends SimpleMappingLookup implements EnumerableMappingLookup {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(StarplaneMappingLookup.class);
+    private static final int MAGIC = 0x53504D43; // "SPMC"
+    private static final int VERSION = 2;
+
+    /**
+     * Compiles the given tiny file into its binary form, which will be used by {@link #load()}
+     * until the tiny file is modified.
+     *
+     * @param map The tiny v1 file to compile
+     * @throws IOException If the tiny file could not be read or the compiled form could not be written
+     */
+    public static void compile(@NotNull Path map) throws IOException {
+        StarplaneMappingLookup forward = new StarplaneMappingLookup(map, false);
+        forward.loadText();
+        StarplaneMappingLookup reversed = new StarplaneMappingLookup(map, true);
+        reversed.loadText();
+
+        List<@NotNull List<@NotNull String[]>> sections = Arrays.asList(forward.classMappings, forward.memberMappings, reversed.classMappings, reversed.memberMappings);
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        for (List<@NotNull String[]> section : sections) {
+            for (@NotNull String[] record : section) {
+                for (String string : record) {
+                    stringIds.putIfAbsent(string, stringIds.size());
+                }
+            }
+        }
+
+        Path compiled = StarplaneMappingLookup.getCompiledPath(map);
+        Path temp = compiled.resolveSibling(compiled.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(StarplaneMappingLookup.MAGIC);
+            out.writeInt(StarplaneMappingLookup.VERSION);
+            out.writeLong(Files.size(map));
+            out.writeLong(Files.getLastModifiedTime(map).toMillis());
+            out.writeInt(stringIds.size());
+            for (String string : stringIds.keySet()) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            for (List<@NotNull String[]> section : sections) {
+                out.writeInt(section.size());
+                for (@NotNull String[] record : section) {
+                    for (String string : record) {
+                        out.writeInt(stringIds.get(string));
+                    }
+                }
+            }
+        }
+        Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Obtains the location of the compiled binary form of a tiny file.
+     *
+     * @param map The tiny file
+     * @return The location of the compiled form, which is a sibling of the tiny file.
+     */
+    @NotNull
+    public static Path getCompiledPath(@NotNull Path map) {
+        return map.resolveSibling(map.getFileName() + ".bin");
+    }
+
+    @NotNull
+    private final List<@NotNull String[]> classMappings = new ArrayList<>();
     @NotNull
     private final Path map;
+    @NotNull
+    private final List<@NotNull String[]> memberMappings = new ArrayList<>();
 
     private final boolean reverse;
     private final boolean ignoreNonExistentFiles;
@@ -42,6 +130,79 @@ public class StarplaneMappingLookup extends SimpleMappingLookup {
             return this;
         }
 
+        if (this.loadCompiled()) {
+            return this;
+        }
+
+        try {
+            StarplaneMappingLookup.compile(this.map);
+            if (this.loadCompiled()) {
+                return this;
+            }
+        } catch (IOException e) {
+            StarplaneMappingLookup.LOGGER.warn("Unable to compile tiny file {}; parsing it directly instead.", this.map, e);
+        }
+
+        this.loadText();
+        return this;
+    }
+
+    private boolean loadCompiled() throws IOException {
+        Path compiled = StarplaneMappingLookup.getCompiledPath(this.map);
+        if (!Files.isRegularFile(compiled)) {
+            return false;
+        }
+
+        List<@NotNull String[]> classMappings = new ArrayList<>();
+        List<@NotNull String[]> memberMappings = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(compiled)))) {
+            if (in.readInt() != StarplaneMappingLookup.MAGIC || in.readInt() != StarplaneMappingLookup.VERSION
+                    || in.readLong() != Files.size(this.map) || in.readLong() != Files.getLastModifiedTime(this.map).toMillis()) {
+                return false;
+            }
+
+            @NotNull String[] strings = new @NotNull String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                strings[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+
+            if (this.reverse) {
+                // Skip the sections of the forward direction
+                for (int i = in.readInt() * 2; i > 0; i--) {
+                    in.readInt();
+                }
+                for (int i = in.readInt() * 4; i > 0; i--) {
+                    in.readInt();
+                }
+            }
+
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                classMappings.add(new @NotNull String[] {strings[in.readInt()], strings[in.readInt()]});
+            }
+            int memberCount = in.readInt();
+            for (int i = 0; i < memberCount; i++) {
+                memberMappings.add(new @NotNull String[] {strings[in.readInt()], strings[in.readInt()], strings[in.readInt()], strings[in.readInt()]});
+            }
+        } catch (EOFException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            StarplaneMappingLookup.LOGGER.warn("Compiled mappings {} are malformed; they will be recompiled.", compiled, e);
+            return false;
+        }
+
+        for (@NotNull String[] classMapping : classMappings) {
+            super.remapClass(classMapping[0], classMapping[1]);
+        }
+        for (@NotNull String[] memberMapping : memberMappings) {
+            super.remapMember(new MemberRef(memberMapping[0], memberMapping[1], memberMapping[2]), memberMapping[3]);
+        }
+        this.classMappings.addAll(classMappings);
+        this.memberMappings.addAll(memberMappings);
+        return true;
+    }
+
+    private void loadText() throws IOException {
         // For reversed mappings to take effect correctly, we need to "delay" the application of member mappings
         // until all classes were mapped - as this could have an effect on owner name and the member descriptor
         // of the target namespace (which acts as the source namespace in reversed mappings - it's confusing, I know).
@@ -103,8 +264,10 @@ public class StarplaneMappingLookup extends SimpleMappingLookup {
                     if (this.reverse) {
                         super.remapClass(colums[2], colums[1]);
                         classLookup.remapClass(colums[1], colums[2]);
+                        this.classMappings.add(new @NotNull String[] {colums[2], colums[1]});
                     } else {
                         super.remapClass(colums[1], colums[2]);
+                        this.classMappings.add(new @NotNull String[] {colums[1], colums[2]});
                     }
                 } else if (type.equals("METHOD")) {
                     if (colums.length != 5) {
@@ -149,8 +312,19 @@ public class StarplaneMappingLookup extends SimpleMappingLookup {
             }
 
             super.remapMember(new MemberRef(srcOwner, srcName, srcDesc), dstName);
+            this.memberMappings.add(new @NotNull String[] {srcOwner, srcName, srcDesc, dstName});
         }
-        return this;
+    }
+
+    @Override
+    public boolean enumerateMappings(@NotNull MappingEntryConsumer consumer) {
+        for (@NotNull String[] classMapping : this.classMappings) {
+            consumer.acceptClass(classMapping[0], classMapping[1]);
+        }
+        for (@NotNull String[] memberMapping : this.memberMappings) {
+            consumer.acceptMember(memberMapping[0], memberMapping[1], memberMapping[2], memberMapping[3]);
+        }
+        return true;
     }
 
     @Override
@@ -0,0 +1,343 @@
+package de.geolykt.starplane.sourcegen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the decompiled sources and line mappings of individual top-level classes (including their inner classes),
+ * which allows to only decompile the classes that changed since the last decompilation.
+ *
+ * <p>Each top-level class is keyed by a hash of its bytes and the bytes of its inner classes, as well as the bytes of all classes
+ * that are directly referenced by the constant pool of either. Sources are stored by the name of the class they were emitted for,
+ * alongside the key of the top-level class that the class belongs to. Changes to classes that are referenced indirectly
+ * are not picked up, which is acceptable as the decompiled source of a class rarely depends on them.
+ * The cache as a whole is additionally stamped with a fingerprint of everything else that influences the decompiled
+ * sources (such as the javadocs and the libraries), a change of which discards all entries.
+ */
+public final class DecompilationCache {
+
+    /**
+     * A decompiled top-level class.
+     */
+    public static final class Entry {
+        @NotNull
+        private final String key;
+        private final int @Nullable[] lineMapping;
+        private final byte @NotNull[] source;
+
+        private Entry(@NotNull String key, byte @NotNull[] source, int @Nullable[] lineMapping) {
+            this.key = key;
+            this.source = source;
+            this.lineMapping = lineMapping;
+        }
+
+        /**
+         * Obtains the line mapping of the class, where {@code mapping[i * 2]} is the original line number
+         * and {@code mapping[i * 2 + 1]} the line number within the decompiled source.
+         *
+         * @return The line mapping, or null if the decompiler did not emit any.
+         */
+        public int @Nullable[] getLineMapping() {
+            return this.lineMapping;
+        }
+
+        /**
+         * Obtains the UTF-8 encoded decompiled source of the class.
+         *
+         * @return The decompiled source
+         */
+        public byte @NotNull[] getSource() {
+            return this.source;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecompilationCache.class);
+    private static final int MAGIC = 0x44434D50; // "DCMP"
+    private static final int VERSION = 1;
+
+    /**
+     * Computes the keys of all top-level classes.
+     *
+     * @param classes The bytes of all classes, keyed by their internal name
+     * @param outermostClasses The outermost class of every class, as obtained through {@link #getOutermostClasses(Map)}
+     * @return The keys of the top-level classes, keyed by the internal name of the top-level class
+     */
+    @NotNull
+    public static Map<@NotNull String, @NotNull String> computeKeys(@NotNull Map<@NotNull String, byte @NotNull[]> classes, @NotNull Map<@NotNull String, @NotNull String> outermostClasses) {
+        Map<String, byte[]> hashes = new HashMap<>();
+        MessageDigest digest = DecompilationCache.newDigest();
+        for (Map.Entry<@NotNull String, byte @NotNull[]> e : classes.entrySet()) {
+            hashes.put(e.getKey(), digest.digest(e.getValue()));
+        }
+
+        Map<String, TreeSet<String>> members = new HashMap<>();
+        Map<String, TreeSet<String>> dependencies = new HashMap<>();
+        for (Map.Entry<@NotNull String, byte @NotNull[]> e : classes.entrySet()) {
+            String outermost = outermostClasses.get(e.getKey());
+            members.computeIfAbsent(outermost, (ignore) -> new TreeSet<>()).add(e.getKey());
+            TreeSet<String> deps = dependencies.computeIfAbsent(outermost, (ignore) -> new TreeSet<>());
+            for (String reference : DecompilationCache.getReferencedClasses(new ClassReader(e.getValue()))) {
+                if (hashes.containsKey(reference)) {
+                    deps.add(reference);
+                }
+            }
+        }
+
+        Map<@NotNull String, @NotNull String> keys = new HashMap<>();
+        for (Map.Entry<String, TreeSet<String>> e : members.entrySet()) {
+            TreeSet<String> deps = dependencies.get(e.getKey());
+            deps.removeAll(e.getValue());
+            for (String member : e.getValue()) {
+                digest.update(member.getBytes(StandardCharsets.UTF_8));
+                digest.update(hashes.get(member));
+            }
+            digest.update((byte) 0);
+            for (String dependency : deps) {
+                digest.update(dependency.getBytes(StandardCharsets.UTF_8));
+                digest.update(hashes.get(dependency));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            keys.put(e.getKey(), hex.toString());
+        }
+        return keys;
+    }
+
+    @NotNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Obtains the outermost class of every class, that is the top-level class in the source file of which the class is declared.
+     * Outer classes are resolved first through the enclosing method attribute and then through the inner class attributes,
+     * which is the same order in which the line number rewrite resolves them.
+     *
+     * @param classes The bytes of all classes, keyed by their internal name
+     * @return The outermost class of all classes, keyed by the internal name of the class
+     */
+    @NotNull
+    public static Map<@NotNull String, @NotNull String> getOutermostClasses(@NotNull Map<@NotNull String, byte @NotNull[]> classes) {
+        Map<String, String> outerClasses = new HashMap<>();
+        for (Map.Entry<@NotNull String, byte @NotNull[]> e : classes.entrySet()) {
+            String name = e.getKey();
+            new ClassReader(e.getValue()).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitInnerClass(String innerName, String outerName, String simpleName, int access) {
+                    if (innerName.equals(name) && outerName != null) {
+                        outerClasses.putIfAbsent(name, outerName);
+                    }
+                }
+
+                @Override
+                public void visitOuterClass(String owner, String methodName, String methodDescriptor) {
+                    outerClasses.put(name, owner);
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+
+        Map<@NotNull String, @NotNull String> outermostClasses = new HashMap<>();
+        for (String name : classes.keySet()) {
+            String outermost = name;
+            // Bound the walk by the amount of classes in case of cyclic inner class attributes
+            for (int i = 0; i < classes.size(); i++) {
+                String outer = outerClasses.get(outermost);
+                if (outer == null || !classes.containsKey(outer)) {
+                    break;
+                }
+                outermost = outer;
+            }
+            outermostClasses.put(name, outermost);
+        }
+        return outermostClasses;
+    }
+
+    @NotNull
+    private static List<@NotNull String> getReferencedClasses(@NotNull ClassReader reader) {
+        List<@NotNull String> references = new ArrayList<>();
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // The second slot of long and double constants has no offset
+            if (offset == 0 || reader.readByte(offset - 1) != 7) { // CONSTANT_Class
+                continue;
+            }
+            String name = reader.readUTF8(offset, buffer);
+            if (name.codePointAt(0) == '[') {
+                int start = name.lastIndexOf('[') + 1;
+                if (name.charAt(start) != 'L') {
+                    continue;
+                }
+                name = name.substring(start + 1, name.length() - 1);
+            }
+            references.add(name);
+        }
+        return references;
+    }
+
+    /**
+     * Reads the cache from a file. An empty cache is returned if the file does not exist, cannot be read
+     * or was written with a different fingerprint.
+     *
+     * @param file The file to read from
+     * @param fingerprint The fingerprint of everything aside from the classes themselves that influences the decompiled sources
+     * @return The read cache
+     */
+    @NotNull
+    public static DecompilationCache read(@NotNull Path file, @NotNull String fingerprint) {
+        DecompilationCache cache = new DecompilationCache();
+        if (!Files.isRegularFile(file)) {
+            return cache;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != DecompilationCache.MAGIC || in.readInt() != DecompilationCache.VERSION || !in.readUTF().equals(fingerprint)) {
+                DecompilationCache.LOGGER.info("Decompilation cache at {} is outdated and will be discarded", file);
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String key = in.readUTF();
+                byte[] source = new byte[in.readInt()];
+                in.readFully(source);
+                int mappingLength = in.readInt();
+                int[] lineMapping = null;
+                if (mappingLength >= 0) {
+                    lineMapping = new int[mappingLength];
+                    for (int j = 0; j < mappingLength; j++) {
+                        lineMapping[j] = in.readInt();
+                    }
+                }
+                cache.entries.put(name, new Entry(key, source, lineMapping));
+            }
+        } catch (IOException e) {
+            DecompilationCache.LOGGER.warn("Unable to read the decompilation cache at {}; all classes will be decompiled", file, e);
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    @NotNull
+    private final Map<@NotNull String, @NotNull Entry> entries = new HashMap<>();
+
+    /**
+     * Obtains the cached decompiled class if it is up to date.
+     *
+     * @param name The internal name of the class
+     * @param key The current key of the top-level class the class belongs to, as computed through {@link #computeKeys(Map, Map)}
+     * @return The cached class, or null if the class is not cached or the cached class is outdated
+     */
+    @Nullable
+    public Entry get(@NotNull String name, @NotNull String key) {
+        Entry entry = this.entries.get(name);
+        if (entry == null || !entry.key.equals(key)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Obtains the names of all cached classes.
+     *
+     * @return The internal names of the cached classes in alphabetical order
+     */
+    @NotNull
+    public Set<@NotNull String> getClassNames() {
+        return new TreeSet<>(this.entries.keySet());
+    }
+
+    /**
+     * Stores a decompiled class in the cache, replacing any previous entry of the class.
+     *
+     * @param name The internal name of the class
+     * @param key The key of the top-level class the class belongs to, as computed through {@link #computeKeys(Map, Map)}
+     * @param source The UTF-8 encoded decompiled source of the class
+     * @param lineMapping The line mapping of the class or null if there is none
+     */
+    public void put(@NotNull String name, @NotNull String key, byte @NotNull[] source, int @Nullable[] lineMapping) {
+        this.entries.put(name, new Entry(key, source, lineMapping));
+    }
+
+    /**
+     * Removes all classes from the cache aside from the given classes.
+     *
+     * @param names The internal names of the classes to keep
+     */
+    public void retain(@NotNull Set<@NotNull String> names) {
+        this.entries.keySet().retainAll(names);
+    }
+
+    /**
+     * Writes the cache to a file, replacing the previous contents of the file.
+     *
+     * @param file The file to write to
+     * @param fingerprint The fingerprint of everything aside from the classes themselves that influences the decompiled sources
+     * @throws IOException If the file could not be written
+     */
+    public void write(@NotNull Path file, @NotNull String fingerprint) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        // Decompiled sources are highly redundant, so even the fastest compression level considerably reduces the size of the cache
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(temp), deflater)))) {
+            out.writeInt(DecompilationCache.MAGIC);
+            out.writeInt(DecompilationCache.VERSION);
+            out.writeUTF(fingerprint);
+            List<String> names = new ArrayList<>(this.entries.keySet());
+            Collections.sort(names);
+            out.writeInt(names.size());
+            for (String name : names) {
+                Entry entry = this.entries.get(name);
+                out.writeUTF(name);
+                out.writeUTF(entry.key);
+                out.writeInt(entry.source.length);
+                out.write(entry.source);
+                int[] lineMapping = entry.lineMapping;
+                if (lineMapping == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(lineMapping.length);
+                    for (int line : lineMapping) {
+                        out.writeInt(line);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
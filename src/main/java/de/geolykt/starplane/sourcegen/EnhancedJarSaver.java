@@ -6,10 +6,17 @@ import java.util.Map;
 
 import org.jetbrains.java.decompiler.main.decompiler.SingleFileSaver;
 
+/**
+ * A {@link SingleFileSaver} that additionally collects the line mappings of the decompiled classes.
+ *
+ * <p>Vineflower may save classes from several threads when decompiling with more than one thread.
+ * Writes to the underlying jar are thus synchronised, while the line mappings are put into the given map
+ * outside of the lock. The map therefore needs to support concurrent writes.
+ */
 public class EnhancedJarSaver extends SingleFileSaver {
 
     // mapping[i * 2] -> original line number; mapping[i * 2 + 1] -> new line number
-    private Map<String, int[]> lineMappings;
+    private final Map<String, int[]> lineMappings;
 
     public EnhancedJarSaver(File target, Map<String, int[]> lineMappings) {
         super(target);
@@ -17,10 +24,24 @@ public class EnhancedJarSaver extends SingleFileSaver {
     }
 
     @Override
-    public synchronized void saveClassEntry(String path, String archiveName, String qualifiedName,
+    public void saveClassEntry(String path, String archiveName, String qualifiedName,
             String entryName, String content, int[] mapping) {
-        super.saveClassEntry(path, archiveName, qualifiedName, entryName, content, mapping);
-        lineMappings.put(qualifiedName, mapping);
+        synchronized (this) {
+            super.saveClassEntry(path, archiveName, qualifiedName, entryName, content, mapping);
+        }
+        if (mapping != null) {
+            this.lineMappings.put(qualifiedName, mapping);
+        }
+    }
+
+    @Override
+    public synchronized void saveDirEntry(String path, String archiveName, String entryName) {
+        super.saveDirEntry(path, archiveName, entryName);
+    }
+
+    @Override
+    public synchronized void copyEntry(String source, String path, String archiveName, String entryName) {
+        super.copyEntry(source, path, archiveName, entryName);
     }
 
     @Override
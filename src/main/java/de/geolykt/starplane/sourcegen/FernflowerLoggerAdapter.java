@@ -1,15 +1,108 @@
 package de.geolykt.starplane.sourcegen;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Forwards the messages of the decompiler to SLF4J and measures the time spent processing each top-level class.
+ *
+ * <p>Vineflower processes classes on several threads when decompiling with more than one thread, but every class
+ * is processed by a single thread from start to end. The class that is currently being processed is thus tracked per thread.
+ */
 public class FernflowerLoggerAdapter extends IFernflowerLogger {
 
+    /**
+     * A listener that is notified whenever the decompiler finished processing a top-level class.
+     * The listener may be called from several threads at once.
+     */
+    @FunctionalInterface
+    public static interface ProgressListener {
+        void onClassProcessed(@NotNull String className, int processedClasses);
+    }
+
+    private static final class ProcessingClass {
+        @NotNull
+        private final String name;
+        private final long startTime;
+
+        private ProcessingClass(@NotNull String name, long startTime) {
+            this.name = name;
+            this.startTime = startTime;
+        }
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(FernflowerLoggerAdapter.class);
 
+    @NotNull
+    private final Map<@NotNull String, Long> classTimes = new ConcurrentHashMap<>();
+    @NotNull
+    private final ThreadLocal<ProcessingClass> processingClass = new ThreadLocal<>();
+    @NotNull
+    private final AtomicInteger processedClasses = new AtomicInteger();
+    @Nullable
+    private final ProgressListener progressListener;
+
     public FernflowerLoggerAdapter(Severity severity) {
+        this(severity, null);
+    }
+
+    public FernflowerLoggerAdapter(Severity severity, @Nullable ProgressListener progressListener) {
         setSeverity(severity);
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public void endProcessingClass() {
+        ProcessingClass processing = this.processingClass.get();
+        if (processing == null) {
+            return;
+        }
+        this.processingClass.remove();
+        long elapsedNanos = System.nanoTime() - processing.startTime;
+        this.classTimes.merge(processing.name, elapsedNanos, Long::sum);
+        int processed = this.processedClasses.incrementAndGet();
+        FernflowerLoggerAdapter.LOGGER.debug("Processed {} in {} ms", processing.name, elapsedNanos / 1_000_000L);
+        ProgressListener listener = this.progressListener;
+        if (listener != null) {
+            listener.onClassProcessed(processing.name, processed);
+        }
+    }
+
+    /**
+     * Obtains the time spent processing each top-level class so far.
+     *
+     * @return The processing times in nanoseconds, keyed by the internal name of the class
+     */
+    @NotNull
+    public Map<@NotNull String, Long> getClassTimes() {
+        return this.classTimes;
+    }
+
+    /**
+     * Obtains the classes that took the longest to process, slowest first.
+     *
+     * @param limit The maximum amount of classes to return
+     * @return The slowest classes along with their processing times in nanoseconds
+     */
+    @NotNull
+    public List<Map.Entry<@NotNull String, Long>> getSlowestClasses(int limit) {
+        List<Map.Entry<@NotNull String, Long>> entries = new ArrayList<>(this.classTimes.entrySet());
+        entries.sort(Map.Entry.<@NotNull String, Long>comparingByValue().reversed());
+        return entries.subList(0, Math.min(Math.max(0, limit), entries.size()));
+    }
+
+    @Override
+    public void startProcessingClass(String className) {
+        this.processingClass.set(new ProcessingClass(className, System.nanoTime()));
     }
 
     @Override
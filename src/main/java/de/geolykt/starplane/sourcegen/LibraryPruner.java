@@ -0,0 +1,180 @@
+package de.geolykt.starplane.sourcegen;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Assembles the library classes that are needed in order to decompile a set of classes into a single jar,
+ * so that the decompiler does not need to load entire library jars (or the entire classpath of the Gradle daemon).
+ *
+ * <p>Library classes are collected from the constant pool of the decompiled classes, including the types that only
+ * appear within descriptors and signatures. The collected classes are closed over their hierarchy (that is, their
+ * super classes and interfaces) as well as the classes they are nested in. Classes that are not found within the
+ * libraries are looked up within the Java runtime the build runs on. References that cannot be resolved
+ * are skipped, as they would not have been resolvable by the decompiler either.
+ */
+public final class LibraryPruner {
+
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_UTF8 = 1;
+
+    private static void addReferencedClasses(byte @NotNull[] data, @NotNull Collection<@NotNull String> out) throws IOException {
+        ClassReader reader = new ClassReader(data);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // The second slot of long and double constants has no offset
+            if (offset == 0) {
+                continue;
+            }
+            int tag = reader.readByte(offset - 1);
+            if (tag == LibraryPruner.CONSTANT_CLASS) {
+                String name = reader.readUTF8(offset, buffer);
+                if (name.codePointAt(0) == '[') {
+                    LibraryPruner.addTypesOfDescriptor(name, out);
+                } else {
+                    out.add(name);
+                }
+            } else if (tag == LibraryPruner.CONSTANT_UTF8) {
+                // Descriptors and signatures are stored as UTF8 constants without any accompanying class constants
+                int length = reader.readUnsignedShort(offset);
+                String value = new DataInputStream(new ByteArrayInputStream(data, offset, length + 2)).readUTF();
+                LibraryPruner.addTypesOfDescriptor(value, out);
+            }
+        }
+    }
+
+    /**
+     * Collects all names of the form <code>L[name];</code> or <code>L[name]&lt;</code> within a descriptor or signature.
+     * Arbitrary strings may yield names that do not refer to any class, which is harmless as they will not be resolved.
+     */
+    private static void addTypesOfDescriptor(@NotNull String descriptor, @NotNull Collection<@NotNull String> out) {
+        int start = descriptor.indexOf('L');
+        while (start != -1) {
+            int end = start + 1;
+            while (end < descriptor.length()) {
+                char c = descriptor.charAt(end);
+                if (c == ';' || c == '<') {
+                    break;
+                }
+                end++;
+            }
+            if (end == descriptor.length()) {
+                return;
+            }
+            if (end > start + 1) {
+                out.add(descriptor.substring(start + 1, end));
+            }
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * Writes the library classes that are referenced by the given classes into a jar.
+     *
+     * @param classes The classes that are decompiled or otherwise supplied to the decompiler, keyed by their internal name
+     * @param libraries The library jars in classpath order
+     * @param target The jar to write the referenced library classes to
+     * @return The amount of library classes written
+     * @throws IOException If the libraries could not be read or the jar could not be written
+     */
+    public static int prune(@NotNull Map<@NotNull String, byte @NotNull[]> classes, @NotNull Collection<@NotNull Path> libraries, @NotNull Path target) throws IOException {
+        List<ZipFile> openLibraries = new ArrayList<>();
+        try {
+            Map<String, ZipFile> libraryIndex = new HashMap<>();
+            for (Path library : libraries) {
+                ZipFile zip = new ZipFile(library.toFile());
+                openLibraries.add(zip);
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(".class")) {
+                        libraryIndex.putIfAbsent(name.substring(0, name.length() - 6), zip);
+                    }
+                }
+            }
+
+            Deque<@NotNull String> queue = new ArrayDeque<>();
+            for (byte[] data : classes.values()) {
+                LibraryPruner.addReferencedClasses(data, queue);
+            }
+
+            Set<String> visited = new HashSet<>(classes.keySet());
+            int written = 0;
+            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(target), StandardCharsets.UTF_8)) {
+                // The jar is read back right away, so compressing it would only waste time
+                zipOut.setLevel(Deflater.NO_COMPRESSION);
+                while (!queue.isEmpty()) {
+                    String name = queue.removeFirst();
+                    if (!visited.add(name)) {
+                        continue;
+                    }
+                    byte[] data = LibraryPruner.readClass(name, libraryIndex.get(name));
+                    if (data == null) {
+                        continue;
+                    }
+                    zipOut.putNextEntry(new ZipEntry(name + ".class"));
+                    zipOut.write(data);
+                    written++;
+
+                    ClassReader reader = new ClassReader(data);
+                    String superName = reader.getSuperName();
+                    if (superName != null) {
+                        queue.add(superName);
+                    }
+                    for (String interfaceName : reader.getInterfaces()) {
+                        queue.add(interfaceName);
+                    }
+                    int separator = name.lastIndexOf('$');
+                    if (separator != -1) {
+                        queue.add(name.substring(0, separator));
+                    }
+                }
+            }
+            return written;
+        } finally {
+            for (ZipFile zip : openLibraries) {
+                zip.close();
+            }
+        }
+    }
+
+    private static byte @Nullable[] readClass(@NotNull String name, @Nullable ZipFile library) throws IOException {
+        if (library != null) {
+            try (InputStream in = library.getInputStream(library.getEntry(name + ".class"))) {
+                return in.readAllBytes();
+            }
+        }
+        // Class files of the Java runtime are never encapsulated by their module
+        try (InputStream in = ClassLoader.getPlatformClassLoader().getResourceAsStream(name + ".class")) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    private LibraryPruner() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,154 @@
+package de.geolykt.starplane.sourcegen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The line mappings of a decompiled jar, stored alongside the keys of the top-level classes that were decompiled.
+ * The table is persisted next to the decompiled sources so that the line numbers of a regenerated jar can be
+ * rewritten to match the sources without decompiling or even reading the sources again, as long as the keys
+ * of the classes did not change.
+ *
+ * <p>Keys are computed through {@link DecompilationCache#computeKeys(Map, Map)}, whereas the fingerprint of the table
+ * covers everything else that influences the decompiled sources, the same way as with the {@link DecompilationCache}.
+ */
+public final class LineMappingTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LineMappingTable.class);
+    private static final int MAGIC = 0x4C4E4D50; // "LNMP"
+    private static final int VERSION = 1;
+
+    /**
+     * Reads the table from a file.
+     *
+     * @param file The file to read from
+     * @param fingerprint The fingerprint of everything aside from the classes themselves that influences the decompiled sources
+     * @return The read table, or null if the file does not exist, cannot be read or was written with a different fingerprint
+     */
+    @Nullable
+    public static LineMappingTable read(@NotNull Path file, @NotNull String fingerprint) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != LineMappingTable.MAGIC || in.readInt() != LineMappingTable.VERSION || !in.readUTF().equals(fingerprint)) {
+                LineMappingTable.LOGGER.info("Line mapping table at {} is outdated and will be discarded", file);
+                return null;
+            }
+            int keyCount = in.readInt();
+            Map<@NotNull String, @NotNull String> keys = new HashMap<>(keyCount * 2);
+            for (int i = 0; i < keyCount; i++) {
+                keys.put(in.readUTF(), in.readUTF());
+            }
+            int mappingCount = in.readInt();
+            Map<String, int[]> lineMappings = new HashMap<>(mappingCount * 2);
+            for (int i = 0; i < mappingCount; i++) {
+                String name = in.readUTF();
+                int[] mapping = new int[in.readInt()];
+                for (int j = 0; j < mapping.length; j++) {
+                    mapping[j] = in.readInt();
+                }
+                lineMappings.put(name, mapping);
+            }
+            return new LineMappingTable(keys, lineMappings);
+        } catch (IOException e) {
+            LineMappingTable.LOGGER.warn("Unable to read the line mapping table at {}", file, e);
+            return null;
+        }
+    }
+
+    @NotNull
+    private final Map<@NotNull String, @NotNull String> keys;
+    @NotNull
+    private final Map<String, int[]> lineMappings;
+
+    /**
+     * Creates a new table.
+     *
+     * @param keys The keys of the decompiled top-level classes, keyed by the internal name of the top-level class
+     * @param lineMappings The line mappings of the decompiled classes, keyed by the internal name of the class.
+     * <code>mapping[i * 2]</code> is the original line number and <code>mapping[i * 2 + 1]</code> the line number within the decompiled source
+     */
+    public LineMappingTable(@NotNull Map<@NotNull String, @NotNull String> keys, @NotNull Map<String, int[]> lineMappings) {
+        this.keys = keys;
+        this.lineMappings = lineMappings;
+    }
+
+    /**
+     * Obtains the line mappings of the decompiled classes.
+     *
+     * @return The line mappings, keyed by the internal name of the class
+     */
+    @NotNull
+    public Map<String, int[]> getLineMappings() {
+        return this.lineMappings;
+    }
+
+    /**
+     * Checks whether the table was produced from exactly the given top-level classes.
+     *
+     * @param keys The current keys of the top-level classes, keyed by the internal name of the top-level class
+     * @return True if the line mappings are still valid for the classes
+     */
+    public boolean isCurrent(@NotNull Map<@NotNull String, @NotNull String> keys) {
+        return this.keys.equals(keys);
+    }
+
+    /**
+     * Writes the table to a file, replacing the previous contents of the file.
+     *
+     * @param file The file to write to
+     * @param fingerprint The fingerprint of everything aside from the classes themselves that influences the decompiled sources
+     * @throws IOException If the file could not be written
+     */
+    public void write(@NotNull Path file, @NotNull String fingerprint) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(temp), deflater)))) {
+            out.writeInt(LineMappingTable.MAGIC);
+            out.writeInt(LineMappingTable.VERSION);
+            out.writeUTF(fingerprint);
+            List<String> classNames = new ArrayList<>(this.keys.keySet());
+            Collections.sort(classNames);
+            out.writeInt(classNames.size());
+            for (String name : classNames) {
+                out.writeUTF(name);
+                out.writeUTF(this.keys.get(name));
+            }
+            classNames = new ArrayList<>(this.lineMappings.keySet());
+            Collections.sort(classNames);
+            out.writeInt(classNames.size());
+            for (String name : classNames) {
+                int[] mapping = this.lineMappings.get(name);
+                out.writeUTF(name);
+                out.writeInt(mapping.length);
+                for (int line : mapping) {
+                    out.writeInt(line);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
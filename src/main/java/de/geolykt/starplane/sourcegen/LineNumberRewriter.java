@@ -0,0 +1,334 @@
+package de.geolykt.starplane.sourcegen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.geolykt.starplane.ParallelJarReader;
+
+/**
+ * Rewrites the line numbers of the classes within a jar to match the line numbers of the decompiled sources.
+ *
+ * <p>The jar is inflated exactly once. The outermost class of every class is resolved from the
+ * <code>EnclosingMethod</code> and <code>InnerClasses</code> attributes, which are located by skipping over the
+ * fields and methods of the class without parsing them. Line mappings are converted into primitive lookup tables
+ * and classes that do not need to be changed are copied as-is. Inflating, scanning and rewriting the classes
+ * happens on a {@link ForkJoinPool} sized according to {@link ParallelJarReader#getThreadCount()},
+ * while the rewritten jar is written in the order of the central directory of the source jar.
+ * Non-class entries are written without compression so that they need not be deflated again.
+ */
+public final class LineNumberRewriter {
+
+    private static final class RewriteEntry {
+        private byte @NotNull[] data;
+        @Nullable
+        private String name;
+        @Nullable
+        private String outerName;
+        @Nullable
+        private String sourceFile;
+
+        private RewriteEntry(byte @NotNull[] data) {
+            this.data = data;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LineNumberRewriter.class);
+
+    @NotNull
+    private static String getDefaultSourceFile(@NotNull String outermostClass) {
+        int startName = outermostClass.lastIndexOf('/') + 1;
+        int innerSeperator = outermostClass.indexOf('$', startName);
+        if (innerSeperator == -1) {
+            return outermostClass.substring(startName) + ".java";
+        }
+        return outermostClass.substring(startName, innerSeperator) + ".java";
+    }
+
+    @NotNull
+    private static RewriteEntry read(@NotNull ZipFile zip, @NotNull ZipEntry entry) throws IOException {
+        byte[] data;
+        try (InputStream in = zip.getInputStream(entry)) {
+            data = in.readAllBytes();
+        }
+        @SuppressWarnings("null")
+        RewriteEntry rewriteEntry = new RewriteEntry(data);
+        if (!entry.getName().endsWith(".class")) {
+            return rewriteEntry;
+        }
+        try {
+            LineNumberRewriter.scan(rewriteEntry);
+        } catch (RuntimeException e) {
+            LineNumberRewriter.LOGGER.warn("Unable to read classfile {}; copying it as-is instead.", entry.getName(), e);
+            rewriteEntry.name = null;
+        }
+        return rewriteEntry;
+    }
+
+    @NotNull
+    private static List<@NotNull RewriteEntry> readAll(@NotNull ZipFile zip, @NotNull List<ZipEntry> entries, @Nullable ForkJoinPool pool) throws IOException {
+        List<@NotNull RewriteEntry> readEntries = new ArrayList<>(entries.size());
+        if (pool == null) {
+            for (ZipEntry entry : entries) {
+                readEntries.add(LineNumberRewriter.read(zip, entry));
+            }
+            return readEntries;
+        }
+
+        List<ForkJoinTask<@NotNull RewriteEntry>> tasks = new ArrayList<>(entries.size());
+        for (ZipEntry entry : entries) {
+            tasks.add(pool.submit(() -> {
+                try {
+                    return LineNumberRewriter.read(zip, entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        for (ForkJoinTask<@NotNull RewriteEntry> task : tasks) {
+            try {
+                readEntries.add(task.join());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return readEntries;
+    }
+
+    /**
+     * Rewrites the line numbers of all classes within a jar.
+     *
+     * @param source The jar to read
+     * @param target The path to write the rewritten jar to. Any existing file is replaced
+     * @param lineMappings The line mappings of the decompiled sources, keyed by the internal name of the outermost class.
+     * <code>mapping[i * 2]</code> is the original line number and <code>mapping[i * 2 + 1]</code> the line number within the decompiled source
+     * @throws IOException If the jars could not be read or written
+     */
+    public static void rewrite(@NotNull Path source, @NotNull Path target, @NotNull Map<String, int[]> lineMappings) throws IOException {
+        Path intermediary = target.resolveSibling(target.getFileName() + ".tmp");
+        int threads = ParallelJarReader.getThreadCount();
+        ForkJoinPool pool = threads <= 1 ? null : new ForkJoinPool(threads);
+        try (ZipFile zip = new ZipFile(source.toFile())) {
+            List<ZipEntry> entries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                entries.add(enumeration.nextElement());
+            }
+
+            List<@NotNull RewriteEntry> readEntries = LineNumberRewriter.readAll(zip, entries, pool);
+
+            Map<String, String> outerNames = new HashMap<>();
+            for (RewriteEntry entry : readEntries) {
+                String outerName = entry.outerName;
+                if (entry.name != null && outerName != null) {
+                    outerNames.put(entry.name, outerName);
+                }
+            }
+
+            Map<String, int[]> lookupTables = new HashMap<>();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (RewriteEntry entry : readEntries) {
+                String name = entry.name;
+                if (name == null) {
+                    continue;
+                }
+                String outermostClass = LineNumberRewriter.resolveOutermostClass(name, outerNames);
+                int[] lookupTable = lookupTables.computeIfAbsent(outermostClass, (key) -> LineNumberRewriter.toLookupTable(lineMappings.get(key)));
+                String sourceFile = entry.sourceFile;
+                if (lookupTable == null && sourceFile != null && !sourceFile.equals("SourceFile")) {
+                    // Neither the line numbers nor the source file need to be changed
+                    continue;
+                }
+                if (sourceFile == null || sourceFile.equals("SourceFile")) {
+                    sourceFile = LineNumberRewriter.getDefaultSourceFile(outermostClass);
+                }
+                String replacementSourceFile = sourceFile;
+                if (pool == null) {
+                    entry.data = LineNumberRewriter.rewriteClass(entry.data, lookupTable, replacementSourceFile);
+                } else {
+                    tasks.add(pool.submit(() -> {
+                        entry.data = LineNumberRewriter.rewriteClass(entry.data, lookupTable, replacementSourceFile);
+                    }));
+                }
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(intermediary))) {
+                CRC32 crc = new CRC32();
+                for (int i = 0; i < entries.size(); i++) {
+                    RewriteEntry entry = readEntries.get(i);
+                    ZipEntry outEntry = new ZipEntry(entries.get(i).getName());
+                    if (entry.name == null) {
+                        crc.reset();
+                        crc.update(entry.data);
+                        outEntry.setMethod(ZipEntry.STORED);
+                        outEntry.setSize(entry.data.length);
+                        outEntry.setCompressedSize(entry.data.length);
+                        outEntry.setCrc(crc.getValue());
+                    }
+                    zipOut.putNextEntry(outEntry);
+                    zipOut.write(entry.data);
+                    zipOut.closeEntry();
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        Files.move(intermediary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte @NotNull[] rewriteClass(byte @NotNull[] data, int @Nullable[] lookupTable, @NotNull String sourceFile) {
+        ClassReader reader = new ClassReader(data);
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                    String[] exceptions) {
+                MethodVisitor visitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (lookupTable == null) {
+                    return visitor;
+                }
+                return new MethodVisitor(this.api, visitor) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        if (line >= 0 && line < lookupTable.length && lookupTable[line] != -1) {
+                            super.visitLineNumber(lookupTable[line], start);
+                        } else {
+                            super.visitLineNumber(line, start);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public void visitSource(String source, String debug) {
+                super.visitSource(sourceFile, debug);
+            }
+        }, 0);
+        @SuppressWarnings("null")
+        byte @NotNull[] rewritten = writer.toByteArray();
+        return rewritten;
+    }
+
+    @NotNull
+    private static String resolveOutermostClass(@NotNull String name, @NotNull Map<String, String> outerNames) {
+        String outermostClass = name;
+        // The amount of steps is bounded in order to not get stuck on (malformed) cyclic nesting
+        for (int i = 0; i < outerNames.size(); i++) {
+            String outerName = outerNames.get(outermostClass);
+            if (outerName == null) {
+                break;
+            }
+            outermostClass = outerName;
+        }
+        return outermostClass;
+    }
+
+    /**
+     * Reads the name, outer class and source file of a class by walking over the structure of the class file
+     * without parsing fields, methods or their code.
+     */
+    private static void scan(@NotNull RewriteEntry entry) {
+        ClassReader reader = new ClassReader(entry.data);
+        char[] charBuffer = new char[reader.getMaxStringLength()];
+        String name = reader.getClassName();
+        entry.name = name;
+
+        // Skip access flags, this class, super class and interfaces
+        int offset = reader.header + 6;
+        offset += 2 + reader.readUnsignedShort(offset) * 2;
+        // Skip fields and methods, both of which share the same layout
+        for (int memberKind = 0; memberKind < 2; memberKind++) {
+            int memberCount = reader.readUnsignedShort(offset);
+            offset += 2;
+            while (memberCount-- != 0) {
+                int attributeCount = reader.readUnsignedShort(offset + 6);
+                offset += 8;
+                while (attributeCount-- != 0) {
+                    offset += 6 + reader.readInt(offset + 2);
+                }
+            }
+        }
+
+        String enclosingClass = null;
+        String declaringClass = null;
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        while (attributeCount-- != 0) {
+            String attributeName = reader.readUTF8(offset, charBuffer);
+            int attributeStart = offset + 6;
+            offset = attributeStart + reader.readInt(offset + 2);
+            if ("SourceFile".equals(attributeName)) {
+                entry.sourceFile = reader.readUTF8(attributeStart, charBuffer);
+            } else if ("EnclosingMethod".equals(attributeName)) {
+                enclosingClass = reader.readClass(attributeStart, charBuffer);
+            } else if ("InnerClasses".equals(attributeName)) {
+                int classCount = reader.readUnsignedShort(attributeStart);
+                for (int i = 0; i < classCount; i++) {
+                    int classOffset = attributeStart + 2 + i * 8;
+                    if (reader.readUnsignedShort(classOffset + 2) != 0 && name.equals(reader.readClass(classOffset, charBuffer))) {
+                        declaringClass = reader.readClass(classOffset + 2, charBuffer);
+                    }
+                }
+            }
+        }
+
+        entry.outerName = enclosingClass != null ? enclosingClass : declaringClass;
+    }
+
+    /**
+     * Converts a line mapping into a table where the index is the original line number and the value
+     * the new line number, or -1 if the line number is not remapped.
+     */
+    private static int @Nullable[] toLookupTable(int @Nullable[] mapping) {
+        if (mapping == null) {
+            return null;
+        }
+        int maxLine = -1;
+        for (int i = 0; i < mapping.length; i += 2) {
+            maxLine = Math.max(maxLine, mapping[i]);
+        }
+        int[] lookupTable = new int[maxLine + 1];
+        Arrays.fill(lookupTable, -1);
+        for (int i = 0; i < mapping.length; i += 2) {
+            if (mapping[i] >= 0) {
+                lookupTable[mapping[i]] = mapping[i + 1];
+            }
+        }
+        return lookupTable;
+    }
+
+    private LineNumberRewriter() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,79 @@
+package de.geolykt.starplane;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+import de.geolykt.starloader.deobf.remapper.Remapper;
+
+public class AutodeobfTest {
+
+    /**
+     * Creates passes which are linked through the given dependencies just like the passes of {@link Autodeobf}:
+     * each pass uses the state left behind by the pass it depends on. Each pass writes a different amount of mappings,
+     * which are written piece by piece and interleaved with random delays in order to provoke races.
+     */
+    private static Autodeobf.Pass[] createPasses(int[] dependencies, String[] state) {
+        Autodeobf.Pass[] passes = new Autodeobf.Pass[dependencies.length];
+        for (int i = 0; i < passes.length; i++) {
+            int pass = i;
+            passes[i] = (Writer mappingsStream) -> {
+                String value = "pass" + pass;
+                if (dependencies[pass] != -1) {
+                    value += "<" + state[dependencies[pass]];
+                }
+                Random random = new Random(pass);
+                for (int mapping = random.nextInt(20); mapping >= 0; mapping--) {
+                    AutodeobfTest.sleep();
+                    mappingsStream.write("FIELD\t");
+                    mappingsStream.write(value);
+                    mappingsStream.write("\tI\tfield" + mapping);
+                    AutodeobfTest.sleep();
+                    mappingsStream.write("\tmapped" + mapping + "\n");
+                }
+                state[pass] = value;
+            };
+        }
+        return passes;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testConcurrentRunMatchesSequentialRun() throws IOException {
+        int[] dependencies = Autodeobf.PASS_DEPENDENCIES;
+        StringWriter sequential = new StringWriter();
+        for (Autodeobf.Pass pass : AutodeobfTest.createPasses(dependencies, new String[dependencies.length])) {
+            pass.run(sequential);
+        }
+
+        Autodeobf autodeobf = new Autodeobf(new ArrayList<>(), new Remapper());
+        for (int run = 0; run < 20; run++) {
+            StringWriter concurrent = new StringWriter();
+            autodeobf.runConcurrently(AutodeobfTest.createPasses(dependencies, new String[dependencies.length]), dependencies, concurrent);
+            assertEquals(sequential.toString(), concurrent.toString());
+        }
+    }
+
+    @Test
+    public void testDependenciesPrecedeDependents() {
+        int[] dependencies = Autodeobf.PASS_DEPENDENCIES;
+        for (int i = 0; i < dependencies.length; i++) {
+            assertTrue(dependencies[i] >= -1 && dependencies[i] < i, "Pass " + i + " depends on pass " + dependencies[i]);
+        }
+    }
+}